@@ -0,0 +1,95 @@
+package sk.essentialdata.lucene.analysis.fst.benchmark;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.Tokenizer;
+import org.apache.lucene.analysis.standard.StandardTokenizer;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import sk.essentialdata.lucene.analysis.fst.FSTTokenFilterFactory;
+
+/**
+ * Time per token of the whole analysis chain StandardTokenizer + FSTTokenFilter, created the way Solr does
+ * through {@link FSTTokenFilterFactory}, against the tokenizer alone. The text is 10000 words of the Wikipedia sample.
+ * @author miso
+ * @date 10/17/26.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AnalysisChainBenchmark {
+    static final int WORDS = 10000;
+
+    /**
+     * none is the tokenizer alone
+     */
+    @Param({"none", "fst/slovaklemma.fst", "fst/slovaklemma_ascii.fst"})
+    public String dictionary;
+
+    private FSTTokenFilterFactory factory;
+    private String text;
+    private Tokenizer tokenizer;
+    private TokenStream stream;
+    private CharTermAttribute termAtt;
+
+    @Setup
+    public void setUp() throws IOException {
+        List<String> words = BenchmarkData.sampleWords();
+        text = String.join(" ", words.subList(0, WORDS));
+        tokenizer = new StandardTokenizer();
+        stream = tokenizer;
+        if (!"none".equals(dictionary)) {
+            Map<String, String> args = new HashMap<>();
+            args.put(FSTTokenFilterFactory.PARAM_DICTIONARY, BenchmarkData.resolve(dictionary).toString());
+            factory = new FSTTokenFilterFactory(args);
+            factory.inform(null);
+            stream = factory.create(tokenizer);
+        }
+        termAtt = stream.addAttribute(CharTermAttribute.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        stream.close();
+        if (factory != null) {
+            factory.close();
+        }
+    }
+
+    /**
+     * Analyzes the text with the same, reused token stream, like an indexing thread does.
+     */
+    @Benchmark
+    @OperationsPerInvocation(WORDS)
+    public void analyze(Blackhole blackhole) throws IOException {
+        tokenizer.setReader(new StringReader(text));
+        stream.reset();
+        while (stream.incrementToken()) {
+            blackhole.consume(termAtt.length());
+        }
+        stream.end();
+        stream.close();
+    }
+}
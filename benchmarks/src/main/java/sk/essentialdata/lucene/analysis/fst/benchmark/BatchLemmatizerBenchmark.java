@@ -0,0 +1,62 @@
+package sk.essentialdata.lucene.analysis.fst.benchmark;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import sk.essentialdata.lucene.analysis.fst.BatchLemmatizer;
+import sk.essentialdata.lucene.analysis.fst.LemmaDictionary;
+import sk.essentialdata.lucene.analysis.fst.LoadMode;
+
+/**
+ * Time of lemmatizing about 4 million chars of text (the Wikipedia sample repeated) by {@link BatchLemmatizer},
+ * as fstutils lemmatize --batch does, on 1, 2 and 4 threads.
+ * @author miso
+ * @date 10/17/26.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BatchLemmatizerBenchmark {
+    static final int TEXT_LENGTH = 4000000;
+    static final String DICTIONARY = "fst/slovaklemma.fst";
+
+    @Param({"1", "2", "4"})
+    public int threads;
+
+    private LemmaDictionary dictionary;
+    private String text;
+
+    @Setup
+    public void setUp() throws IOException {
+        dictionary = LemmaDictionary.load(BenchmarkData.resolve(DICTIONARY), LoadMode.HEAP);
+        String sample = new String(Files.readAllBytes(BenchmarkData.resolve(BenchmarkData.SAMPLE)), StandardCharsets.UTF_8);
+        StringBuilder builder = new StringBuilder();
+        while (builder.length() < TEXT_LENGTH) {
+            builder.append(sample).append('\n');
+        }
+        text = builder.toString();
+    }
+
+    @Benchmark
+    public long lemmatize() throws IOException {
+        StringWriter out = new StringWriter(text.length());
+        return new BatchLemmatizer(dictionary, threads, BatchLemmatizer.DEFAULT_CHUNK_SIZE, true).lemmatize(new StringReader(text), out);
+    }
+}
@@ -0,0 +1,109 @@
+package sk.essentialdata.lucene.analysis.fst.benchmark;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.CharsRef;
+import org.apache.lucene.util.CharsRefBuilder;
+import org.apache.lucene.util.fst.FST;
+import org.apache.lucene.util.fst.Util;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import sk.essentialdata.lucene.analysis.fst.LemmaBatch;
+import sk.essentialdata.lucene.analysis.fst.LemmaDictionary;
+import sk.essentialdata.lucene.analysis.fst.Lemmatizer;
+import sk.essentialdata.lucene.analysis.fst.LoadMode;
+
+/**
+ * Time per word of {@link Lemmatizer#lookup(CharSequence[], boolean, LemmaBatch)} against independent lookups.
+ * The words are the first 10000 distinct words of the Wikipedia sample, sorted for the sorted batch and the single
+ * lookups, in the order of the text for the unsorted batch, which sorts them first.
+ * @author miso
+ * @date 10/17/26.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BatchLookupBenchmark {
+    static final int TOKENS = 10000;
+    static final String DICTIONARY = "fst/slovaklemma.fst";
+
+    private FST<CharsRef> fst;
+    private LemmaDictionary.Lookup lookup;
+    private Lemmatizer lemmatizer;
+    private String[] unsorted;
+    private String[] sorted;
+    private BytesRef[] utf8;
+    private char[][] chars;
+    private final CharsRefBuilder lemmas = new CharsRefBuilder();
+    private final LemmaBatch batch = new LemmaBatch();
+
+    @Setup
+    public void setUp() throws IOException {
+        fst = LoadMode.HEAP.load(BenchmarkData.resolve(DICTIONARY));
+        LemmaDictionary dictionary = LemmaDictionary.load(BenchmarkData.resolve(DICTIONARY), LoadMode.HEAP);
+        lookup = dictionary.newLookup();
+        lemmatizer = new Lemmatizer(dictionary);
+        Set<String> distinct = new LinkedHashSet<>();
+        for (String word : BenchmarkData.sampleWords()) {
+            if (distinct.size() < TOKENS) {
+                distinct.add(word);
+            }
+        }
+        unsorted = distinct.toArray(new String[0]);
+        sorted = unsorted.clone();
+        Arrays.sort(sorted);
+        utf8 = new BytesRef[TOKENS];
+        chars = new char[TOKENS][];
+        for (int i = 0; i < TOKENS; i++) {
+            utf8[i] = new BytesRef(sorted[i]);
+            chars[i] = sorted[i].toCharArray();
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(TOKENS)
+    public void utilGet(Blackhole blackhole) throws IOException {
+        for (BytesRef term : utf8) {
+            blackhole.consume(Util.get(fst, term));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(TOKENS)
+    public void lookup(Blackhole blackhole) throws IOException {
+        for (char[] term : chars) {
+            blackhole.consume(lookup.lookup(term, 0, term.length, lemmas));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(TOKENS)
+    public LemmaBatch sortedBatch() throws IOException {
+        lemmatizer.lookup(sorted, true, batch);
+        return batch;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(TOKENS)
+    public LemmaBatch unsortedBatch() throws IOException {
+        lemmatizer.lookup(unsorted, false, batch);
+        return batch;
+    }
+}
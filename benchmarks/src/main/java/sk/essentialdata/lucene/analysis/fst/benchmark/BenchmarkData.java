@@ -0,0 +1,77 @@
+package sk.essentialdata.lucene.analysis.fst.benchmark;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import org.apache.lucene.util.CharsRefBuilder;
+import sk.essentialdata.lucene.analysis.fst.LemmaDictionary;
+
+/**
+ * Dictionaries and words of the main project used by the benchmarks.
+ * Files are resolved against the system property lemmatizer.home, by default the current directory
+ * or its parent, whichever contains the fst directory, so that the benchmarks run both from the project
+ * and from the benchmarks directory.
+ * @author miso
+ * @date 10/17/26.
+ */
+final class BenchmarkData {
+    static final String SAMPLE = "src/test/resources/wikipedia_sample.txt";
+
+    private BenchmarkData() {
+    }
+
+    static Path resolve(String path) {
+        String home = System.getProperty("lemmatizer.home");
+        if (home == null) {
+            home = Files.isDirectory(Paths.get("fst")) ? "." : "..";
+        }
+        return Paths.get(home, path);
+    }
+
+    /**
+     * @return the words of the Wikipedia sample in the order of the text, one per line in the file
+     */
+    static List<String> sampleWords() throws IOException {
+        List<String> words = new ArrayList<>();
+        for (String line : Files.readAllLines(resolve(SAMPLE), StandardCharsets.UTF_8)) {
+            String word = line.trim();
+            if (!word.isEmpty()) {
+                words.add(word);
+            }
+        }
+        return words;
+    }
+
+    /**
+     * @param dictionary
+     * @param words
+     * @param found true for the words found in the dictionary, false for the others
+     * @param count number of words, repeating the selected ones if needed
+     * @return the selected words
+     * @throws IOException
+     */
+    static String[] select(LemmaDictionary dictionary, List<String> words, boolean found, int count) throws IOException {
+        LemmaDictionary.Lookup lookup = dictionary.newLookup();
+        CharsRefBuilder lemmas = new CharsRefBuilder();
+        List<String> selected = new ArrayList<>();
+        for (String word : words) {
+            if (lookup.lookup(word, lemmas) == found) {
+                selected.add(word);
+            }
+            // misses of the text are mostly numbers and names, reversed words miss at every depth of the FST
+            String reversed = new StringBuilder(word).reverse().toString();
+            if (!found && !lookup.lookup(reversed, lemmas)) {
+                selected.add(reversed);
+            }
+        }
+        String[] result = new String[count];
+        for (int i = 0; i < count; i++) {
+            result[i] = selected.get(i % selected.size());
+        }
+        return result;
+    }
+}
@@ -0,0 +1,74 @@
+package sk.essentialdata.lucene.analysis.fst.benchmark;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import org.apache.lucene.analysis.CharacterUtils;
+import org.apache.lucene.util.CharsRefBuilder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import sk.essentialdata.lucene.analysis.fst.LemmaDictionary;
+import sk.essentialdata.lucene.analysis.fst.LoadMode;
+
+/**
+ * Time of one lookup of a capitalized word or a word in capitals: a lowercased copy looked up, as LowerCaseFilter
+ * in front of the filter does, against {@link LemmaDictionary.Lookup#lookupIgnoreCase}, which lowercases the word
+ * as the FST is walked. The words are those of the Wikipedia sample, every other one in capitals.
+ * @author miso
+ * @date 10/17/26.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CaseFoldingBenchmark {
+    static final int TOKENS = 10000;
+    static final String DICTIONARY = "fst/slovaklemma.fst";
+
+    private LemmaDictionary.Lookup lookup;
+    private char[][] tokens;
+    private final CharsRefBuilder lemmas = new CharsRefBuilder();
+
+    @Setup
+    public void setUp() throws IOException {
+        lookup = LemmaDictionary.load(BenchmarkData.resolve(DICTIONARY), LoadMode.HEAP).newLookup();
+        List<String> words = BenchmarkData.sampleWords();
+        tokens = new char[TOKENS][];
+        for (int i = 0; i < TOKENS; i++) {
+            String word = words.get(i % words.size());
+            tokens[i] = (i % 2 == 0 ? word.toUpperCase(Locale.ROOT)
+                    : word.substring(0, 1).toUpperCase(Locale.ROOT) + word.substring(1)).toCharArray();
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(TOKENS)
+    public void lowerCaseAndLookup(Blackhole blackhole) throws IOException {
+        for (char[] token : tokens) {
+            char[] lowerCase = token.clone();
+            CharacterUtils.toLowerCase(lowerCase, 0, lowerCase.length);
+            blackhole.consume(lookup.lookup(lowerCase, 0, lowerCase.length, lemmas));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(TOKENS)
+    public void lookupIgnoreCase(Blackhole blackhole) throws IOException {
+        for (char[] token : tokens) {
+            blackhole.consume(lookup.lookupIgnoreCase(token, 0, token.length, lemmas));
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package sk.essentialdata.lucene.analysis.fst.benchmark;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.apache.lucene.util.CharsRefBuilder;
+import org.apache.lucene.util.IOUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import sk.essentialdata.lucene.analysis.fst.FSTBuilder;
+import sk.essentialdata.lucene.analysis.fst.LemmaDictionary;
+import sk.essentialdata.lucene.analysis.fst.LoadMode;
+
+/**
+ * Time of one lookup of a word of the Wikipedia sample in the dictionary formats of {@link FSTBuilder}.
+ * The formats are converted from slovaklemma.fst in the setup, FSTBuilder prints the size of each.
+ * @author miso
+ * @date 10/17/26.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DictionaryFormatBenchmark {
+    static final int TOKENS = 10000;
+    static final String DICTIONARY = "fst/slovaklemma.fst";
+    /**
+     * @var FORMATS options of FSTBuilder by the name of the format, none for the bundled dictionary
+     */
+    static final Map<String, String[]> FORMATS = new HashMap<>();
+
+    static {
+        FORMATS.put("lemmas", null);
+        FORMATS.put("ordinal", new String[] {"--format=ordinal"});
+        FORMATS.put("suffix", new String[] {"--encoding=suffix"});
+        FORMATS.put("merged", new String[] {"--merged"});
+        FORMATS.put("byte2", new String[] {"--input=byte2"});
+        FORMATS.put("byte4", new String[] {"--input=byte4"});
+        FORMATS.put("byte2-suffix", new String[] {"--input=byte2", "--encoding=suffix"});
+    }
+
+    @Param({"lemmas", "ordinal", "suffix", "merged", "byte2", "byte4", "byte2-suffix"})
+    public String format;
+
+    private Path tempDir;
+    private LemmaDictionary.Lookup lookup;
+    private char[][] tokens;
+    private final CharsRefBuilder lemmas = new CharsRefBuilder();
+
+    @Setup
+    public void setUp() throws IOException {
+        tempDir = Files.createTempDirectory("formatbenchmark");
+        Path path = BenchmarkData.resolve(DICTIONARY);
+        String[] options = FORMATS.get(format);
+        if (options != null) {
+            Path output = tempDir.resolve(format + ".fst");
+            String[] args = new String[4 + options.length];
+            args[0] = "-i";
+            args[1] = path.toString();
+            args[2] = "-o";
+            args[3] = output.toString();
+            System.arraycopy(options, 0, args, 4, options.length);
+            FSTBuilder.main(args);
+            path = output;
+        }
+        lookup = LemmaDictionary.load(path, LoadMode.HEAP).newLookup();
+        List<String> words = BenchmarkData.sampleWords();
+        tokens = new char[TOKENS][];
+        for (int i = 0; i < TOKENS; i++) {
+            tokens[i] = words.get(i % words.size()).toCharArray();
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        IOUtils.rm(tempDir);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(TOKENS)
+    public void lookup(Blackhole blackhole) throws IOException {
+        for (char[] token : tokens) {
+            blackhole.consume(lookup.lookup(token, 0, token.length, lemmas));
+        }
+    }
+}
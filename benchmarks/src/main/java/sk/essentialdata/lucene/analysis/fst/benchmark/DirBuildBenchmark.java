@@ -0,0 +1,82 @@
+package sk.essentialdata.lucene.analysis.fst.benchmark;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import org.apache.lucene.util.IOUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import sk.essentialdata.lucene.analysis.fst.FSTBuilder;
+
+/**
+ * Time of building an FST from a directory of morphology files (FSTBuilder -d) on 1, 2 and 4 threads.
+ * The setup writes 8 files in the korpus.sk format with 24000 made-up verbs each, neighbouring files overlap.
+ * @author miso
+ * @date 10/17/26.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class DirBuildBenchmark {
+    static final String[] ENDINGS = {"ujem", "uješ", "uje", "ujeme", "ujete", "ujú", "oval", "ovala"};
+    static final int SHARDS = 8;
+    static final int SHARD_LEMMAS = 24000;
+
+    @Param({"1", "2", "4"})
+    public int threads;
+
+    private Path tempDir;
+    private Path shards;
+
+    @Setup
+    public void setUp() throws IOException {
+        tempDir = Files.createTempDirectory("dirbuildbenchmark");
+        shards = Files.createDirectory(tempDir.resolve("shards"));
+        for (int k = 0; k < SHARDS; k++) {
+            writeMorphology(shards.resolve("shard" + k + ".txt"), k * 20000, k * 20000 + SHARD_LEMMAS);
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        IOUtils.rm(tempDir);
+    }
+
+    /**
+     * Writes the lemmas in a scrambled order and every line twice, as the real file has more tags for the same form.
+     */
+    private static void writeMorphology(Path file, int fromLemma, int toLemma) throws IOException {
+        int lemmas = toLemma - fromLemma;
+        try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            for (int j = 0; j < lemmas; j++) {
+                String stem = "x" + Integer.toString(fromLemma + (int) ((j * 7919L) % lemmas), 36);
+                for (String ending : ENDINGS) {
+                    writer.write(stem + "ovať\t" + stem + ending + "\tVKesa+\n");
+                    writer.write(stem + "ovať\t" + stem + ending + "\tVKesb+\n");
+                }
+            }
+        }
+    }
+
+    @Benchmark
+    public void build() throws IOException {
+        FSTBuilder.main(new String[] {"-d", shards.toString(), "-o", tempDir.resolve("shards.fst").toString(),
+                "--threads=" + threads, "--tmp=" + tempDir});
+    }
+}
@@ -0,0 +1,104 @@
+package sk.essentialdata.lucene.analysis.fst.benchmark;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.Tokenizer;
+import org.apache.lucene.analysis.core.WhitespaceTokenizer;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.util.IOUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import sk.essentialdata.lucene.analysis.fst.FSTBuilder;
+import sk.essentialdata.lucene.analysis.fst.FSTExpansionFilterFactory;
+import sk.essentialdata.lucene.analysis.fst.FSTTokenFilterFactory;
+
+/**
+ * Time per query word of the query analyzer FSTTokenFilter + FSTExpansionFilter with the reverse FST of FSTBuilder
+ * (built in the setup, FSTBuilder prints its size), up to maxForms forms per lemma, 0 for all of them.
+ * The bytes allocated per word are reported by the GC profiler of {@link BenchmarkRunner}.
+ * @author miso
+ * @date 10/17/26.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ExpansionBenchmark {
+    static final int WORDS = 1000;
+    static final String DICTIONARY = "fst/slovaklemma.fst";
+
+    @Param({"0", "64"})
+    public int maxForms;
+
+    private Path tempDir;
+    private FSTTokenFilterFactory lemmaFactory;
+    private FSTExpansionFilterFactory expansionFactory;
+    private String text;
+    private Tokenizer tokenizer;
+    private TokenStream stream;
+    private CharTermAttribute termAtt;
+
+    @Setup
+    public void setUp() throws IOException {
+        tempDir = Files.createTempDirectory("expansionbenchmark");
+        Path reverseFst = tempDir.resolve("reverse.fst");
+        FSTBuilder.main(new String[] {"-i", BenchmarkData.resolve(DICTIONARY).toString(), "-o", tempDir.resolve("forward.fst").toString(),
+                "--format=ordinal", "--encoding=suffix", "--reverse=" + reverseFst});
+        Map<String, String> args = new HashMap<>();
+        args.put(FSTTokenFilterFactory.PARAM_DICTIONARY, BenchmarkData.resolve(DICTIONARY).toString());
+        lemmaFactory = new FSTTokenFilterFactory(args);
+        lemmaFactory.inform(null);
+        args = new HashMap<>();
+        args.put(FSTExpansionFilterFactory.PARAM_DICTIONARY, reverseFst.toString());
+        args.put(FSTExpansionFilterFactory.PARAM_MAX_FORMS, String.valueOf(maxForms));
+        expansionFactory = new FSTExpansionFilterFactory(args);
+        expansionFactory.inform(null);
+        List<String> words = BenchmarkData.sampleWords();
+        text = String.join(" ", words.subList(0, WORDS));
+        tokenizer = new WhitespaceTokenizer();
+        stream = expansionFactory.create(lemmaFactory.create(tokenizer));
+        termAtt = stream.addAttribute(CharTermAttribute.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        stream.close();
+        lemmaFactory.close();
+        expansionFactory.close();
+        IOUtils.rm(tempDir);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(WORDS)
+    public void analyze(Blackhole blackhole) throws IOException {
+        tokenizer.setReader(new StringReader(text));
+        stream.reset();
+        while (stream.incrementToken()) {
+            blackhole.consume(termAtt.length());
+        }
+        stream.end();
+        stream.close();
+    }
+}
@@ -0,0 +1,87 @@
+package sk.essentialdata.lucene.analysis.fst.benchmark;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import org.apache.lucene.util.CharsRefBuilder;
+import org.apache.lucene.util.IOUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import sk.essentialdata.lucene.analysis.fst.FSTBuilder;
+import sk.essentialdata.lucene.analysis.fst.LemmaDictionary;
+import sk.essentialdata.lucene.analysis.fst.LemmaGuesser;
+import sk.essentialdata.lucene.analysis.fst.LoadMode;
+
+/**
+ * Cost of a token missing in the dictionary: the dictionary lookup alone against the lookup followed by
+ * a guess of {@link LemmaGuesser}, as the filter does with a guesser. The misses are those of {@link BenchmarkData#select},
+ * the guesser FST is built from the dictionary in the setup.
+ * @author miso
+ * @date 10/17/26.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GuesserBenchmark {
+    static final int TOKENS = 10000;
+    static final String DICTIONARY = "fst/slovaklemma.fst";
+
+    private Path tempDir;
+    private LemmaDictionary.Lookup lookup;
+    private LemmaDictionary.Lookup guess;
+    private char[][] tokens;
+    private final CharsRefBuilder lemmas = new CharsRefBuilder();
+
+    @Setup
+    public void setUp() throws IOException {
+        tempDir = Files.createTempDirectory("guesserbenchmark");
+        Path guesserFst = tempDir.resolve("guesser.fst");
+        FSTBuilder.main(new String[] {"-i", BenchmarkData.resolve(DICTIONARY).toString(), "-o", tempDir.resolve("forward.fst").toString(),
+                "--guesser=" + guesserFst});
+        LemmaDictionary dictionary = LemmaDictionary.load(BenchmarkData.resolve(DICTIONARY), LoadMode.HEAP);
+        lookup = dictionary.newLookup();
+        guess = LemmaGuesser.load(guesserFst, LoadMode.HEAP, LemmaGuesser.DEFAULT_MIN_STEM_LENGTH, LemmaGuesser.DEFAULT_MIN_CONFIDENCE)
+                .newLookup();
+        String[] words = BenchmarkData.select(dictionary, BenchmarkData.sampleWords(), false, TOKENS);
+        tokens = new char[TOKENS][];
+        for (int i = 0; i < TOKENS; i++) {
+            tokens[i] = words[i].toCharArray();
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        IOUtils.rm(tempDir);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(TOKENS)
+    public void dictionaryMiss(Blackhole blackhole) throws IOException {
+        for (char[] token : tokens) {
+            blackhole.consume(lookup.lookup(token, 0, token.length, lemmas));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(TOKENS)
+    public void dictionaryMissAndGuess(Blackhole blackhole) throws IOException {
+        for (char[] token : tokens) {
+            blackhole.consume(lookup.lookup(token, 0, token.length, lemmas) || guess.lookup(token, 0, token.length, lemmas));
+        }
+    }
+}
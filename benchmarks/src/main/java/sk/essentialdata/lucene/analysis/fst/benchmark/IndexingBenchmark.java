@@ -0,0 +1,297 @@
+package sk.essentialdata.lucene.analysis.fst.benchmark;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.core.LowerCaseFilterFactory;
+import org.apache.lucene.analysis.custom.CustomAnalyzer;
+import org.apache.lucene.analysis.standard.StandardTokenizerFactory;
+import org.apache.lucene.analysis.util.TokenFilterFactory;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.TieredMergePolicy;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import sk.essentialdata.lucene.analysis.fst.FSTTokenFilterFactory;
+
+/**
+ * Indexes a text corpus into an on-disk index with StandardTokenizer + LowerCaseFilter (the baseline)
+ * and the same chain followed by {@link FSTTokenFilterFactory} with various settings, for each thread count.
+ * Reports docs/s, tokens/s (indexed tokens, including the lemmas at the same position), peak heap,
+ * the size of the index and of its postings (terms dictionary, doc and position lists),
+ * and the throughput relative to the baseline with the same number of threads.
+ * Usage: IndexingBenchmark [--input=file|dir] [--lines=100] [--repeat=5] [--threads=1,2,4] [--rounds=3] [--index=dir] [config...],
+ * where config is name or name:param=value,param=value with the parameters of the filter factory, e.g. "top1:maxLemmas=1".
+ * A file is split into documents of --lines lines, every file of a directory is one document.
+ * Every configuration is run --rounds times, interleaved with the others, and the fastest round is reported.
+ * @author miso
+ * @date 10/17/26.
+ */
+public class IndexingBenchmark {
+    static final String FIELD = "text";
+    static final String BASELINE = "baseline";
+    /**
+     * @var POSTINGS_EXTENSIONS files of the default codec holding the terms dictionary and the postings
+     */
+    static final List<String> POSTINGS_EXTENSIONS = Arrays.asList("tim", "tip", "doc", "pos");
+
+    private final List<String> documents;
+    private final Path indexRoot;
+
+    IndexingBenchmark(List<String> documents, Path indexRoot) {
+        this.documents = documents;
+        this.indexRoot = indexRoot;
+    }
+
+    /**
+     * @param input a file split into documents of the given number of lines, or a directory with one document per file
+     * @param lines
+     * @return the documents
+     * @throws IOException
+     */
+    static List<String> readDocuments(Path input, int lines) throws IOException {
+        List<String> documents = new ArrayList<>();
+        if (Files.isDirectory(input)) {
+            try (Stream<Path> files = Files.walk(input)) {
+                for (Path file : files.filter(Files::isRegularFile).sorted().collect(Collectors.toList())) {
+                    documents.add(new String(Files.readAllBytes(file), StandardCharsets.UTF_8));
+                }
+            }
+            return documents;
+        }
+        List<String> fileLines = Files.readAllLines(input, StandardCharsets.UTF_8);
+        for (int start = 0; start < fileLines.size(); start += lines) {
+            documents.add(String.join("\n", fileLines.subList(start, Math.min(start + lines, fileLines.size()))));
+        }
+        return documents;
+    }
+
+    static Analyzer newAnalyzer(Map<String, String> filterParams) throws IOException {
+        CustomAnalyzer.Builder builder = CustomAnalyzer.builder()
+                .withTokenizer(StandardTokenizerFactory.class)
+                .addTokenFilter(LowerCaseFilterFactory.class);
+        if (filterParams != null) {
+            builder.addTokenFilter(FSTTokenFilterFactory.class, new LinkedHashMap<>(filterParams));
+        }
+        return builder.build();
+    }
+
+    /**
+     * Closes the analyzer and the filter factories holding a dictionary, which the analyzer does not close.
+     */
+    static void close(Analyzer analyzer) throws IOException {
+        for (TokenFilterFactory factory : ((CustomAnalyzer) analyzer).getTokenFilterFactories()) {
+            if (factory instanceof Closeable) {
+                ((Closeable) factory).close();
+            }
+        }
+        analyzer.close();
+    }
+
+    static class Result {
+        double docsPerSecond;
+        double tokensPerSecond;
+        long peakHeap;
+        long indexSize;
+        long postingsSize;
+    }
+
+    /**
+     * Indexes all documents with the given number of threads into a fresh index, which is deleted afterwards.
+     * The analyzer is created before the measurement, so loading the dictionary is not counted.
+     */
+    Result run(Map<String, String> filterParams, int threads) throws IOException, InterruptedException {
+        Path indexPath = Files.createTempDirectory(indexRoot, "index");
+        Analyzer analyzer = newAnalyzer(filterParams);
+        Result result = new Result();
+        try (Directory directory = FSDirectory.open(indexPath)) {
+            IndexWriterConfig config = new IndexWriterConfig(analyzer);
+            config.setUseCompoundFile(false);
+            ((TieredMergePolicy) config.getMergePolicy()).setNoCFSRatio(0);
+            System.gc();
+            List<MemoryPoolMXBean> heapPools = heapPools();
+            heapPools.forEach(MemoryPoolMXBean::resetPeakUsage);
+            long startTime = System.nanoTime();
+            try (IndexWriter writer = new IndexWriter(directory, config)) {
+                index(writer, threads);
+                writer.commit();
+            }
+            double seconds = (System.nanoTime() - startTime) / 1e9;
+            for (MemoryPoolMXBean pool : heapPools) {
+                result.peakHeap += pool.getPeakUsage().getUsed();
+            }
+            try (DirectoryReader reader = DirectoryReader.open(directory)) {
+                result.tokensPerSecond = reader.getSumTotalTermFreq(FIELD) / seconds;
+            }
+            result.docsPerSecond = documents.size() / seconds;
+            for (String file : directory.listAll()) {
+                long length = directory.fileLength(file);
+                result.indexSize += length;
+                if (POSTINGS_EXTENSIONS.contains(file.substring(file.lastIndexOf('.') + 1))) {
+                    result.postingsSize += length;
+                }
+            }
+        } finally {
+            close(analyzer);
+            deleteAll(indexPath);
+        }
+        return result;
+    }
+
+    private void index(IndexWriter writer, int threads) throws IOException, InterruptedException {
+        AtomicInteger next = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Void>> futures = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                futures.add(executor.submit(() -> {
+                    Document document = new Document();
+                    Field field = new TextField(FIELD, "", Field.Store.NO);
+                    document.add(field);
+                    int index;
+                    while ((index = next.getAndIncrement()) < documents.size()) {
+                        field.setStringValue(documents.get(index));
+                        writer.addDocument(document);
+                    }
+                    return null;
+                }));
+            }
+            for (Future<Void> future : futures) {
+                future.get();
+            }
+        } catch (ExecutionException e) {
+            throw new IOException("Indexing failed", e.getCause());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private static List<MemoryPoolMXBean> heapPools() {
+        List<MemoryPoolMXBean> pools = new ArrayList<>();
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                pools.add(pool);
+            }
+        }
+        return pools;
+    }
+
+    private static void deleteAll(Path path) throws IOException {
+        try (Stream<Path> files = Files.walk(path)) {
+            List<Path> paths = files.collect(Collectors.toList());
+            Collections.reverse(paths);
+            for (Path file : paths) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    /**
+     * @param config name or name:param=value,param=value
+     * @param dictionary path of the dictionary, used unless the config sets fst
+     * @return parameters of the filter factory, null for the baseline
+     */
+    static Map<String, String> parseConfig(String config, String dictionary) {
+        int colon = config.indexOf(':');
+        if (colon < 0 && BASELINE.equals(config)) {
+            return null;
+        }
+        Map<String, String> params = new LinkedHashMap<>();
+        params.put(FSTTokenFilterFactory.PARAM_DICTIONARY, dictionary);
+        if (colon >= 0) {
+            for (String param : config.substring(colon + 1).split(",")) {
+                int equals = param.indexOf('=');
+                if (equals < 0) {
+                    throw new IllegalArgumentException("Expected param=value in " + config);
+                }
+                params.put(param.substring(0, equals), param.substring(equals + 1));
+            }
+        }
+        return params;
+    }
+
+    private static String flagValue(String[] args, String name, String defaultValue) {
+        for (String arg : args) {
+            if (arg.startsWith("--" + name + "=")) {
+                return arg.substring(name.length() + 3);
+            }
+        }
+        return defaultValue;
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        Path input = Paths.get(flagValue(args, "input", BenchmarkData.resolve(BenchmarkData.SAMPLE).toString()));
+        int lines = Integer.parseInt(flagValue(args, "lines", "100"));
+        int repeat = Integer.parseInt(flagValue(args, "repeat", "5"));
+        String dictionary = BenchmarkData.resolve("fst/slovaklemma.fst").toString();
+        List<String> configs = new ArrayList<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--")) {
+                configs.add(arg);
+            }
+        }
+        if (configs.isEmpty()) {
+            configs.add("lemmas");
+            configs.add("top1:maxLemmas=1");
+            configs.add("cache:cacheSize=16384");
+        }
+        configs.add(0, BASELINE);
+
+        List<String> corpus = readDocuments(input, lines);
+        List<String> documents = new ArrayList<>();
+        for (int i = 0; i < repeat; i++) {
+            documents.addAll(corpus);
+        }
+        Path indexRoot = Paths.get(flagValue(args, "index", System.getProperty("java.io.tmpdir")));
+        IndexingBenchmark benchmark = new IndexingBenchmark(documents, indexRoot);
+        System.out.println(documents.size() + " documents, " + Runtime.getRuntime().availableProcessors() + " processors");
+        // the first run warms up the JIT and is not reported
+        benchmark.run(parseConfig(configs.get(configs.size() - 1), dictionary), 1);
+
+        int rounds = Integer.parseInt(flagValue(args, "rounds", "3"));
+        System.out.println(String.format("%-24s %7s %10s %12s %9s %10s %12s %8s",
+                "config", "threads", "docs/s", "tokens/s", "heap MB", "index KB", "postings KB", "vs base"));
+        for (String threadsArg : flagValue(args, "threads", "1,2,4").split(",")) {
+            int threads = Integer.parseInt(threadsArg);
+            Result[] best = new Result[configs.size()];
+            for (int round = 0; round < rounds; round++) {
+                for (int i = 0; i < best.length; i++) {
+                    Result result = benchmark.run(parseConfig(configs.get(i), dictionary), threads);
+                    if (best[i] == null || result.docsPerSecond > best[i].docsPerSecond) {
+                        best[i] = result;
+                    }
+                }
+            }
+            for (int i = 0; i < best.length; i++) {
+                Result result = best[i];
+                System.out.println(String.format("%-24s %7d %10.0f %12.0f %9d %10d %12d %7.0f%%",
+                        configs.get(i), threads, result.docsPerSecond, result.tokensPerSecond, result.peakHeap >> 20,
+                        result.indexSize >> 10, result.postingsSize >> 10, 100 * result.docsPerSecond / best[0].docsPerSecond));
+            }
+        }
+    }
+}
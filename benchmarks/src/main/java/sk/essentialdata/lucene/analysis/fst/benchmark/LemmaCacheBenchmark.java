@@ -0,0 +1,80 @@
+package sk.essentialdata.lucene.analysis.fst.benchmark;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.apache.lucene.util.CharsRefBuilder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import sk.essentialdata.lucene.analysis.fst.LemmaCache;
+import sk.essentialdata.lucene.analysis.fst.LemmaDictionary;
+import sk.essentialdata.lucene.analysis.fst.LoadMode;
+
+/**
+ * Time of one lookup of a word of the Wikipedia sample through a {@link LemmaCache} of the given size,
+ * cache size 0 is the plain FST lookup. The hit rate and the size of the cache are printed in the teardown.
+ * @author miso
+ * @date 10/17/26.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LemmaCacheBenchmark {
+    static final int TOKENS = 10000;
+    static final String DICTIONARY = "fst/slovaklemma.fst";
+
+    @Param({"0", "1024", "8192", "65536"})
+    public int cacheSize;
+
+    private LemmaCache cache;
+    private LemmaDictionary.Lookup lookup;
+    private char[][] tokens;
+    private final CharsRefBuilder lemmas = new CharsRefBuilder();
+
+    @Setup
+    public void setUp() throws IOException {
+        LemmaDictionary dictionary = LemmaDictionary.load(BenchmarkData.resolve(DICTIONARY), LoadMode.HEAP);
+        if (cacheSize > 0) {
+            cache = new LemmaCache(dictionary, cacheSize);
+            lookup = cache.newLookup();
+        } else {
+            lookup = dictionary.newLookup();
+        }
+        List<String> words = BenchmarkData.sampleWords();
+        tokens = new char[TOKENS][];
+        for (int i = 0; i < TOKENS; i++) {
+            tokens[i] = words.get(i % words.size()).toCharArray();
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        if (cache != null) {
+            System.out.println(String.format("Cache of %d words: hit rate %.1f %%, %d KB", cacheSize,
+                    100.0 * cache.getHits() / (cache.getHits() + cache.getMisses()), cache.ramBytesUsed() / 1024));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(TOKENS)
+    public void lookup(Blackhole blackhole) throws IOException {
+        for (char[] token : tokens) {
+            blackhole.consume(lookup.lookup(token, 0, token.length, lemmas));
+        }
+    }
+}
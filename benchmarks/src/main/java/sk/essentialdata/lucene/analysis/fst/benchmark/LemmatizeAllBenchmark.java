@@ -0,0 +1,62 @@
+package sk.essentialdata.lucene.analysis.fst.benchmark;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import sk.essentialdata.lucene.analysis.fst.LemmaDictionary;
+import sk.essentialdata.lucene.analysis.fst.Lemmatizer;
+import sk.essentialdata.lucene.analysis.fst.LoadMode;
+
+/**
+ * Time of {@link Lemmatizer#lemmatizeAll(List, ForkJoinPool)} of all words of the Wikipedia sample
+ * on a fork-join pool of 1, 2 and 4 threads.
+ * @author miso
+ * @date 10/17/26.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LemmatizeAllBenchmark {
+    static final String DICTIONARY = "fst/slovaklemma.fst";
+
+    @Param({"1", "2", "4"})
+    public int threads;
+
+    private Lemmatizer lemmatizer;
+    private List<String> words;
+    private ForkJoinPool pool;
+
+    @Setup
+    public void setUp() throws IOException {
+        lemmatizer = new Lemmatizer(LemmaDictionary.load(BenchmarkData.resolve(DICTIONARY), LoadMode.HEAP));
+        words = BenchmarkData.sampleWords();
+        pool = new ForkJoinPool(threads);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    @Benchmark
+    public String[][] lemmatizeAll() {
+        return lemmatizer.lemmatizeAll(words, pool);
+    }
+}
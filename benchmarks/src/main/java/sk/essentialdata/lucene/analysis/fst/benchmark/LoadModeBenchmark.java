@@ -0,0 +1,75 @@
+package sk.essentialdata.lucene.analysis.fst.benchmark;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.CharsRef;
+import org.apache.lucene.util.fst.FST;
+import org.apache.lucene.util.fst.Util;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import sk.essentialdata.lucene.analysis.fst.LoadMode;
+
+/**
+ * Time of loading the FST in each {@link LoadMode} and of a Util.get in the loaded FST. The bytes allocated
+ * by a load are reported by the GC profiler of {@link BenchmarkRunner}.
+ * @author miso
+ * @date 10/17/26.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LoadModeBenchmark {
+    static final int TOKENS = 10000;
+    static final String DICTIONARY = "fst/slovaklemma.fst";
+
+    @Param({"heap", "mmap"})
+    public String loadMode;
+
+    private LoadMode mode;
+    private Path path;
+    private FST<CharsRef> fst;
+    private BytesRef[] tokens;
+
+    @Setup
+    public void setUp() throws IOException {
+        mode = LoadMode.fromString(loadMode);
+        path = BenchmarkData.resolve(DICTIONARY);
+        fst = mode.load(path);
+        List<String> words = BenchmarkData.sampleWords();
+        tokens = new BytesRef[TOKENS];
+        for (int i = 0; i < TOKENS; i++) {
+            tokens[i] = new BytesRef(words.get(i % words.size()));
+        }
+    }
+
+    @Benchmark
+    public FST<CharsRef> load() throws IOException {
+        return mode.load(path);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(TOKENS)
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public void lookup(Blackhole blackhole) throws IOException {
+        for (BytesRef token : tokens) {
+            blackhole.consume(Util.get(fst, token));
+        }
+    }
+}
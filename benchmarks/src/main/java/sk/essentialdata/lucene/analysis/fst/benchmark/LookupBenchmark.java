@@ -0,0 +1,89 @@
+package sk.essentialdata.lucene.analysis.fst.benchmark;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.CharsRef;
+import org.apache.lucene.util.CharsRefBuilder;
+import org.apache.lucene.util.fst.CharSequenceOutputs;
+import org.apache.lucene.util.fst.FST;
+import org.apache.lucene.util.fst.Util;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import sk.essentialdata.lucene.analysis.fst.LemmaDictionary;
+import sk.essentialdata.lucene.analysis.fst.LoadMode;
+
+/**
+ * Time of one lookup of a token: Lucene's Util.get against {@link LemmaDictionary.Lookup},
+ * for the dictionaries with and without diacritics and for words found (hits) or not found (misses).
+ * @author miso
+ * @date 10/17/26.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LookupBenchmark {
+    static final int TOKENS = 10000;
+
+    @Param({"fst/slovaklemma.fst", "fst/slovaklemma_ascii.fst"})
+    public String dictionary;
+
+    @Param({"hits", "misses"})
+    public String input;
+
+    private FST<CharsRef> fst;
+    private LemmaDictionary.Lookup lookup;
+    private BytesRef[] utf8Tokens;
+    private char[][] tokens;
+    private final CharsRefBuilder lemmas = new CharsRefBuilder();
+
+    @Setup
+    public void setUp() throws IOException {
+        fst = FST.read(BenchmarkData.resolve(dictionary), CharSequenceOutputs.getSingleton());
+        LemmaDictionary lemmaDictionary = LemmaDictionary.load(BenchmarkData.resolve(dictionary), LoadMode.HEAP);
+        lookup = lemmaDictionary.newLookup();
+        String[] words = BenchmarkData.select(lemmaDictionary, BenchmarkData.sampleWords(), "hits".equals(input), TOKENS);
+        utf8Tokens = new BytesRef[TOKENS];
+        tokens = new char[TOKENS][];
+        for (int i = 0; i < TOKENS; i++) {
+            utf8Tokens[i] = new BytesRef(words[i]);
+            tokens[i] = words[i].toCharArray();
+        }
+    }
+
+    /**
+     * Util.get on a term already converted to UTF-8, as the old filter did.
+     */
+    @Benchmark
+    @OperationsPerInvocation(TOKENS)
+    public void utilGet(Blackhole blackhole) throws IOException {
+        for (BytesRef token : utf8Tokens) {
+            blackhole.consume(Util.get(fst, token));
+        }
+    }
+
+    /**
+     * Lookup straight from the char buffer of the term, as the filter does.
+     */
+    @Benchmark
+    @OperationsPerInvocation(TOKENS)
+    public void lookup(Blackhole blackhole) throws IOException {
+        for (char[] token : tokens) {
+            blackhole.consume(lookup.lookup(token, 0, token.length, lemmas));
+        }
+    }
+}
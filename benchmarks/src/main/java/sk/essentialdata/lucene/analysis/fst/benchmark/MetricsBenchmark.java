@@ -0,0 +1,95 @@
+package sk.essentialdata.lucene.analysis.fst.benchmark;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.Tokenizer;
+import org.apache.lucene.analysis.core.WhitespaceTokenizer;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import sk.essentialdata.lucene.analysis.fst.FSTTokenFilterFactory;
+import sk.essentialdata.lucene.analysis.fst.LemmatizerMetrics;
+
+/**
+ * Time per token of FSTTokenFilter with and without metrics="true", the difference is the cost of the counters
+ * and of the sampled lookup timing. The counters and the latency percentiles are printed in the teardown.
+ * @author miso
+ * @date 10/17/26.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MetricsBenchmark {
+    static final int WORDS = 10000;
+    static final String DICTIONARY = "fst/slovaklemma.fst";
+
+    @Param({"false", "true"})
+    public boolean metrics;
+
+    private FSTTokenFilterFactory factory;
+    private String text;
+    private Tokenizer tokenizer;
+    private TokenStream stream;
+    private CharTermAttribute termAtt;
+
+    @Setup
+    public void setUp() throws IOException {
+        List<String> words = BenchmarkData.sampleWords();
+        text = String.join(" ", words.subList(0, WORDS));
+        Map<String, String> args = new HashMap<>();
+        args.put(FSTTokenFilterFactory.PARAM_DICTIONARY, BenchmarkData.resolve(DICTIONARY).toString());
+        args.put(FSTTokenFilterFactory.PARAM_METRICS, String.valueOf(metrics));
+        factory = new FSTTokenFilterFactory(args);
+        factory.inform(null);
+        tokenizer = new WhitespaceTokenizer();
+        stream = factory.create(tokenizer);
+        termAtt = stream.addAttribute(CharTermAttribute.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        LemmatizerMetrics lemmatizerMetrics = factory.getMetrics();
+        if (lemmatizerMetrics != null) {
+            System.out.println(String.format("Tokens %d, hit ratio %.3f, ambiguous ratio %.3f, extra lemmas per token %.3f, "
+                            + "lookup mean %.0f ns, p50 %d ns, p99 %d ns, p99.9 %d ns",
+                    lemmatizerMetrics.getTokens(), lemmatizerMetrics.getHitRatio(), lemmatizerMetrics.getAmbiguousRatio(),
+                    lemmatizerMetrics.getExtraLemmasPerToken(), lemmatizerMetrics.getLookupMeanNanos(),
+                    lemmatizerMetrics.getLookupP50Nanos(), lemmatizerMetrics.getLookupP99Nanos(), lemmatizerMetrics.getLookupP999Nanos()));
+        }
+        stream.close();
+        factory.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(WORDS)
+    public void analyze(Blackhole blackhole) throws IOException {
+        tokenizer.setReader(new StringReader(text));
+        stream.reset();
+        while (stream.incrementToken()) {
+            blackhole.consume(termAtt.length());
+        }
+        stream.end();
+        stream.close();
+    }
+}
@@ -0,0 +1,63 @@
+package sk.essentialdata.lucene.analysis.fst.benchmark;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import sk.essentialdata.lucene.analysis.fst.FSTBuilder;
+import sk.essentialdata.lucene.analysis.fst.LemmaDictionary;
+
+/**
+ * Time of compiling an overlay of the given number of mappings by {@link FSTBuilder#buildOverlay},
+ * as the filter does on every load and reload of the overlay file.
+ * @author miso
+ * @date 10/17/26.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OverlayBenchmark {
+
+    @Param({"1000", "5000", "20000"})
+    public int mappings;
+
+    private Path overlay;
+
+    @Setup
+    public void setUp() throws IOException {
+        overlay = Files.createTempFile("overlaybenchmark", ".tsv");
+        List<String> lines = new ArrayList<>();
+        for (int i = 0; i < mappings; i++) {
+            lines.add("termín" + i + "\ttermínu" + i + "\tSSis2");
+        }
+        Files.write(overlay, lines, StandardCharsets.UTF_8);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.delete(overlay);
+    }
+
+    @Benchmark
+    public LemmaDictionary buildOverlay() throws IOException {
+        return FSTBuilder.buildOverlay(overlay);
+    }
+}
@@ -0,0 +1,143 @@
+package sk.essentialdata.lucene.analysis.fst.benchmark;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.Tokenizer;
+import org.apache.lucene.analysis.core.WhitespaceTokenizer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.util.IOUtils;
+import org.apache.lucene.util.QueryBuilder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import sk.essentialdata.lucene.analysis.fst.FSTBuilder;
+import sk.essentialdata.lucene.analysis.fst.FSTTokenFilterFactory;
+
+/**
+ * Time of a two-word phrase query in an index of the Wikipedia sample (documents of 100 words) lemmatized with all
+ * lemmas of a word or with maxLemmas of them, ranked by the frequencies of the words of the sample itself.
+ * The size of the index is printed in the setup.
+ * @author miso
+ * @date 10/17/26.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RankingBenchmark {
+    static final int QUERIES = 2000;
+    static final String DICTIONARY = "fst/slovaklemma.fst";
+
+    /**
+     * 0 keeps all lemmas
+     */
+    @Param({"0", "1"})
+    public int maxLemmas;
+
+    private Path tempDir;
+    private FSTTokenFilterFactory factory;
+    private Directory directory;
+    private DirectoryReader reader;
+    private IndexSearcher searcher;
+    private List<Query> queries;
+
+    @Setup
+    public void setUp() throws IOException {
+        tempDir = Files.createTempDirectory("rankingbenchmark");
+        List<String> words = BenchmarkData.sampleWords();
+        Map<String, Long> counts = new HashMap<>();
+        for (String word : words) {
+            counts.merge(word, 1L, Long::sum);
+        }
+        List<String> frequencies = new ArrayList<>();
+        counts.forEach((word, count) -> frequencies.add(word + " " + count));
+        Path frequencyFile = tempDir.resolve("frequencies.txt");
+        Files.write(frequencyFile, frequencies, StandardCharsets.UTF_8);
+        Path ranked = tempDir.resolve("ranked.fst");
+        FSTBuilder.main(new String[] {"-i", BenchmarkData.resolve(DICTIONARY).toString(), "-o", ranked.toString(),
+                "--frequencies=" + frequencyFile});
+
+        Map<String, String> args = new HashMap<>();
+        args.put(FSTTokenFilterFactory.PARAM_DICTIONARY, ranked.toString());
+        args.put(FSTTokenFilterFactory.PARAM_MAX_LEMMAS, String.valueOf(maxLemmas));
+        factory = new FSTTokenFilterFactory(args);
+        factory.inform(null);
+        Analyzer analyzer = new Analyzer() {
+            @Override
+            protected TokenStreamComponents createComponents(String fieldName) {
+                Tokenizer tokenizer = new WhitespaceTokenizer();
+                return new TokenStreamComponents(tokenizer, factory.create(tokenizer));
+            }
+        };
+        directory = FSDirectory.open(tempDir.resolve("index"));
+        try (IndexWriter writer = new IndexWriter(directory, new IndexWriterConfig(analyzer))) {
+            for (int i = 0; i < words.size(); i += 100) {
+                Document document = new Document();
+                document.add(new TextField("text", String.join(" ", words.subList(i, Math.min(i + 100, words.size()))), Field.Store.NO));
+                writer.addDocument(document);
+            }
+            writer.forceMerge(1);
+        }
+        long size = 0;
+        for (String file : directory.listAll()) {
+            size += directory.fileLength(file);
+        }
+        System.out.println(String.format("maxLemmas=%d: index %d KB", maxLemmas, size / 1024));
+        reader = DirectoryReader.open(directory);
+        searcher = new IndexSearcher(reader);
+        QueryBuilder queryBuilder = new QueryBuilder(analyzer);
+        queries = new ArrayList<>();
+        for (int i = 0; queries.size() < QUERIES; i += 37) {
+            queries.add(queryBuilder.createPhraseQuery("text", words.get(i) + " " + words.get(i + 1)));
+        }
+        analyzer.close();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        reader.close();
+        directory.close();
+        factory.close();
+        IOUtils.rm(tempDir);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(QUERIES)
+    public long phraseQuery() throws IOException {
+        long hits = 0;
+        for (Query query : queries) {
+            hits += searcher.count(query);
+        }
+        return hits;
+    }
+}
@@ -0,0 +1,170 @@
+package sk.essentialdata.lucene.analysis.fst.benchmark;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import sk.essentialdata.lucene.analysis.fst.FSTUtils;
+
+/**
+ * Latency of lemmatizing a request of a few KB by starting fstutils lemmatize for each request,
+ * against sending it to a running fstutils serve. Both run as separate processes with the classpath of this one.
+ * Usage: ServerBenchmark [--words=500] [--requests=2000] [--cli-runs=5] [--fst=fst/slovaklemma.fst]
+ * @author miso
+ * @date 10/17/26.
+ */
+public class ServerBenchmark {
+
+    private static String flagValue(String[] args, String name, String defaultValue) {
+        for (String arg : args) {
+            if (arg.startsWith("--" + name + "=")) {
+                return arg.substring(name.length() + 3);
+            }
+        }
+        return defaultValue;
+    }
+
+    private static ProcessBuilder fstutils(String... args) {
+        List<String> command = new ArrayList<>(Arrays.asList(
+                System.getProperty("java.home") + File.separator + "bin" + File.separator + "java",
+                "-cp", System.getProperty("java.class.path"), FSTUtils.class.getName()));
+        command.addAll(Arrays.asList(args));
+        return new ProcessBuilder(command).redirectError(ProcessBuilder.Redirect.INHERIT);
+    }
+
+    /**
+     * @return wall time of one fstutils lemmatize process lemmatizing the request, in ns
+     */
+    static long runCli(String fst, String request) throws IOException, InterruptedException {
+        long start = System.nanoTime();
+        Process process = fstutils("lemmatize", fst, "-e").start();
+        try (OutputStream in = process.getOutputStream()) {
+            in.write(request.getBytes(StandardCharsets.UTF_8));
+        }
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        try (InputStream out = process.getInputStream()) {
+            int read;
+            while ((read = out.read(buffer)) >= 0) {
+                output.write(buffer, 0, read);
+            }
+        }
+        process.waitFor();
+        return System.nanoTime() - start;
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+            return socket.getLocalPort();
+        }
+    }
+
+    private static Socket connect(int port) throws InterruptedException, IOException {
+        for (int attempt = 0; ; attempt++) {
+            try {
+                return new Socket(InetAddress.getLoopbackAddress(), port);
+            } catch (IOException e) {
+                if (attempt > 300) {
+                    throw e;
+                }
+                Thread.sleep(100);
+            }
+        }
+    }
+
+    private static long percentile(long[] sorted, double percentile) {
+        return sorted[Math.min(sorted.length - 1, (int) (sorted.length * percentile))];
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int words = Integer.parseInt(flagValue(args, "words", "500"));
+        int requestCount = Integer.parseInt(flagValue(args, "requests", "2000"));
+        int cliRuns = Integer.parseInt(flagValue(args, "cli-runs", "5"));
+        String fst = flagValue(args, "fst", BenchmarkData.resolve("fst/slovaklemma.fst").toString());
+
+        List<String> sample = BenchmarkData.sampleWords();
+        List<String> requests = new ArrayList<>();
+        for (int start = 0; requests.size() < requestCount; start = (start + words) % (sample.size() - words)) {
+            requests.add(String.join(" ", sample.subList(start, start + words)));
+        }
+        System.out.println(String.format("Requests of %d words (%d bytes)", words,
+                requests.get(0).getBytes(StandardCharsets.UTF_8).length));
+
+        long cliNanos = Long.MAX_VALUE;
+        long cliTotal = 0;
+        for (int i = 0; i < cliRuns; i++) {
+            long nanos = runCli(fst, requests.get(i));
+            cliNanos = Math.min(cliNanos, nanos);
+            cliTotal += nanos;
+        }
+        System.out.println(String.format("fstutils lemmatize per request: mean %.1f ms, best %.1f ms (%d runs)",
+                cliTotal / 1e6 / cliRuns, cliNanos / 1e6, cliRuns));
+
+        int port = freePort();
+        Process server = fstutils("serve", fst, "-e", "--port=" + port).start();
+        try (Socket socket = connect(port);
+             BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8), 1 << 16);
+             Writer out = new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8)) {
+            socket.setTcpNoDelay(true);
+            // warmup of the server's JIT, as a long-running server would be
+            for (String request : requests) {
+                out.write(request);
+                out.write('\n');
+                out.flush();
+                in.readLine();
+            }
+            long[] latencies = new long[requests.size()];
+            long start = System.nanoTime();
+            for (int i = 0; i < requests.size(); i++) {
+                long requestStart = System.nanoTime();
+                out.write(requests.get(i));
+                out.write('\n');
+                out.flush();
+                in.readLine();
+                latencies[i] = System.nanoTime() - requestStart;
+            }
+            long nanos = System.nanoTime() - start;
+            Arrays.sort(latencies);
+            System.out.println(String.format("fstutils serve, one request at a time: p50 %.0f us, p99 %.0f us, %.0f requests/s, %.0f words/s",
+                    percentile(latencies, 0.5) / 1e3, percentile(latencies, 0.99) / 1e3,
+                    requests.size() * 1e9 / nanos, (double) requests.size() * words * 1e9 / nanos));
+
+            // the whole batch sent before reading the answers, written by another thread so that neither side blocks
+            Thread writer = new Thread(() -> {
+                try {
+                    for (String request : requests) {
+                        out.write(request);
+                        out.write('\n');
+                    }
+                    out.flush();
+                } catch (IOException e) {
+                    throw new IllegalStateException(e);
+                }
+            });
+            start = System.nanoTime();
+            writer.start();
+            for (int i = 0; i < requests.size(); i++) {
+                in.readLine();
+            }
+            nanos = System.nanoTime() - start;
+            writer.join();
+            System.out.println(String.format("fstutils serve, batch of %d requests: %.0f requests/s, %.0f words/s",
+                    requests.size(), requests.size() * 1e9 / nanos, (double) requests.size() * words * 1e9 / nanos));
+        } finally {
+            server.destroy();
+            server.waitFor();
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package sk.essentialdata.lucene.analysis.fst.benchmark;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.apache.lucene.util.CharsRefBuilder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import sk.essentialdata.lucene.analysis.fst.LemmaDictionary;
+import sk.essentialdata.lucene.analysis.fst.LoadMode;
+
+/**
+ * Throughput of lookups in one dictionary shared by 1, 2, 4 and 8 threads, each with its own lookup.
+ * The FST is read-only, so the throughput should grow with the number of cores.
+ * @author miso
+ * @date 10/17/26.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SharedDictionaryBenchmark {
+    static final int TOKENS = 10000;
+
+    @State(Scope.Benchmark)
+    public static class SharedDictionary {
+        LemmaDictionary dictionary;
+        char[][] tokens;
+
+        @Setup
+        public void setUp() throws IOException {
+            dictionary = LemmaDictionary.load(BenchmarkData.resolve("fst/slovaklemma.fst"), LoadMode.HEAP);
+            tokens = new char[TOKENS][];
+            List<String> words = BenchmarkData.sampleWords();
+            for (int i = 0; i < TOKENS; i++) {
+                tokens[i] = words.get(i).toCharArray();
+            }
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class ThreadLookup {
+        LemmaDictionary.Lookup lookup;
+        final CharsRefBuilder lemmas = new CharsRefBuilder();
+
+        @Setup
+        public void setUp(SharedDictionary shared) {
+            lookup = shared.dictionary.newLookup();
+        }
+    }
+
+    private static void lookupAll(SharedDictionary shared, ThreadLookup thread, Blackhole blackhole) throws IOException {
+        for (char[] token : shared.tokens) {
+            blackhole.consume(thread.lookup.lookup(token, 0, token.length, thread.lemmas));
+        }
+    }
+
+    @Benchmark
+    @Threads(1)
+    @OperationsPerInvocation(TOKENS)
+    public void threads1(SharedDictionary shared, ThreadLookup thread, Blackhole blackhole) throws IOException {
+        lookupAll(shared, thread, blackhole);
+    }
+
+    @Benchmark
+    @Threads(2)
+    @OperationsPerInvocation(TOKENS)
+    public void threads2(SharedDictionary shared, ThreadLookup thread, Blackhole blackhole) throws IOException {
+        lookupAll(shared, thread, blackhole);
+    }
+
+    @Benchmark
+    @Threads(4)
+    @OperationsPerInvocation(TOKENS)
+    public void threads4(SharedDictionary shared, ThreadLookup thread, Blackhole blackhole) throws IOException {
+        lookupAll(shared, thread, blackhole);
+    }
+
+    @Benchmark
+    @Threads(8)
+    @OperationsPerInvocation(TOKENS)
+    public void threads8(SharedDictionary shared, ThreadLookup thread, Blackhole blackhole) throws IOException {
+        lookupAll(shared, thread, blackhole);
+    }
+}
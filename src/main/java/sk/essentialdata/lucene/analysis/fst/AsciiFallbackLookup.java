@@ -0,0 +1,62 @@
+package sk.essentialdata.lucene.analysis.fst;
+
+import java.io.IOException;
+import org.apache.lucene.analysis.miscellaneous.ASCIIFoldingFilter;
+import org.apache.lucene.util.ArrayUtil;
+import org.apache.lucene.util.CharsRefBuilder;
+
+/**
+ * Looks up the exact form first and only if it is not found, the form folded to ASCII.
+ * Meant for a merged dictionary built with FSTBuilder --merged, which holds both the forms with diacritics
+ * and their ASCII-folded versions, so that one dictionary serves text written with and without diacritics,
+ * including text where only some of the diacritics are written.
+ * The folded form is written to a reused buffer, nothing is allocated per lookup. Not thread-safe.
+ * @author miso
+ * @date 10/17/26.
+ */
+final class AsciiFallbackLookup extends LemmaDictionary.Lookup {
+    private final LemmaDictionary.Lookup lookup;
+    private char[] folded = new char[16];
+
+    AsciiFallbackLookup(LemmaDictionary.Lookup lookup) {
+        this.lookup = lookup;
+    }
+
+    @Override
+    public boolean lookup(char[] buffer, int offset, int length, CharsRefBuilder lemmas) throws IOException {
+        return lookup(buffer, offset, length, lemmas, false);
+    }
+
+    /**
+     * Folding keeps the case (É folds to E), so the folded form is looked up ignoring case as well.
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean lookupIgnoreCase(char[] buffer, int offset, int length, CharsRefBuilder lemmas) throws IOException {
+        return lookup(buffer, offset, length, lemmas, true);
+    }
+
+    private boolean lookup(char[] buffer, int offset, int length, CharsRefBuilder lemmas, boolean ignoreCase) throws IOException {
+        if (ignoreCase ? lookup.lookupIgnoreCase(buffer, offset, length, lemmas) : lookup.lookup(buffer, offset, length, lemmas)) {
+            return true;
+        }
+        int maxLength = 4 * length; // one char folds to at most 4 chars
+        if (folded.length < maxLength) {
+            folded = new char[ArrayUtil.oversize(maxLength, Character.BYTES)];
+        }
+        int foldedLength = ASCIIFoldingFilter.foldToASCII(buffer, offset, folded, 0, length);
+        if (foldedLength == length && sameChars(buffer, offset, length)) {
+            return false; // nothing to fold, the same form was just looked up
+        }
+        return ignoreCase ? lookup.lookupIgnoreCase(folded, 0, foldedLength, lemmas) : lookup.lookup(folded, 0, foldedLength, lemmas);
+    }
+
+    private boolean sameChars(char[] buffer, int offset, int length) {
+        for (int i = 0; i < length; i++) {
+            if (buffer[offset + i] != folded[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,164 @@
+package sk.essentialdata.lucene.analysis.fst;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.apache.lucene.util.CharsRefBuilder;
+
+/**
+ * Lemmatizes a large text on a pool of worker threads sharing one dictionary.
+ * <p>
+ * The input is read in chunks, which end at a word boundary, so no word is split between two chunks.
+ * Each chunk is lemmatized by one of the workers into its own output buffer and the buffers are written
+ * in the order of the input. At most a few chunks per worker are in flight, so the memory used does not
+ * depend on the size of the input.
+ * <p>
+ * The output of a chunk is that of {@link Lemmatizer#lemmatizeText}.
+ * @author miso
+ * @date 10/17/26.
+ */
+public class BatchLemmatizer {
+    public static final int DEFAULT_CHUNK_SIZE = 1 << 16;
+    private static final int CHUNKS_PER_THREAD = 4;
+
+    private final Lemmatizer lemmatizer;
+    private final int threads;
+    private final int chunkSize;
+    private final boolean echo;
+
+    /**
+     * @param dictionary
+     * @param threads number of worker threads
+     * @param chunkSize number of chars read at once
+     * @param echo whether to output the words which are not in the dictionary
+     */
+    public BatchLemmatizer(LemmaDictionary dictionary, int threads, int chunkSize, boolean echo) {
+        this(new Lemmatizer(dictionary), threads, chunkSize, echo);
+    }
+
+    /**
+     * @param lemmatizer
+     * @param threads number of worker threads
+     * @param chunkSize number of chars read at once
+     * @param echo whether to output the words which are not in the dictionary
+     */
+    public BatchLemmatizer(Lemmatizer lemmatizer, int threads, int chunkSize, boolean echo) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Number of threads must be positive: " + threads);
+        }
+        if (chunkSize < 2) {
+            throw new IllegalArgumentException("Chunk size must be at least 2: " + chunkSize);
+        }
+        this.lemmatizer = lemmatizer;
+        this.threads = threads;
+        this.chunkSize = chunkSize;
+        this.echo = echo;
+    }
+
+    /**
+     * Lemmatizes the whole input. Neither reader nor writer is closed, the writer is flushed.
+     * @param in
+     * @param out
+     * @return number of words
+     * @throws IOException
+     */
+    public long lemmatize(Reader in, Writer out) throws IOException {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            Deque<Future<Chunk>> pending = new ArrayDeque<>();
+            long words = 0;
+            char[] carry = new char[0];
+            int carryLength = 0;
+            while (true) {
+                char[] text = Arrays.copyOf(carry, Math.max(chunkSize, carryLength * 2));
+                int length = carryLength;
+                int read = 0;
+                while (length < text.length && (read = in.read(text, length, text.length - length)) >= 0) {
+                    length += read;
+                }
+                boolean last = read < 0;
+                int end = last ? length : wordBoundary(text, length);
+                carryLength = length - end;
+                carry = Arrays.copyOfRange(text, end, length);
+                if (end > 0) {
+                    final int chunkLength = end;
+                    pending.add(executor.submit(() -> lemmatize(text, chunkLength)));
+                }
+                while (!pending.isEmpty() && (last || pending.size() >= threads * CHUNKS_PER_THREAD)) {
+                    words += write(pending.poll(), out);
+                }
+                if (last) {
+                    break;
+                }
+            }
+            out.flush();
+            return words;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static long write(Future<Chunk> future, Writer out) throws IOException {
+        Chunk chunk;
+        try {
+            chunk = future.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new IOException("Lemmatization failed", cause);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Lemmatization was interrupted", e);
+        }
+        out.write(chunk.output.chars(), 0, chunk.output.length());
+        return chunk.words;
+    }
+
+    /**
+     * @param text
+     * @param length
+     * @return the end of the last complete word, i.e. the start of the word touching the end of the text,
+     * or 0 if the whole text is a single word, which then has to be read further
+     */
+    static int wordBoundary(char[] text, int length) {
+        int end = length;
+        if (Character.isHighSurrogate(text[end - 1])) {
+            // the rest of the code point has not been read yet
+            end--;
+        }
+        while (end > 0) {
+            int codePoint = Character.codePointBefore(text, end);
+            if (!Lemmatizer.isWordCodePoint(codePoint)) {
+                return end;
+            }
+            end -= Character.charCount(codePoint);
+        }
+        return 0;
+    }
+
+    private static class Chunk {
+        private final CharsRefBuilder output;
+        private final long words;
+
+        private Chunk(CharsRefBuilder output, long words) {
+            this.output = output;
+            this.words = words;
+        }
+    }
+
+    private Chunk lemmatize(char[] text, int length) throws IOException {
+        CharsRefBuilder output = new CharsRefBuilder();
+        output.grow(length + length / 4);
+        long words = lemmatizer.lemmatizeText(text, 0, length, echo, output);
+        return new Chunk(output, words);
+    }
+}
@@ -0,0 +1,57 @@
+package sk.essentialdata.lucene.analysis.fst;
+
+import java.util.Locale;
+import org.apache.lucene.util.fst.Builder;
+import org.apache.lucene.util.fst.FST;
+import org.apache.lucene.util.fst.Outputs;
+
+/**
+ * Preset of the defaults of a build, chosen by FSTBuilder --preset: the defaults of --input and --encoding,
+ * which can still be given explicitly, and whether nodes with many arcs get fixed-size arc arrays, which let
+ * a lookup find the arc by binary search instead of a linear scan for the price of padding.
+ * <p>
+ * The other parameters of the Lucene builder are the same for all presets. Every preset shares all suffixes:
+ * on the Slovak dictionary sharing only the tails up to 2 to 8 nodes (shareMaxTailLength) or only the nodes
+ * with a single inbound arc (doShareNonSingletonNodes=false) makes the FST 1 to 8 times bigger and does not make
+ * lookups any faster. Lucene 7 has no FST packing (removed in 7.0) and no direct addressing of arcs (added in 8.4),
+ * and its thresholds for arc arrays are constants.
+ * <ul>
+ *     <li>COMPACT: no arc arrays, suffix encoding</li>
+ *     <li>BALANCED: Lucene defaults, the format readable by all versions</li>
+ *     <li>FAST: arc arrays, UTF-16 input (no conversion to UTF-8 at lookup time), suffix encoding</li>
+ * </ul>
+ * @author miso
+ * @date 10/17/26.
+ */
+enum BuildPreset {
+    COMPACT(false, "byte1", "suffix"),
+    BALANCED(true, "byte1", "lemmas"),
+    FAST(true, "byte2", "suffix");
+
+    private static final int BYTES_PAGE_BITS = 15;
+
+    private final boolean allowArrayArcs;
+    final String defaultInput;
+    final String defaultEncoding;
+
+    BuildPreset(boolean allowArrayArcs, String defaultInput, String defaultEncoding) {
+        this.allowArrayArcs = allowArrayArcs;
+        this.defaultInput = defaultInput;
+        this.defaultEncoding = defaultEncoding;
+    }
+
+    /**
+     * @return a builder sharing all suffixes, with arc arrays if the preset allows them
+     */
+    <T> Builder<T> newBuilder(FST.INPUT_TYPE inputType, Outputs<T> outputs) {
+        return new Builder<>(inputType, 0, 0, true, true, Integer.MAX_VALUE, outputs, allowArrayArcs, BYTES_PAGE_BITS);
+    }
+
+    static BuildPreset fromString(String name) {
+        try {
+            return valueOf(name.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown preset " + name + ", expected compact, balanced or fast", e);
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package sk.essentialdata.lucene.analysis.fst;
+
+import java.io.IOException;
+import org.apache.lucene.util.CharsRefBuilder;
+
+/**
+ * Looks up a term ignoring its case, so that capitalized words at the start of a sentence and words in capitals
+ * are found in the lowercase dictionary without a LowerCaseFilter in front. The term is lowercased as the FST is walked,
+ * see {@link LemmaDictionary.Lookup#lookupIgnoreCase}, and keeps its case if it is not found.
+ * <p>
+ * With exactFirst the term is looked up as it is first, which finds the capitalized forms of a dictionary
+ * or an overlay which has them (e.g. "NATO"), and only a term with an uppercase letter is looked up again ignoring case.
+ * With restoreCase the lemmas of a term found ignoring case get its case: all lemmas of a term in capitals
+ * (at least two letters, none lowercase) are in capitals, the first letter of every lemma of a capitalized term is in title case.
+ * Nothing is allocated per lookup. Not thread-safe.
+ * @author miso
+ * @date 10/17/26.
+ */
+final class CaseFoldingLookup extends LemmaDictionary.Lookup {
+    private final LemmaDictionary.Lookup lookup;
+    private final boolean exactFirst;
+    private final boolean restoreCase;
+
+    CaseFoldingLookup(LemmaDictionary.Lookup lookup, boolean exactFirst, boolean restoreCase) {
+        this.lookup = lookup;
+        this.exactFirst = exactFirst;
+        this.restoreCase = restoreCase;
+    }
+
+    @Override
+    public boolean lookup(char[] buffer, int offset, int length, CharsRefBuilder lemmas) throws IOException {
+        if (exactFirst) {
+            if (lookup.lookup(buffer, offset, length, lemmas)) {
+                return true;
+            }
+            if (!hasUpperCase(buffer, offset, length)) {
+                return false; // lowercasing would not change the term
+            }
+        }
+        if (!lookup.lookupIgnoreCase(buffer, offset, length, lemmas)) {
+            return false;
+        }
+        if (restoreCase) {
+            restoreCase(buffer, offset, length, lemmas);
+        }
+        return true;
+    }
+
+    @Override
+    public boolean lookupIgnoreCase(char[] buffer, int offset, int length, CharsRefBuilder lemmas) throws IOException {
+        return lookup.lookupIgnoreCase(buffer, offset, length, lemmas);
+    }
+
+    private static boolean hasUpperCase(char[] buffer, int offset, int length) {
+        for (int i = offset; i < offset + length; i++) {
+            if (Character.toLowerCase(buffer[i]) != buffer[i]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Changes the case of the lemmas in place according to the case of the term, see above.
+     */
+    static void restoreCase(char[] buffer, int offset, int length, CharsRefBuilder lemmas) {
+        if (length == 0 || !Character.isUpperCase(buffer[offset]) && !Character.isTitleCase(buffer[offset])) {
+            return;
+        }
+        int letters = 0;
+        boolean allUpperCase = true;
+        for (int i = offset; i < offset + length; i++) {
+            if (Character.isLetter(buffer[i])) {
+                letters++;
+                if (Character.isLowerCase(buffer[i])) {
+                    allUpperCase = false;
+                    break;
+                }
+            }
+        }
+        char[] chars = lemmas.chars();
+        int lemmasLength = lemmas.length();
+        if (allUpperCase && letters > 1) {
+            for (int i = 0; i < lemmasLength; i++) {
+                chars[i] = Character.toUpperCase(chars[i]);
+            }
+            return;
+        }
+        for (int i = 0; i < lemmasLength; i++) {
+            if (i == 0 || chars[i - 1] == LemmaDictionary.LEMMA_DELIMITER) {
+                chars[i] = Character.toTitleCase(chars[i]);
+            }
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package sk.essentialdata.lucene.analysis.fst;
+
+import java.io.IOException;
+import org.apache.lucene.store.DataOutput;
+import org.apache.lucene.util.ArrayUtil;
+import org.apache.lucene.util.CharsRef;
+import org.apache.lucene.util.CharsRefBuilder;
+import org.apache.lucene.util.fst.FST;
+import org.apache.lucene.util.fst.IntsRefFSTEnum;
+
+/**
+ * Dictionary stored as a plain FST, whose outputs are the lemmas delimited by "|".
+ * This is the format of the original slovaklemma.fst. The input type of the FST is stored in the FST itself,
+ * see {@link FSTInput}.
+ * @author miso
+ * @date 10/17/26.
+ */
+class CharsRefLemmaDictionary extends LemmaDictionary {
+    final FST<CharsRef> fst;
+
+    CharsRefLemmaDictionary(FST<CharsRef> fst) {
+        this.fst = fst;
+    }
+
+    @Override
+    public Lookup newLookup() {
+        return new CharsRefLookup();
+    }
+
+    @Override
+    public void save(DataOutput out) throws IOException {
+        fst.save(out);
+    }
+
+    @Override
+    void forEachEntry(EntryConsumer consumer) throws IOException {
+        IntsRefFSTEnum<CharsRef> fstEnum = new IntsRefFSTEnum<>(fst);
+        IntsRefFSTEnum.InputOutput<CharsRef> entry;
+        while ((entry = fstEnum.next()) != null) {
+            consumer.accept(FSTInput.toString(fst.inputType, entry.input), entry.output.toString());
+        }
+    }
+
+    @Override
+    public long ramBytesUsed() {
+        return fst.ramBytesUsed();
+    }
+
+    private class CharsRefLookup extends FSTLookup<CharsRef> {
+        private CharsRefBuilder lemmas;
+        /**
+         * @var prefixLemmas output accumulated along the arcs of the previous lookupNext, prefixLengths[i] after i arcs
+         */
+        private final CharsRefBuilder prefixLemmas = new CharsRefBuilder();
+        private int[] prefixLengths = new int[16];
+
+        private CharsRefLookup() {
+            super(CharsRefLemmaDictionary.this.fst);
+        }
+
+        /**
+         * Walks the FST arcs directly, so that the output is accumulated into the lemmas
+         * instead of allocating a new CharsRef for every arc as Util.get does.
+         * {@inheritDoc}
+         */
+        @Override
+        public boolean lookup(char[] buffer, int offset, int length, CharsRefBuilder lemmas) throws IOException {
+            return lookup(buffer, offset, length, lemmas, false);
+        }
+
+        @Override
+        public boolean lookupIgnoreCase(char[] buffer, int offset, int length, CharsRefBuilder lemmas) throws IOException {
+            return lookup(buffer, offset, length, lemmas, true);
+        }
+
+        private boolean lookup(char[] buffer, int offset, int length, CharsRefBuilder lemmas, boolean lowerCase) throws IOException {
+            lemmas.clear();
+            this.lemmas = lemmas;
+            if (!walk(buffer, offset, length, lowerCase)) {
+                return false;
+            }
+            accumulate(arc.nextFinalOutput);
+            return lemmas.length() > 0;
+        }
+
+        @Override
+        public boolean lookupNext(char[] buffer, int offset, int length, CharsRefBuilder lemmas) throws IOException {
+            lemmas.clear();
+            this.lemmas = prefixLemmas;
+            if (!walkFromPrefix(buffer, offset, length)) {
+                return false;
+            }
+            lemmas.copyChars(prefixLemmas.chars(), 0, prefixLemmas.length());
+            CharsRef finalOutput = arc.nextFinalOutput;
+            if (finalOutput.length > 0) {
+                lemmas.append(finalOutput.chars, finalOutput.offset, finalOutput.length);
+            }
+            return lemmas.length() > 0;
+        }
+
+        @Override
+        protected void markDepth(int depth) {
+            prefixLengths = ArrayUtil.grow(prefixLengths, depth + 1);
+            prefixLengths[depth] = prefixLemmas.length();
+        }
+
+        @Override
+        protected void resetToDepth(int depth) {
+            prefixLemmas.setLength(depth == 0 ? 0 : prefixLengths[depth]);
+        }
+
+        @Override
+        protected void accumulate(CharsRef output) {
+            if (output.length > 0) {
+                lemmas.append(output.chars, output.offset, output.length);
+            }
+        }
+    }
+}
@@ -0,0 +1,352 @@
+package sk.essentialdata.lucene.analysis.fst;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.function.ToLongFunction;
+import org.apache.lucene.codecs.CodecUtil;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.store.IOContext;
+import org.apache.lucene.store.IndexOutput;
+import org.apache.lucene.util.ArrayUtil;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.BytesRefBuilder;
+import org.apache.lucene.util.IOUtils;
+import org.apache.lucene.util.OfflineSorter;
+
+/**
+ * Collects (form, lemma) mappings in spill files on disk and sorts them with {@link OfflineSorter},
+ * so that the heap needed to build a dictionary does not depend on the size of the input.
+ * <p>
+ * Mappings are added to {@link Run}s, which can be filled and sorted in parallel, e.g. one run per input file.
+ * {@link #forEachEntry} then merges all the sorted runs.
+ * <p>
+ * Each mapping is one record: UTF-8 form, zero byte, 8 bytes of sequence number, UTF-8 lemma.
+ * Sorting the records sorts them by form (in the order the FST needs) and then by the order
+ * in which the lemmas were added, so the lemmas of a form keep the order of the input.
+ * The sequence number starts with the number of the run, so the order does not depend on
+ * which run was sorted first. Its highest bit marks fallback mappings, which thus come after
+ * all the other mappings of the form and are dropped if there are any.
+ * <p>
+ * With {@link #rankLemmas} the lemmas of a form are ordered by their weight, then by the number of times
+ * the mapping was added (e.g. the number of tags of the form for that lemma) and only then by the input order.
+ * @author miso
+ * @date 10/17/26.
+ */
+class DictionarySorter implements Closeable {
+    private static final String TEMP_PREFIX = "dict";
+    private static final int RUN_SHIFT = 40;
+    private static final long FALLBACK = Long.MIN_VALUE;
+
+    private final Path tempPath;
+    private final Directory tempDir;
+    private final int ramBufferMB;
+    private final List<Run> runs = new ArrayList<>();
+    /**
+     * @var lemmaWeights weights of lemmas for ranking, null to keep the input order
+     */
+    private ToLongFunction<String> lemmaWeights;
+
+    /**
+     * @param tempRoot directory, in which the temporary files are created
+     * @param ramBufferMB RAM budget of each sorted run
+     * @throws IOException
+     */
+    DictionarySorter(Path tempRoot, int ramBufferMB) throws IOException {
+        this.tempPath = Files.createTempDirectory(tempRoot, "fstbuilder");
+        this.tempDir = FSDirectory.open(tempPath);
+        this.ramBufferMB = ramBufferMB;
+    }
+
+    /**
+     * Creates a new run. Runs are merged in the order of their creation.
+     * @return the run, which must be filled by a single thread
+     * @throws IOException
+     */
+    synchronized Run newRun() throws IOException {
+        Run run = new Run(runs.size());
+        runs.add(run);
+        return run;
+    }
+
+    /**
+     * @return number of mappings added to all runs so far, including duplicates
+     */
+    synchronized long count() {
+        long count = 0;
+        for (Run run : runs) {
+            count += run.count;
+        }
+        return count;
+    }
+
+    /**
+     * Orders the lemmas of every form by the given weight (highest first), then by the number of times
+     * the mapping was added and then by the input order.
+     * @param lemmaWeights
+     */
+    void rankLemmas(ToLongFunction<String> lemmaWeights) {
+        this.lemmaWeights = lemmaWeights;
+    }
+
+    class Run implements Closeable {
+        private final IndexOutput spillOutput;
+        private OfflineSorter.ByteSequencesWriter spill;
+        private String sortedFileName;
+        private long sequence;
+        private long count;
+        private final BytesRefBuilder record = new BytesRefBuilder();
+        private final BytesRefBuilder lemmaBytes = new BytesRefBuilder();
+
+        private Run(int number) throws IOException {
+            this.sequence = (long) number << RUN_SHIFT;
+            this.spillOutput = tempDir.createTempOutput(TEMP_PREFIX, "spill", IOContext.DEFAULT);
+            this.spill = new OfflineSorter.ByteSequencesWriter(spillOutput);
+        }
+
+        void add(String form, String lemma) throws IOException {
+            add(form, lemma, 0);
+        }
+
+        /**
+         * Adds a mapping, which is used only if the form has no mapping added by {@link #add}.
+         * @param form
+         * @param lemma
+         * @throws IOException
+         */
+        void addFallback(String form, String lemma) throws IOException {
+            add(form, lemma, FALLBACK);
+        }
+
+        private void add(String form, String lemma, long flags) throws IOException {
+            if (spill == null) {
+                throw new IllegalStateException("Mappings cannot be added after sorting");
+            }
+            record.copyChars(form);
+            record.append((byte) 0);
+            long seq = sequence++ | flags;
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                record.append((byte) (seq >>> shift));
+            }
+            lemmaBytes.copyChars(lemma);
+            record.append(lemmaBytes);
+            spill.write(record.get());
+            count++;
+        }
+
+        void sort() throws IOException {
+            CodecUtil.writeFooter(spillOutput);
+            spill.close();
+            spill = null;
+            OfflineSorter sorter = new OfflineSorter(tempDir, TEMP_PREFIX, OfflineSorter.DEFAULT_COMPARATOR,
+                    OfflineSorter.BufferSize.megabytes(ramBufferMB), OfflineSorter.MAX_TEMPFILES, -1, null, 0);
+            sortedFileName = sorter.sort(spillOutput.getName());
+            tempDir.deleteFile(spillOutput.getName());
+        }
+
+        private OfflineSorter.ByteSequencesReader open() throws IOException {
+            if (sortedFileName == null) {
+                throw new IllegalStateException("All runs have to be sorted first");
+            }
+            return new OfflineSorter.ByteSequencesReader(tempDir.openChecksumInput(sortedFileName, IOContext.READONCE), sortedFileName);
+        }
+
+        @Override
+        public void close() throws IOException {
+            IOUtils.close(spill);
+        }
+    }
+
+    /**
+     * Current record of one sorted run during the merge.
+     */
+    private static class RunReader implements Comparable<RunReader> {
+        private final OfflineSorter.ByteSequencesReader reader;
+        private BytesRef current;
+
+        private RunReader(OfflineSorter.ByteSequencesReader reader) {
+            this.reader = reader;
+        }
+
+        private boolean next() throws IOException {
+            current = reader.next();
+            return current != null;
+        }
+
+        @Override
+        public int compareTo(RunReader other) {
+            return OfflineSorter.DEFAULT_COMPARATOR.compare(current, other.current);
+        }
+    }
+
+    /**
+     * Calls the consumer for every distinct form in sorted order, with its distinct lemmas delimited by "|".
+     * The sorted runs are merged on the fly. Can be called any number of times after all runs are sorted.
+     * @param consumer
+     * @throws IOException
+     */
+    void forEachEntry(LemmaDictionary.EntryConsumer consumer) throws IOException {
+        merge((form, lemmas, counts) -> consumer.accept(form, join(rank(lemmas, counts))));
+    }
+
+    /**
+     * Calls the consumer for every distinct form in sorted order with the number of mappings added for it,
+     * including duplicates, e.g. to count occurrences of keys.
+     * @param consumer
+     * @throws IOException
+     */
+    void forEachCount(CountConsumer consumer) throws IOException {
+        merge((form, lemmas, counts) -> {
+            int count = 0;
+            for (int i = 0; i < lemmas.size(); i++) {
+                count += counts[i];
+            }
+            consumer.accept(form, count);
+        });
+    }
+
+    interface CountConsumer {
+        void accept(String form, int count) throws IOException;
+    }
+
+    private interface MergeConsumer {
+        /**
+         * @param form
+         * @param lemmas distinct lemmas of the form in the input order
+         * @param counts counts[i] is the number of times lemmas[i] was added
+         */
+        void accept(String form, List<String> lemmas, int[] counts) throws IOException;
+    }
+
+    private void merge(MergeConsumer consumer) throws IOException {
+        List<RunReader> readers = new ArrayList<>();
+        try {
+            PriorityQueue<RunReader> queue = new PriorityQueue<>();
+            for (Run run : runs) {
+                RunReader reader = new RunReader(run.open());
+                readers.add(reader);
+                if (reader.next()) {
+                    queue.add(reader);
+                }
+            }
+            BytesRefBuilder currentForm = new BytesRefBuilder();
+            List<String> lemmas = new ArrayList<>();
+            int[] counts = new int[8];
+            boolean hasMappings = false;
+            while (!queue.isEmpty()) {
+                RunReader reader = queue.poll();
+                BytesRef next = reader.current;
+                int separator = next.offset;
+                while (next.bytes[separator] != 0) {
+                    separator++;
+                }
+                int formLength = separator - next.offset;
+                boolean fallback = next.bytes[separator + 1] < 0;
+                int lemmaStart = separator + 9;
+                String lemma = new BytesRef(next.bytes, lemmaStart, next.offset + next.length - lemmaStart).utf8ToString();
+                if (!lemmas.isEmpty() && !sameForm(currentForm, next, formLength)) {
+                    consumer.accept(currentForm.get().utf8ToString(), lemmas, counts);
+                    lemmas.clear();
+                }
+                if (lemmas.isEmpty()) {
+                    currentForm.copyBytes(next.bytes, next.offset, formLength);
+                    hasMappings = !fallback;
+                }
+                if (!fallback || !hasMappings) {
+                    int index = lemmas.indexOf(lemma);
+                    if (index < 0) {
+                        counts = ArrayUtil.grow(counts, lemmas.size() + 1);
+                        counts[lemmas.size()] = 1;
+                        lemmas.add(lemma);
+                    } else {
+                        counts[index]++;
+                    }
+                }
+                if (reader.next()) {
+                    queue.add(reader);
+                }
+            }
+            if (!lemmas.isEmpty()) {
+                consumer.accept(currentForm.get().utf8ToString(), lemmas, counts);
+            }
+        } finally {
+            for (RunReader reader : readers) {
+                reader.reader.close();
+            }
+        }
+    }
+
+    private static boolean sameForm(BytesRefBuilder form, BytesRef record, int formLength) {
+        if (form.length() != formLength) {
+            return false;
+        }
+        for (int i = 0; i < formLength; i++) {
+            if (form.byteAt(i) != record.bytes[record.offset + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @param lemmas lemmas of a form in the input order
+     * @param counts counts[i] is the number of times lemmas[i] was added
+     * @return the lemmas in ranked order, or as they are if ranking is off
+     */
+    private List<String> rank(List<String> lemmas, int[] counts) {
+        if (lemmaWeights == null || lemmas.size() == 1) {
+            return lemmas;
+        }
+        List<Integer> order = new ArrayList<>();
+        long[] weights = new long[lemmas.size()];
+        for (int i = 0; i < lemmas.size(); i++) {
+            order.add(i);
+            weights[i] = lemmaWeights.applyAsLong(lemmas.get(i));
+        }
+        order.sort((a, b) -> {
+            int byWeight = Long.compare(weights[b], weights[a]);
+            if (byWeight != 0) {
+                return byWeight;
+            }
+            int byCount = Integer.compare(counts[b], counts[a]);
+            return byCount != 0 ? byCount : Integer.compare(a, b);
+        });
+        List<String> ranked = new ArrayList<>(lemmas.size());
+        for (int i : order) {
+            ranked.add(lemmas.get(i));
+        }
+        return ranked;
+    }
+
+    private static String join(List<String> lemmas) {
+        if (lemmas.size() == 1) {
+            return lemmas.get(0);
+        }
+        StringBuilder joined = new StringBuilder();
+        for (String lemma : lemmas) {
+            if (joined.length() > 0) {
+                joined.append(LemmaDictionary.LEMMA_DELIMITER);
+            }
+            joined.append(lemma);
+        }
+        return joined.toString();
+    }
+
+    /**
+     * Deletes all the temporary files.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            IOUtils.close(runs);
+            IOUtils.close(tempDir);
+        } finally {
+            IOUtils.rm(tempPath);
+        }
+    }
+}
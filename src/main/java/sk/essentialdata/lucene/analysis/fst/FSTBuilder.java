@@ -1,35 +1,72 @@
 package sk.essentialdata.lucene.analysis.fst;
 
+import java.io.BufferedReader;
 import java.io.File;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
 import java.util.Map;
-import java.util.Scanner;
+import java.util.Random;
 import java.util.Set;
 import java.util.SortedMap;
+import java.util.SortedSet;
 import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import org.apache.lucene.analysis.miscellaneous.ASCIIFoldingFilter;
 import org.apache.lucene.util.BytesRef;
 import org.apache.lucene.util.CharsRef;
+import org.apache.lucene.util.CharsRefBuilder;
+import org.apache.lucene.util.IntsRef;
 import org.apache.lucene.util.IntsRefBuilder;
 import org.apache.lucene.util.fst.Builder;
 import org.apache.lucene.util.fst.CharSequenceOutputs;
 import org.apache.lucene.util.fst.FST;
+import org.apache.lucene.util.fst.PositiveIntOutputs;
 import org.apache.lucene.util.fst.Util;
 
 /**
- * Using SortedMap to ensure FST is created in sorted order.
+ * The mappings are collected and sorted on disk by {@link DictionarySorter} to ensure FST is created in sorted order
+ * with a bounded amount of heap, regardless of the size of the input.
+ * Files of an input dir are parsed in parallel, each into its own sorted run, and the runs are merged when building the FST.
  * @author miso
  * @date 4/29/14.
  */
 public class FSTBuilder {
     private static String LEMMA_DELIMITER = "\t";
-    private SortedMap<String, String> dict = new TreeMap<>();;
-    private FST<CharsRef> fst;
+    private static final int DEFAULT_RAM_BUFFER_MB = 64;
+    private static final int REPORT_SAMPLE_SIZE = 20000;
+    /**
+     * @var SANITY_WORDS words checked after the dictionary is built or reloaded, see the sanity check in main
+     */
+    static final List<String> SANITY_WORDS = Arrays.asList("najprudší", "najprudkejší", "neni", "chujovinami", "piči", "falšovanejšia");
+    static final List<String> SANITY_WORDS_ASCII = Arrays.asList("najprudsi", "najprudkejsi", "neni", "chujovinami", "pici");
+    private static final char GUESSER_KEY_DELIMITER = '\u0001';
+    private DictionarySorter dict;
+    private LemmaDictionary dictionary;
     private Set<String> flags;
+    private int threads;
+    private FST.INPUT_TYPE inputType;
+    private Path tempRoot;
+    private int ramBufferMB;
+    private BuildPreset preset;
+    private long nodeCount;
+    private long arcCount;
 
     public FSTBuilder() {
     }
@@ -37,6 +74,7 @@ public class FSTBuilder {
     public static void main(String[] args) throws IOException {
         String inputDirPath = null;
         String inputFilePath = null;
+        String inputFstPath = null;
         String outputFilePath = null;
         FSTBuilder builder = new FSTBuilder();
         builder.flags = new HashSet<>();
@@ -48,46 +86,291 @@ public class FSTBuilder {
             switch (arg) {
               case "-d":
                 inputDirPath = args[i+1];
+                break;
               case "-f":
                 inputFilePath = args[i+1];
+                break;
+              case "-i":
+                inputFstPath = args[i+1];
+                break;
               case "-o":
                 outputFilePath = args[i+1];
+                break;
             }
           }
           i++;
         }
-        if (outputFilePath == null || (inputDirPath == null && inputFilePath == null)) {
+        if (outputFilePath == null || (inputDirPath == null && inputFilePath == null && inputFstPath == null)) {
             System.out.println("USAGE:");
             System.out.println("FSTBuilder -f <dictionary input file path> -o <FST output file path>");
             System.out.println("FSTBuilder -f <dictionary input file path> -o <FST output file path> --ascii");
             System.out.println("FSTBuilder -d <dictionary input dir path> -o <FST output file path>");
             System.out.println("FSTBuilder -d <dictionary input dir path> -o <FST output file path> --ascii");
+            System.out.println("FSTBuilder -i <FST input file path> -o <FST output file path>");
+            System.out.println("Options:");
+            System.out.println("--preset=compact|balanced|fast: defaults of a smaller or a faster FST (default balanced): arc arrays,");
+            System.out.println("    --input and --encoding, a report of the size and lookup time is printed");
+            System.out.println("--format=lemmas|ordinal: FST outputs are lemmas delimited by '|' (default, readable by all versions),");
+            System.out.println("    or numbers of deduplicated sets of lemmas");
+            System.out.println("--encoding=lemmas|suffix: the ordinal format stores whole lemmas (default),");
+            System.out.println("    or rules to strip a prefix and a suffix of the form and append the rest of the lemma");
+            System.out.println("--input=byte1|byte2|byte4: FST input is UTF-8 bytes (default, readable by all versions),");
+            System.out.println("    UTF-16 chars or code points, so that lookups do not need to convert the term to UTF-8");
+            System.out.println("--merged: add both the forms and lemmas with diacritics and their ASCII-folded versions,");
+            System.out.println("    for FSTTokenFilterFactory with asciiFallback=\"true\"");
+            System.out.println("--rank: order the lemmas of a form by the number of input lines (tags) mapping it to them,");
+            System.out.println("    so that FSTTokenFilterFactory maxLemmas=\"1\" keeps the most likely one");
+            System.out.println("--frequencies=<path>: rank the lemmas by frequency first, one lemma and its count per line");
+            System.out.println("    (or most frequent first, without counts)");
+            System.out.println("--reverse=<path>: also build a reverse FST mapping lemmas to their forms delimited by '|',");
+            System.out.println("    in the same format, for FSTExpansionFilterFactory");
+            System.out.println("--guesser=<path>: also build an FST of the endings of the forms for LemmaGuesser,");
+            System.out.println("    which guesses the lemmas of words missing in the dictionary");
+            System.out.println("--mmap: read the built FST back for the sanity check from a memory-mapped file");
+            System.out.println("--ram=<MB>: RAM budget for sorting the input (default " + DEFAULT_RAM_BUFFER_MB + ")");
+            System.out.println("--tmp=<dir>: directory for temporary files (default java.io.tmpdir)");
+            System.out.println("--threads=<n>: number of files of the input dir parsed in parallel (default number of processors),");
+            System.out.println("    the RAM budget is divided among them");
             System.exit(1);
         }
 
+        if (builder.flags.contains("ascii") && builder.flags.contains("merged")) {
+            throw new IllegalArgumentException("Options --ascii and --merged cannot be combined");
+        }
+        builder.threads = Integer.parseInt(builder.flagValue("threads", String.valueOf(Runtime.getRuntime().availableProcessors())));
+        if (builder.threads < 1) {
+            throw new IllegalArgumentException("Number of threads must be positive: " + builder.threads);
+        }
+        builder.preset = BuildPreset.fromString(builder.flagValue("preset", "balanced"));
+        builder.ramBufferMB = Integer.parseInt(builder.flagValue("ram", String.valueOf(DEFAULT_RAM_BUFFER_MB)));
+        builder.tempRoot = Paths.get(builder.flagValue("tmp", System.getProperty("java.io.tmpdir")));
+        builder.dict = new DictionarySorter(builder.tempRoot, Math.max(1, builder.ramBufferMB / (inputDirPath != null ? builder.threads : 1)));
+        String frequenciesPath = builder.flagValue("frequencies", null);
+        if (frequenciesPath != null) {
+            Map<String, Long> frequencies = builder.readFrequencies(frequenciesPath);
+            builder.dict.rankLemmas(lemma -> frequencies.getOrDefault(lemma, 0L));
+        } else if (builder.flags.contains("rank")) {
+            builder.dict.rankLemmas(lemma -> 0L);
+        }
+        long start = System.nanoTime();
+        try {
+            builder.build(inputDirPath, inputFilePath, inputFstPath, outputFilePath);
+        } finally {
+            builder.dict.close();
+        }
+        System.out.println(String.format("Built in %d ms", (System.nanoTime() - start) / 1000000));
+
+        File file = new File(outputFilePath);
+        LemmaDictionary dictionary = LemmaDictionary.load(file.toPath(), builder.flags.contains("mmap") ? LoadMode.MMAP : LoadMode.HEAP);
+        LemmaDictionary.Lookup lookup = dictionary.newLookup();
+
+         System.out.println("Sanity check: dimorphic word, words with asterisk(inflected only|lemma only|both)"); // sorry, the fifth word is the only word with two asterisks
+        for (String s : SANITY_WORDS) {
+            System.out.println(s + " was lemmatized as " + lookup(lookup, s));
+        }
+        for (String s : SANITY_WORDS_ASCII) {
+            System.out.println(s + " was lemmatized as " + lookup(lookup, s));
+        }
+    }
+
+    private void build(String inputDirPath, String inputFilePath, String inputFstPath, String outputFilePath) throws IOException {
+        long start = System.nanoTime();
         if(inputDirPath != null){
-            System.out.println(String.format("Loading files from dir %s...", inputDirPath));
-            builder.loadFromDir(inputDirPath);
+            System.out.println(String.format("Loading files from dir %s on %d threads...", inputDirPath, threads));
+            loadFromDir(inputDirPath);
         } else {
-            System.out.println(String.format("Loading file %s", inputFilePath));
-            builder.loadFromFile(inputFilePath);
+            DictionarySorter.Run run = dict.newRun();
+            if (inputFstPath != null) {
+                System.out.println(String.format("Loading FST %s", inputFstPath));
+                loadFromFST(inputFstPath, run);
+            } else {
+                System.out.println(String.format("Loading file %s", inputFilePath));
+                loadFromFile(inputFilePath, run);
+            }
+            System.out.println("Sorting " + dict.count() + " mappings...");
+            run.sort();
         }
+        System.out.println(String.format("Loaded and sorted %d mappings in %d ms", dict.count(), (System.nanoTime() - start) / 1000000));
         System.out.println("Building FST...");
-        System.out.println("(ASCII mode is " + (builder.flags.contains("ascii") ? "on" : "off") + ")");
-        builder.buildFSTFromDict();
+        System.out.println("(ASCII mode is " + (flags.contains("ascii") ? "on" : flags.contains("merged") ? "merged" : "off") + ")");
+        dictionary = buildFSTFromDict(dict);
         System.out.println("Saving FST...");
-        builder.save(outputFilePath);
+        save(outputFilePath);
+        report(outputFilePath);
+        String reversePath = flagValue("reverse", null);
+        if (reversePath != null) {
+            buildReverse(reversePath);
+        }
+        String guesserPath = flagValue("guesser", null);
+        if (guesserPath != null) {
+            buildGuesser(guesserPath);
+        }
+    }
 
-        File file = new File(outputFilePath);
-        FST<CharsRef> fst = FST.read(file.toPath(), CharSequenceOutputs.getSingleton());
+    /**
+     * Builds the lemma -> forms FST from the sorted mappings of the forward one, so it holds exactly
+     * the same pairs. The lemmas take the place of forms, so all the formats and encodings work the same.
+     * @param reversePath
+     * @throws IOException
+     */
+    private void buildReverse(String reversePath) throws IOException {
+        long start = System.nanoTime();
+        System.out.println("Building reverse FST...");
+        try (DictionarySorter reverse = new DictionarySorter(tempRoot, ramBufferMB)) {
+            DictionarySorter.Run run = reverse.newRun();
+            dict.forEachEntry((form, lemmas) -> {
+                int lemmaStart = 0;
+                int end;
+                while ((end = lemmas.indexOf(LemmaDictionary.LEMMA_DELIMITER, lemmaStart)) >= 0) {
+                    run.add(lemmas.substring(lemmaStart, end), form);
+                    lemmaStart = end + 1;
+                }
+                run.add(lemmas.substring(lemmaStart), form);
+            });
+            run.sort();
+            buildFSTFromDict(reverse).save(Paths.get(reversePath));
+        }
+        System.out.println(String.format("Reverse FST %s built in %d ms", reversePath, (System.nanoTime() - start) / 1000000));
+    }
 
-         System.out.println("Sanity check: dimorphic word, words with asterisk(inflected only|lemma only|both)"); // sorry, the fifth word is the only word with two asterisks
-        for (String s : Arrays.asList("najprudší", "najprudkejší", "neni", "chujovinami", "piči", "falšovanejšia")) {
-            System.out.println(s + " was lemmatized as " + Util.get(fst, new BytesRef(s)));
+    /**
+     * Builds the FST of {@link LemmaGuesser} from the sorted mappings of the forward one. For every ending of every form
+     * the rule transforming the form to its first lemma is counted, keyed by the reversed ending, U+0001,
+     * the number of chars stripped, U+0001 and the appended chars. As U+0001 sorts first, the keys of an ending
+     * follow each other and the endings come in sorted order, so the guesser FST is built on the fly.
+     * @param guesserPath
+     * @throws IOException
+     */
+    private void buildGuesser(String guesserPath) throws IOException {
+        long start = System.nanoTime();
+        System.out.println("Building guesser FST...");
+        Builder<CharsRef> builder = preset.newBuilder(FST.INPUT_TYPE.BYTE4, CharSequenceOutputs.getSingleton());
+        IntsRefBuilder intsRefBuilder = new IntsRefBuilder();
+        long[] endings = new long[1];
+        try (DictionarySorter rules = new DictionarySorter(tempRoot, ramBufferMB)) {
+            DictionarySorter.Run run = rules.newRun();
+            StringBuilder key = new StringBuilder();
+            dict.forEachEntry((form, lemmas) -> {
+                int delimiter = lemmas.indexOf(LemmaDictionary.LEMMA_DELIMITER);
+                String rule = SuffixEncoding.encode(form, delimiter < 0 ? lemmas : lemmas.substring(0, delimiter), 0);
+                int end = form.length();
+                for (int length = 1; length <= LemmaGuesser.MAX_SUFFIX_LENGTH && end > 0; length++) {
+                    end = form.offsetByCodePoints(end, -1);
+                    key.setLength(0);
+                    key.append(form, end, form.length()).reverse()
+                            .append(GUESSER_KEY_DELIMITER).append((int) rule.charAt(1))
+                            .append(GUESSER_KEY_DELIMITER).append(rule, 2, rule.length());
+                    run.add(key.toString(), "");
+                }
+            });
+            run.sort();
+            GuesserEnding ending = new GuesserEnding();
+            rules.forEachCount((ruleKey, count) -> {
+                int delimiter = ruleKey.indexOf(GUESSER_KEY_DELIMITER);
+                if (!ruleKey.regionMatches(0, ending.reversed, 0, delimiter) || ending.reversed.length() != delimiter) {
+                    endings[0] += ending.add(builder, intsRefBuilder);
+                    ending.reversed = ruleKey.substring(0, delimiter);
+                    ending.total = 0;
+                    ending.bestCount = 0;
+                }
+                ending.total += count;
+                if (count > ending.bestCount) {
+                    ending.bestCount = count;
+                    int stripEnd = ruleKey.indexOf(GUESSER_KEY_DELIMITER, delimiter + 1);
+                    ending.rule = new StringBuilder()
+                            .append((char) 0)
+                            .append((char) Integer.parseInt(ruleKey.substring(delimiter + 1, stripEnd)))
+                            .append(ruleKey, stripEnd + 1, ruleKey.length())
+                            .toString();
+                }
+            });
+            endings[0] += ending.add(builder, intsRefBuilder);
+        }
+        FST<CharsRef> fst = builder.finish();
+        fst.save(Paths.get(guesserPath));
+        System.out.println(String.format("Guesser FST %s with %d endings (%d bytes) built in %d ms", guesserPath, endings[0],
+                fst.ramBytesUsed(), (System.nanoTime() - start) / 1000000));
+    }
+
+    /**
+     * The most frequent rule of the ending being counted while building the guesser.
+     */
+    private static class GuesserEnding {
+        private String reversed = "";
+        private String rule;
+        private int bestCount;
+        private int total;
+
+        /**
+         * Adds the ending to the guesser FST, unless it is the ending of a single form.
+         * @return 1 if added, 0 otherwise
+         */
+        private int add(Builder<CharsRef> builder, IntsRefBuilder scratch) throws IOException {
+            if (total < 2) {
+                return 0;
+            }
+            String output = new StringBuilder(LemmaGuesser.HEADER_LENGTH + rule.length())
+                    .append((char) (1000L * bestCount / total))
+                    .append((char) Math.min(total, Character.MAX_VALUE))
+                    .append(rule)
+                    .toString();
+            builder.add(FSTInput.toInput(FST.INPUT_TYPE.BYTE4, reversed, scratch), new CharsRef(output));
+            return 1;
         }
-        for (String s : Arrays.asList("najprudsi", "najprudkejsi", "neni", "chujovinami", "pici")) {
-            System.out.println(s + " was lemmatized as " + Util.get(fst, new BytesRef(s)));
+    }
+
+    private static String lookup(LemmaDictionary.Lookup lookup, String word) throws IOException {
+        CharsRefBuilder lemmas = new CharsRefBuilder();
+        return lookup.lookup(word, lemmas) ? lemmas.toString() : null;
+    }
+
+    /**
+     * Reads a frequency list: a lemma and its count separated by whitespace on each line. Without counts the lines are
+     * expected to be sorted from the most frequent. In the ASCII and merged modes the folded lemmas get the counts too.
+     * @param pathname
+     * @return counts of lemmas
+     * @throws IOException
+     */
+    private Map<String, Long> readFrequencies(String pathname) throws IOException {
+        List<String> lines = Files.readAllLines(Paths.get(pathname), StandardCharsets.UTF_8);
+        Map<String, Long> frequencies = new HashMap<>();
+        long rank = lines.size();
+        for (String line : lines) {
+            String[] columns = line.trim().split("\\s+");
+            rank--;
+            if (columns[0].isEmpty()) {
+                continue;
+            }
+            long count;
+            try {
+                count = columns.length > 1 ? Long.parseLong(columns[1]) : rank;
+            } catch (NumberFormatException e) {
+                throw new IOException("Bad format of the frequency list " + pathname + ": " + line, e);
+            }
+            frequencies.merge(columns[0], count, Long::sum);
+            if (flags.contains("ascii") || flags.contains("merged")) {
+                String folded = asciiFold(columns[0]);
+                if (!folded.equals(columns[0])) {
+                    frequencies.merge(folded, count, Long::sum);
+                }
+            }
+        }
+        return frequencies;
+    }
+
+    /**
+     * Returns the value of a flag given as --name=value
+     * @param name
+     * @param defaultValue
+     * @return
+     */
+    private String flagValue(String name, String defaultValue) {
+        for (String flag : flags) {
+            if (flag.startsWith(name + "=")) {
+                return flag.substring(name.length() + 1);
+            }
         }
+        return defaultValue;
     }
 
     /**
@@ -111,92 +394,356 @@ public class FSTBuilder {
      * We build the FST based on mapping (affixed -> lemma)
      *
      * @param pathname
+     * @param run run collecting the mappings of the file
      * @throws IOException
      */
-    private void loadFromFile(String pathname) throws IOException {
+    private void loadFromFile(String pathname, DictionarySorter.Run run) throws IOException {
         System.out.println("Loading from file " + pathname);
-        File file = new File(pathname);
-        Scanner scanner = new Scanner(file);
-        int line = 0;
-        while (scanner.hasNext()) {
-            line++;
-            if (line % 1000000 == 0) {
-                System.out.println("Processing line " + line);
-            }
-            try {
-                String[] parts = scanner.nextLine().split(LEMMA_DELIMITER);
-                if (parts.length != 3) {
-                    throw new IOException("Bad format of the input file " + pathname + ", line " + line + ": " + parts);
+        parseFile(pathname, (form, lemma) -> addToDict(run, form, lemma));
+    }
+
+    /**
+     * Parses a file in the format described at {@link #loadFromFile}.
+     * @param pathname
+     * @param consumer called with every form and its lemma
+     * @throws IOException
+     */
+    static void parseFile(String pathname, LemmaDictionary.EntryConsumer consumer) throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(Paths.get(pathname), StandardCharsets.UTF_8)) {
+            int line = 0;
+            String text;
+            while ((text = reader.readLine()) != null) {
+                line++;
+                if (line % 1000000 == 0) {
+                    System.out.println("Processing line " + line);
                 }
-                parts[0] = trimAsterisk(parts[0]);
-                parts[1] = trimAsterisk(parts[1]);
-                if (parts[1].contains(" ")) {
-                    // We add both versions delimited by a space
-                    // as follows from the exception 1.
-                    String[] part1parts = parts[1].split(" ");
-                    if (part1parts.length != 2) {
-                        throw new IOException("Bad format of the input file " + pathname + ", line " + line + ": " + parts + ", " + part1parts);
-                    }
-                    addToDict(part1parts[0], parts[0]);
-                    addToDict(part1parts[1], parts[0]);
-                } else {
-                    addToDict(parts[1], parts[0]);
+                if (text.isEmpty()) {
+                    continue;
                 }
+                try {
+                    String[] parts = text.split(LEMMA_DELIMITER);
+                    if (parts.length != 3) {
+                        throw new IOException("Bad format of the input file " + pathname + ", line " + line + ": " + parts);
+                    }
+                    parts[0] = trimAsterisk(parts[0]);
+                    parts[1] = trimAsterisk(parts[1]);
+                    if (parts[1].contains(" ")) {
+                        // We add both versions delimited by a space
+                        // as follows from the exception 1.
+                        String[] part1parts = parts[1].split(" ");
+                        if (part1parts.length != 2) {
+                            throw new IOException("Bad format of the input file " + pathname + ", line " + line + ": " + parts + ", " + part1parts);
+                        }
+                        consumer.accept(part1parts[0], parts[0]);
+                        consumer.accept(part1parts[1], parts[0]);
+                    } else {
+                        consumer.accept(parts[1], parts[0]);
+                    }
 
-            } catch (RuntimeException e) {
-                throw new RuntimeException("Line " + line + " of input file " + pathname, e);
+                } catch (RuntimeException e) {
+                    throw new RuntimeException("Line " + line + " of input file " + pathname, e);
+                }
             }
         }
-        scanner.close();
     }
 
+    /**
+     * Compiles a small dictionary in the format of {@link #loadFromFile} to an FST in memory,
+     * without the temporary files and sanity check of a full build. Meant for overlays of a few thousand mappings
+     * in front of a big base dictionary, see {@link OverlayLookup}.
+     * @param path
+     * @return the dictionary
+     * @throws IOException
+     */
+    public static LemmaDictionary buildOverlay(Path path) throws IOException {
+        // UTF-8 byte order is the order of the FST input
+        SortedMap<BytesRef, Set<String>> mappings = new TreeMap<>();
+        parseFile(path.toString(), (form, lemma) -> mappings.computeIfAbsent(new BytesRef(form), key -> new LinkedHashSet<>()).add(lemma));
+        Builder<CharsRef> builder = new Builder<>(FST.INPUT_TYPE.BYTE1, CharSequenceOutputs.getSingleton());
+        IntsRefBuilder intsRefBuilder = new IntsRefBuilder();
+        String delimiter = String.valueOf(LemmaDictionary.LEMMA_DELIMITER);
+        for (Map.Entry<BytesRef, Set<String>> mapping : mappings.entrySet()) {
+            builder.add(Util.toIntsRef(mapping.getKey(), intsRefBuilder), new CharsRef(String.join(delimiter, mapping.getValue())));
+        }
+        FST<CharsRef> fst = builder.finish();
+        if (fst == null) {
+            throw new IOException("No mappings in " + path);
+        }
+        return new CharsRefLemmaDictionary(fst);
+    }
+
+    /**
+     * Each file is parsed and sorted into its own run by one of the worker threads.
+     * Runs are created in the order of file names, so the result does not depend on the number of threads.
+     * If any of the files fails, the whole build fails.
+     * @param dirPath
+     * @throws IOException
+     */
     private void loadFromDir(String dirPath) throws IOException {
-        Files.list(Paths.get(dirPath)).forEach(path -> {
-            try {
-                loadFromFile(path.toString());
-            } catch (IOException e) {
-                e.printStackTrace();
+        List<Path> paths;
+        try (Stream<Path> files = Files.list(Paths.get(dirPath))) {
+            paths = files.filter(Files::isRegularFile).sorted().collect(Collectors.toList());
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (Path path : paths) {
+                DictionarySorter.Run run = dict.newRun();
+                futures.add(executor.submit(() -> {
+                    loadFromFile(path.toString(), run);
+                    run.sort();
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new IOException("Loading files from dir " + dirPath + " failed", cause);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Loading files from dir " + dirPath + " was interrupted", e);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Loads all the mappings from an already built FST, e.g. to convert it to another format.
+     * @param pathname
+     * @param run
+     * @throws IOException
+     */
+    private void loadFromFST(String pathname, DictionarySorter.Run run) throws IOException {
+        LemmaDictionary.load(Paths.get(pathname), LoadMode.HEAP).forEachEntry((form, lemmas) -> {
+            int start = 0;
+            int end;
+            while ((end = lemmas.indexOf(LemmaDictionary.LEMMA_DELIMITER, start)) >= 0) {
+                addToDict(run, form, lemmas.substring(start, end));
+                start = end + 1;
             }
+            addToDict(run, form, lemmas.substring(start));
         });
     }
 
     /**
-     * Ignoring duplicates and merging different outputs for the same input.
+     * Duplicates are removed and different outputs for the same input are merged
+     * when reading the sorted mappings, see {@link DictionarySorter#forEachEntry}.
+     * In the merged mode the ASCII-folded version of the mapping is added as a fallback,
+     * which is used only for the folded forms, which are not forms on their own, so that a lookup in the merged
+     * dictionary gives the same as the exact dictionary if the form is there and as the ASCII one otherwise.
+     * @param run
      * @param input
      * @param output
      */
-    private void addToDict(String input, String output) {
+    private void addToDict(DictionarySorter.Run run, String input, String output) throws IOException {
         if (flags.contains("ascii")) {
             input = asciiFold(input);
             output = asciiFold(output);
 //            System.out.println(input + "-" + output);
         }
-        String oldOutput = dict.get(input);
-        if (oldOutput == null) {
-            dict.put(input, output);
-        } else {
-            for (String part : oldOutput.split("\\|")) {
-                if (part.equals(output)) {
-                    return;
+        run.add(input, output);
+        if (flags.contains("merged")) {
+            run.addFallback(asciiFold(input), asciiFold(output));
+        }
+    }
+
+    private LemmaDictionary buildFSTFromDict(DictionarySorter sorter) throws IOException {
+        inputType = FSTInput.fromString(flagValue("input", preset.defaultInput));
+        String encoding = flagValue("encoding", flagValue("format", "").equals("lemmas") ? "lemmas" : preset.defaultEncoding);
+        String format = flagValue("format", "suffix".equals(encoding) ? "ordinal" : "lemmas");
+        switch (format) {
+            case "lemmas":
+                if (!"lemmas".equals(encoding)) {
+                    throw new IllegalArgumentException("Encoding " + encoding + " needs --format=ordinal");
                 }
-            }
-            dict.put(input, oldOutput + "|" + output);
+                return buildCharsRefDictionary(sorter);
+            case "ordinal":
+                switch (encoding) {
+                    case "lemmas":
+                        return buildOrdinalDictionary(sorter);
+                    case "suffix":
+                        return buildSuffixDictionary(sorter);
+                    default:
+                        throw new IllegalArgumentException("Unknown encoding " + encoding + ", expected lemmas or suffix");
+                }
+            default:
+                throw new IllegalArgumentException("Unknown format " + format + ", expected lemmas or ordinal");
         }
     }
 
-    private void buildFSTFromDict() throws IOException {
+    private LemmaDictionary buildCharsRefDictionary(DictionarySorter sorter) throws IOException {
         CharSequenceOutputs charSequenceOutputs = CharSequenceOutputs.getSingleton();
-        Builder<CharsRef> builder = new Builder<CharsRef>(FST.INPUT_TYPE.BYTE1, charSequenceOutputs);
+        Builder<CharsRef> builder = preset.newBuilder(inputType, charSequenceOutputs);
+        IntsRefBuilder intsRefBuilder = new IntsRefBuilder();
+        sorter.forEachEntry((form, lemmas) -> builder.add(FSTInput.toInput(inputType, form, intsRefBuilder), new CharsRef(lemmas)));
+        return new CharsRefLemmaDictionary(finish(builder));
+    }
+
+    /**
+     * Lemmas and sets of lemmas are numbered in sorted order, so that forms close to each other in the FST
+     * get close numbers. Unambiguous forms map directly to their lemma, only ambiguous forms need a set.
+     * @return
+     * @throws IOException
+     */
+    private LemmaDictionary buildOrdinalDictionary(DictionarySorter sorter) throws IOException {
+        SortedSet<String> lemmaSet = new TreeSet<>();
+        SortedSet<String> ambiguousSet = new TreeSet<>();
+        sorter.forEachEntry((form, lemmas) -> {
+            if (lemmas.indexOf(LemmaDictionary.LEMMA_DELIMITER) < 0) {
+                lemmaSet.add(lemmas);
+            } else {
+                ambiguousSet.add(lemmas);
+                lemmaSet.addAll(Arrays.asList(lemmas.split("\\|")));
+            }
+        });
+        List<String> lemmaTable = new ArrayList<>(lemmaSet);
+        Map<String, Integer> lemmaOrdinals = new HashMap<>();
+        for (String lemma : lemmaTable) {
+            lemmaOrdinals.put(lemma, lemmaOrdinals.size());
+        }
+        List<IntsRef> setTable = new ArrayList<>();
+        Map<String, Integer> setOrdinals = new HashMap<>();
+        for (String set : ambiguousSet) {
+            String[] lemmas = set.split("\\|");
+            IntsRef ordinals = new IntsRef(lemmas.length);
+            for (String lemma : lemmas) {
+                ordinals.ints[ordinals.length++] = lemmaOrdinals.get(lemma);
+            }
+            setOrdinals.put(set, setTable.size());
+            setTable.add(ordinals);
+        }
+
+        Builder<Long> builder = preset.newBuilder(inputType, PositiveIntOutputs.getSingleton());
         IntsRefBuilder intsRefBuilder = new IntsRefBuilder();
-        for (Map.Entry<String, String> entry : dict.entrySet()) {
-            builder.add(Util.toIntsRef(new BytesRef(entry.getKey()), intsRefBuilder), new CharsRef(entry.getValue()));
+        sorter.forEachEntry((form, lemmas) -> {
+            Integer lemma = lemmaOrdinals.get(lemmas);
+            long output = lemma != null ? OrdinalLemmaDictionary.lemmaOutput(lemma) : OrdinalLemmaDictionary.setOutput(setOrdinals.get(lemmas));
+            builder.add(FSTInput.toInput(inputType, form, intsRefBuilder), output);
+        });
+        return new OrdinalLemmaDictionary(OrdinalLemmaDictionary.Encoding.LEMMAS, lemmaTable, setTable, finish(builder));
+    }
+
+    /**
+     * Instead of lemmas, the table holds {@link SuffixEncoding} rules transforming the form to the lemma.
+     * The most frequent rules and sets of rules get the lowest numbers, which take the least bytes in the FST.
+     * @return
+     * @throws IOException
+     */
+    private LemmaDictionary buildSuffixDictionary(DictionarySorter sorter) throws IOException {
+        Map<String, Integer> ruleFrequencies = new HashMap<>();
+        Map<String, Integer> setFrequencies = new HashMap<>();
+        sorter.forEachEntry((form, lemmas) -> {
+            String rules = suffixRules(form, lemmas);
+            if (rules.indexOf(LemmaDictionary.LEMMA_DELIMITER) >= 0) {
+                setFrequencies.merge(rules, 1, Integer::sum);
+            }
+            for (String rule : rules.split("\\|")) {
+                ruleFrequencies.merge(rule, 1, Integer::sum);
+            }
+        });
+        List<String> ruleTable = byFrequency(ruleFrequencies);
+        Map<String, Integer> ruleOrdinals = new HashMap<>();
+        for (String rule : ruleTable) {
+            ruleOrdinals.put(rule, ruleOrdinals.size());
+        }
+        List<IntsRef> setTable = new ArrayList<>();
+        Map<String, Integer> setOrdinals = new HashMap<>();
+        for (String set : byFrequency(setFrequencies)) {
+            String[] rules = set.split("\\|");
+            IntsRef ordinals = new IntsRef(rules.length);
+            for (String rule : rules) {
+                ordinals.ints[ordinals.length++] = ruleOrdinals.get(rule);
+            }
+            setOrdinals.put(set, setTable.size());
+            setTable.add(ordinals);
+        }
+
+        Builder<Long> builder = preset.newBuilder(inputType, PositiveIntOutputs.getSingleton());
+        IntsRefBuilder intsRefBuilder = new IntsRefBuilder();
+        sorter.forEachEntry((form, lemmas) -> {
+            String rules = suffixRules(form, lemmas);
+            Integer set = setOrdinals.get(rules);
+            long output = set != null ? OrdinalLemmaDictionary.setOutput(set) : OrdinalLemmaDictionary.lemmaOutput(ruleOrdinals.get(rules));
+            builder.add(FSTInput.toInput(inputType, form, intsRefBuilder), output);
+        });
+        return new OrdinalLemmaDictionary(OrdinalLemmaDictionary.Encoding.SUFFIX, ruleTable, setTable, finish(builder));
+    }
+
+    private <T> FST<T> finish(Builder<T> builder) throws IOException {
+        FST<T> fst = builder.finish();
+        nodeCount = builder.getNodeCount();
+        arcCount = builder.getArcCount();
+        return fst;
+    }
+
+    /**
+     * Prints the size of the built FST and the average lookup time of a sample of its own forms.
+     * @param pathname
+     * @throws IOException
+     */
+    private void report(String pathname) throws IOException {
+        List<String> sample = new ArrayList<>();
+        long forms = dict.count();
+        long step = Math.max(1, forms / REPORT_SAMPLE_SIZE);
+        long[] index = new long[1];
+        dictionary.forEachEntry((form, lemmas) -> {
+            if (index[0]++ % step == 0) {
+                sample.add(form);
+            }
+        });
+        char[][] terms = new char[sample.size()][];
+        for (int i = 0; i < terms.length; i++) {
+            terms[i] = sample.get(i).toCharArray();
+        }
+        Collections.shuffle(Arrays.asList(terms), new Random(0));
+        LemmaDictionary.Lookup lookup = dictionary.newLookup();
+        CharsRefBuilder lemmas = new CharsRefBuilder();
+        long nanos = Long.MAX_VALUE;
+        for (int round = 0; round < 20; round++) {
+            long start = System.nanoTime();
+            for (char[] term : terms) {
+                lookup.lookup(term, 0, term.length, lemmas);
+            }
+            nanos = Math.min(nanos, System.nanoTime() - start);
         }
-        fst = builder.finish();
+        System.out.println(String.format("Preset %s, input %s: %d nodes, %d arcs, %d bytes in memory, file %d bytes, %d ns/lookup (%d forms)",
+                preset.name().toLowerCase(Locale.ROOT), inputType, nodeCount, arcCount, dictionary.ramBytesUsed(),
+                Files.size(Paths.get(pathname)), nanos / Math.max(1, terms.length), terms.length));
+    }
+
+    /**
+     * @param form
+     * @param lemmas lemmas delimited by "|"
+     * @return suffix rules for the lemmas delimited by "|"
+     */
+    private static String suffixRules(String form, String lemmas) {
+        StringBuilder rules = new StringBuilder();
+        for (String lemma : lemmas.split("\\|")) {
+            if (rules.length() > 0) {
+                rules.append(LemmaDictionary.LEMMA_DELIMITER);
+            }
+            rules.append(SuffixEncoding.encode(form, lemma));
+        }
+        return rules.toString();
+    }
+
+    private static List<String> byFrequency(Map<String, Integer> frequencies) {
+        List<String> keys = new ArrayList<>(frequencies.keySet());
+        keys.sort((a, b) -> {
+            int byFrequency = frequencies.get(b) - frequencies.get(a);
+            return byFrequency != 0 ? byFrequency : a.compareTo(b);
+        });
+        return keys;
     }
 
     public void save(String pathname) throws IOException {
         File file = new File(pathname);
-        fst.save(file.toPath());
+        dictionary.save(file.toPath());
     }
 
     /**
@@ -204,7 +751,7 @@ public class FSTBuilder {
      * @param string
      * @return
      */
-    private String trimAsterisk(String string) {
+    private static String trimAsterisk(String string) {
         if (string.charAt(0) == '*') {
             return string.substring(1);
         }
@@ -0,0 +1,113 @@
+package sk.essentialdata.lucene.analysis.fst;
+
+import java.io.IOException;
+import org.apache.lucene.analysis.TokenFilter;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.analysis.tokenattributes.KeywordAttribute;
+import org.apache.lucene.analysis.tokenattributes.PositionIncrementAttribute;
+import org.apache.lucene.util.CharsRefBuilder;
+
+/**
+ * Query-time counterpart of {@link FSTTokenFilter}: expands a lemma to all its inflected forms, using a reverse
+ * dictionary built by FSTBuilder --reverse, so that the index keeps the forms as they are and does not depend
+ * on the dictionary. The term itself is emitted first, its forms follow at the same position.
+ * Put {@link FSTTokenFilter} before it to expand any form of the word, not only the lemma.
+ * Nothing is allocated per token or form, the forms are copied from the reused lookup buffer.
+ * @author miso
+ * @date 10/17/26.
+ */
+public class FSTExpansionFilter extends TokenFilter {
+    private final CharTermAttribute termAtt = addAttribute(CharTermAttribute.class);
+    private final PositionIncrementAttribute posIncAtt = addAttribute(PositionIncrementAttribute.class);
+    private final KeywordAttribute keywordAtt = addAttribute(KeywordAttribute.class);
+    private final LemmaDictionary.Lookup lookup;
+    /**
+     * @var maxForms maximum number of forms added to a term, 0 for all
+     */
+    private final int maxForms;
+    /**
+     * @var forms output of the reverse dictionary, the forms delimited by "|"
+     */
+    private final CharsRefBuilder forms = new CharsRefBuilder();
+    private final CharsRefBuilder term = new CharsRefBuilder();
+    /**
+     * @var nextForm offset of the next form in forms to be emitted, -1 if there is none
+     */
+    private int nextForm = -1;
+    private int emittedForms;
+
+    /**
+     * @param input
+     * @param reverseDictionary dictionary mapping lemmas to forms
+     * @param maxForms maximum number of forms added to a term, 0 for all
+     */
+    public FSTExpansionFilter(TokenStream input, LemmaDictionary reverseDictionary, int maxForms) {
+        super(input);
+        this.lookup = reverseDictionary.newLookup();
+        this.maxForms = maxForms;
+    }
+
+    @Override
+    public final boolean incrementToken() throws IOException {
+        while (nextForm >= 0) {
+            if (emitForm(nextForm)) {
+                posIncAtt.setPositionIncrement(0);
+                return true;
+            }
+        }
+
+        if (!input.incrementToken()) {
+            return false;
+        }
+        if (!keywordAtt.isKeyword() && lookup.lookup(termAtt.buffer(), 0, termAtt.length(), forms)) {
+            term.copyChars(termAtt.buffer(), 0, termAtt.length());
+            nextForm = 0;
+            emittedForms = 0;
+        }
+        return true;
+    }
+
+    /**
+     * Copies the form starting at the given offset to the term attribute unless it is the term itself,
+     * and moves {@link #nextForm} behind it, or to -1 after the last form or when the cap is reached.
+     * @param start
+     * @return true if the form was copied
+     */
+    private boolean emitForm(int start) {
+        char[] chars = forms.chars();
+        int length = forms.length();
+        int end = start;
+        while (end < length && chars[end] != LemmaDictionary.LEMMA_DELIMITER) {
+            end++;
+        }
+        nextForm = end < length ? end + 1 : -1;
+        if (sameAsTerm(chars, start, end - start)) {
+            return false;
+        }
+        termAtt.copyBuffer(chars, start, end - start);
+        if (maxForms > 0 && ++emittedForms >= maxForms) {
+            nextForm = -1;
+        }
+        return true;
+    }
+
+    private boolean sameAsTerm(char[] chars, int start, int length) {
+        if (length != term.length()) {
+            return false;
+        }
+        char[] termChars = term.chars();
+        for (int i = 0; i < length; i++) {
+            if (chars[start + i] != termChars[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public void reset() throws IOException {
+        super.reset();
+        nextForm = -1;
+    }
+}
@@ -0,0 +1,82 @@
+package sk.essentialdata.lucene.analysis.fst;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Map;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.util.ResourceLoader;
+import org.apache.lucene.analysis.util.ResourceLoaderAware;
+import org.apache.lucene.analysis.util.TokenFilterFactory;
+
+/**
+ * TokenFilterFactory that creates instances of {@link FSTExpansionFilter}, for the query analyzer only.
+ * Example config expanding any form of a query word to all forms of its lemma:
+ * <pre class="prettyprint" >
+ * &lt;filter class=&quot;sk.essentialdata.lucene.analysis.fst.FSTTokenFilterFactory&quot; fst=&quot;lib/slovaklemma.fst&quot;/&gt;
+ * &lt;filter class=&quot;sk.essentialdata.lucene.analysis.fst.FSTExpansionFilterFactory&quot;
+ *    fst=&quot;lib/slovaklemma_reverse.fst&quot; maxForms=&quot;64&quot;/&gt;</pre>
+ *
+ * The reverse FST is built by FSTBuilder --reverse=&lt;path&gt; and loaded once through {@link FSTRegistry}.
+ * The optional loadMode is "heap" (default) or "mmap", the optional maxForms caps the number of forms added
+ * to a term (default 0, all forms).
+ * @author miso
+ * @date 10/17/26.
+ */
+public class FSTExpansionFilterFactory extends TokenFilterFactory implements ResourceLoaderAware, Closeable {
+    private final LoadMode loadMode;
+    private final int maxForms;
+    private volatile FSTRegistry.Handle handle;
+
+    public static final String PARAM_DICTIONARY = "fst";
+    public static final String PARAM_LOAD_MODE = "loadMode";
+    public static final String PARAM_MAX_FORMS = "maxForms";
+
+    public FSTExpansionFilterFactory(Map<String, String> args) {
+        super(args);
+        String loadModeArg = get(args, PARAM_LOAD_MODE);
+        loadMode = loadModeArg == null ? LoadMode.HEAP : LoadMode.fromString(loadModeArg);
+        maxForms = getInt(args, PARAM_MAX_FORMS, 0);
+        if (maxForms < 0) {
+            throw new IllegalArgumentException("Parameter " + PARAM_MAX_FORMS + " must not be negative: " + maxForms);
+        }
+    }
+
+    @Override
+    public TokenStream create(TokenStream tokenStream) {
+        FSTRegistry.Handle handle = this.handle;
+        if (handle == null) {
+            throw new IllegalStateException("FST is not loaded, inform() has to be called first");
+        }
+        return new FSTExpansionFilter(tokenStream, handle.get(), maxForms);
+    }
+
+    @Override
+    public synchronized void inform(ResourceLoader loader) throws IOException {
+        String dictionaryArg = getOriginalArgs().get(PARAM_DICTIONARY);
+        if (dictionaryArg == null) {
+            throw new IllegalArgumentException("Parameter " + PARAM_DICTIONARY + " is mandatory.");
+        }
+        if (handle == null) {
+            handle = FSTRegistry.acquire(dictionaryArg, loadMode);
+        }
+    }
+
+    /**
+     * @return the reverse dictionary, null before inform()
+     */
+    public LemmaDictionary getDictionary() {
+        FSTRegistry.Handle handle = this.handle;
+        return handle != null ? handle.get() : null;
+    }
+
+    /**
+     * Releases the shared FST. Filters created afterwards fail, existing filters keep working.
+     */
+    @Override
+    public synchronized void close() {
+        if (handle != null) {
+            handle.close();
+            handle = null;
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package sk.essentialdata.lucene.analysis.fst;
+
+import java.util.Locale;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.IntsRef;
+import org.apache.lucene.util.IntsRefBuilder;
+import org.apache.lucene.util.UnicodeUtil;
+import org.apache.lucene.util.fst.FST;
+import org.apache.lucene.util.fst.Util;
+
+/**
+ * Conversion of forms to and from FST inputs of the supported input types:
+ * <ul>
+ *     <li>BYTE1: UTF-8 bytes, the original format, each letter with diacritics takes two arcs</li>
+ *     <li>BYTE2: UTF-16 chars, exactly the content of the term buffer</li>
+ *     <li>BYTE4: Unicode code points</li>
+ * </ul>
+ * @author miso
+ * @date 10/17/26.
+ */
+final class FSTInput {
+    private FSTInput() {
+    }
+
+    static FST.INPUT_TYPE fromString(String inputType) {
+        switch (inputType.toLowerCase(Locale.ROOT)) {
+            case "byte1":
+                return FST.INPUT_TYPE.BYTE1;
+            case "byte2":
+                return FST.INPUT_TYPE.BYTE2;
+            case "byte4":
+                return FST.INPUT_TYPE.BYTE4;
+            default:
+                throw new IllegalArgumentException("Unknown input type " + inputType + ", expected byte1, byte2 or byte4");
+        }
+    }
+
+    /**
+     * Forms are added to the FST in the order of their UTF-8 bytes, which is the same as the order of code points.
+     * The order of UTF-16 chars differs only for supplementary characters, which are therefore not allowed in BYTE2.
+     * @param inputType
+     * @param form
+     * @param scratch
+     * @return the input of the form
+     */
+    static IntsRef toInput(FST.INPUT_TYPE inputType, String form, IntsRefBuilder scratch) {
+        switch (inputType) {
+            case BYTE1:
+                return Util.toIntsRef(new BytesRef(form), scratch);
+            case BYTE2:
+                for (int i = 0; i < form.length(); i++) {
+                    if (Character.isSurrogate(form.charAt(i))) {
+                        throw new IllegalArgumentException("Form " + form + " has a supplementary character, which needs --input=byte4");
+                    }
+                }
+                return Util.toUTF16(form, scratch);
+            default:
+                return Util.toUTF32(form, scratch);
+        }
+    }
+
+    /**
+     * @param inputType
+     * @param input
+     * @return the form of the input
+     */
+    static String toString(FST.INPUT_TYPE inputType, IntsRef input) {
+        switch (inputType) {
+            case BYTE1:
+                byte[] bytes = new byte[input.length];
+                for (int i = 0; i < input.length; i++) {
+                    bytes[i] = (byte) input.ints[input.offset + i];
+                }
+                return new BytesRef(bytes).utf8ToString();
+            case BYTE2:
+                char[] chars = new char[input.length];
+                for (int i = 0; i < input.length; i++) {
+                    chars[i] = (char) input.ints[input.offset + i];
+                }
+                return new String(chars);
+            default:
+                return UnicodeUtil.newString(input.ints, input.offset, input.length);
+        }
+    }
+}
@@ -0,0 +1,240 @@
+package sk.essentialdata.lucene.analysis.fst;
+
+import java.io.IOException;
+import org.apache.lucene.util.ArrayUtil;
+import org.apache.lucene.util.IntsRefBuilder;
+import org.apache.lucene.util.RamUsageEstimator;
+import org.apache.lucene.util.fst.FST;
+
+/**
+ * Lookup walking the arcs of an FST of any input type directly from the term buffer.
+ * Only BYTE1 needs the term converted to UTF-8 first, BYTE2 takes the chars as they are
+ * and BYTE4 the code points decoded on the fly. A term looked up ignoring case is lowercased
+ * code point by code point as the labels are fed to the arcs. Not thread-safe.
+ * <p>
+ * {@link #walkFromPrefix} keeps a stack of the arcs of the previous term, so that a sequence of terms
+ * sharing long prefixes, e.g. sorted words, is walked without following the shared arcs again.
+ * Subclasses remember their accumulated output for every depth in {@link #markDepth} to get back to it.
+ * @author miso
+ * @date 10/17/26.
+ */
+abstract class FSTLookup<T> extends LemmaDictionary.Lookup {
+    protected final FST<T> fst;
+    protected final FST.Arc<T> arc = new FST.Arc<>();
+    private final FST.BytesReader fstReader;
+    /**
+     * @var arcs arcs[i] is the arc reached by the first i labels of the previous term, valid up to validDepth
+     */
+    private FST.Arc<T>[] arcs;
+    private int validDepth = -1;
+    private IntsRefBuilder labels = new IntsRefBuilder();
+    private IntsRefBuilder previousLabels = new IntsRefBuilder();
+
+    FSTLookup(FST<T> fst) {
+        this.fst = fst;
+        this.fstReader = fst.getBytesReader();
+    }
+
+    /**
+     * Follows the arcs of the term from the first arc, passing the output of every arc to {@link #accumulate}.
+     * @param buffer
+     * @param offset
+     * @param length
+     * @param lowerCase whether the term is lowercased on the fly as by {@link Character#toLowerCase(int)}
+     * @return true if the whole term was followed and ends in a final arc, whose final output is then in {@link #arc}
+     * @throws IOException
+     */
+    protected final boolean walk(char[] buffer, int offset, int length, boolean lowerCase) throws IOException {
+        fst.getFirstArc(arc);
+        if (lowerCase && fst.inputType != FST.INPUT_TYPE.BYTE1) {
+            int end = offset + length;
+            for (int i = offset; i < end; ) {
+                int codePoint = Character.codePointAt(buffer, i, end);
+                i += Character.charCount(codePoint);
+                codePoint = Character.toLowerCase(codePoint);
+                if (fst.inputType == FST.INPUT_TYPE.BYTE4 || codePoint < Character.MIN_SUPPLEMENTARY_CODE_POINT) {
+                    if (!follow(codePoint)) {
+                        return false;
+                    }
+                } else if (!follow(Character.highSurrogate(codePoint)) || !follow(Character.lowSurrogate(codePoint))) {
+                    return false;
+                }
+            }
+            return arc.isFinal();
+        }
+        switch (fst.inputType) {
+            case BYTE1:
+                if (lowerCase) {
+                    lowerCaseToUTF8(buffer, offset, length);
+                } else {
+                    termBytes.copyChars(buffer, offset, length);
+                }
+                byte[] bytes = termBytes.bytes();
+                int byteLength = termBytes.length();
+                for (int i = 0; i < byteLength; i++) {
+                    if (!follow(bytes[i] & 0xFF)) {
+                        return false;
+                    }
+                }
+                break;
+            case BYTE2:
+                for (int i = offset; i < offset + length; i++) {
+                    if (!follow(buffer[i])) {
+                        return false;
+                    }
+                }
+                break;
+            default:
+                int end = offset + length;
+                for (int i = offset; i < end; ) {
+                    int codePoint = Character.codePointAt(buffer, i, end);
+                    if (!follow(codePoint)) {
+                        return false;
+                    }
+                    i += Character.charCount(codePoint);
+                }
+        }
+        return arc.isFinal();
+    }
+
+    /**
+     * Writes the term lowercased to {@link #termBytes} in UTF-8, like BytesRefBuilder.copyChars does without lowercasing.
+     */
+    private void lowerCaseToUTF8(char[] buffer, int offset, int length) {
+        termBytes.grow(4 * length);
+        byte[] bytes = termBytes.bytes();
+        int upto = 0;
+        int end = offset + length;
+        for (int i = offset; i < end; ) {
+            int codePoint = Character.codePointAt(buffer, i, end);
+            i += Character.charCount(codePoint);
+            codePoint = Character.toLowerCase(codePoint);
+            if (codePoint >= Character.MIN_SURROGATE && codePoint <= Character.MAX_SURROGATE) {
+                codePoint = 0xFFFD; // an unpaired surrogate, replaced like by copyChars
+            }
+            if (codePoint < 0x80) {
+                bytes[upto++] = (byte) codePoint;
+            } else if (codePoint < 0x800) {
+                bytes[upto++] = (byte) (0xC0 | (codePoint >> 6));
+                bytes[upto++] = (byte) (0x80 | (codePoint & 0x3F));
+            } else if (codePoint < Character.MIN_SUPPLEMENTARY_CODE_POINT) {
+                bytes[upto++] = (byte) (0xE0 | (codePoint >> 12));
+                bytes[upto++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+                bytes[upto++] = (byte) (0x80 | (codePoint & 0x3F));
+            } else {
+                bytes[upto++] = (byte) (0xF0 | (codePoint >> 18));
+                bytes[upto++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+                bytes[upto++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+                bytes[upto++] = (byte) (0x80 | (codePoint & 0x3F));
+            }
+        }
+        termBytes.setLength(upto);
+    }
+
+    private boolean follow(int label) throws IOException {
+        if (fst.findTargetArc(label, arc, arc, fstReader) == null) {
+            return false;
+        }
+        accumulate(arc.output);
+        return true;
+    }
+
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    private static <T> FST.Arc<T>[] newArcArray(int size) {
+        return new FST.Arc[size];
+    }
+
+    /**
+     * Like {@link #walk}, but starts at the end of the prefix shared with the term of the previous call.
+     * The accumulated output is first reset by {@link #resetToDepth} to what it was at the end of that prefix.
+     * @param buffer
+     * @param offset
+     * @param length
+     * @return true if the whole term was followed and ends in a final arc, which is then in {@link #arc}
+     * @throws IOException
+     */
+    protected final boolean walkFromPrefix(char[] buffer, int offset, int length) throws IOException {
+        IntsRefBuilder swap = previousLabels;
+        previousLabels = labels;
+        labels = swap;
+        toLabels(buffer, offset, length, labels);
+        int labelCount = labels.length();
+        if (arcs == null || arcs.length <= labelCount) {
+            FST.Arc<T>[] newArcs = newArcArray(ArrayUtil.oversize(labelCount + 1, RamUsageEstimator.NUM_BYTES_OBJECT_REF));
+            int existing = 0;
+            if (arcs != null) {
+                System.arraycopy(arcs, 0, newArcs, 0, arcs.length);
+                existing = arcs.length;
+            }
+            for (int i = existing; i < newArcs.length; i++) {
+                newArcs[i] = new FST.Arc<>();
+            }
+            arcs = newArcs;
+        }
+        if (validDepth < 0) {
+            fst.getFirstArc(arcs[0]);
+            validDepth = 0;
+        }
+        int depth = 0;
+        int maxDepth = Math.min(validDepth, labelCount);
+        int[] current = labels.ints();
+        int[] previous = previousLabels.ints();
+        while (depth < maxDepth && current[depth] == previous[depth]) {
+            depth++;
+        }
+        resetToDepth(depth);
+        for (; depth < labelCount; depth++) {
+            if (fst.findTargetArc(current[depth], arcs[depth], arcs[depth + 1], fstReader) == null) {
+                validDepth = depth;
+                return false;
+            }
+            accumulate(arcs[depth + 1].output);
+            markDepth(depth + 1);
+        }
+        validDepth = labelCount;
+        arc.copyFrom(arcs[labelCount]);
+        return arc.isFinal();
+    }
+
+    private void toLabels(char[] buffer, int offset, int length, IntsRefBuilder labels) {
+        labels.clear();
+        switch (fst.inputType) {
+            case BYTE1:
+                termBytes.copyChars(buffer, offset, length);
+                byte[] bytes = termBytes.bytes();
+                for (int i = 0; i < termBytes.length(); i++) {
+                    labels.append(bytes[i] & 0xFF);
+                }
+                break;
+            case BYTE2:
+                for (int i = offset; i < offset + length; i++) {
+                    labels.append(buffer[i]);
+                }
+                break;
+            default:
+                int end = offset + length;
+                for (int i = offset; i < end; ) {
+                    int codePoint = Character.codePointAt(buffer, i, end);
+                    labels.append(codePoint);
+                    i += Character.charCount(codePoint);
+                }
+        }
+    }
+
+    /**
+     * @param output output of the arc just followed
+     */
+    protected abstract void accumulate(T output);
+
+    /**
+     * Remembers the output accumulated by following depth labels. Called by {@link #walkFromPrefix} only.
+     * @param depth
+     */
+    protected abstract void markDepth(int depth);
+
+    /**
+     * Restores the output remembered for the depth, 0 means no output. Called by {@link #walkFromPrefix} only.
+     * @param depth
+     */
+    protected abstract void resetToDepth(int depth);
+}
@@ -0,0 +1,243 @@
+package sk.essentialdata.lucene.analysis.fst;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+import org.apache.lucene.store.DataInput;
+
+/**
+ * Process-wide registry of loaded dictionaries.
+ * Every factory using the same dictionary file shares one immutable {@link LemmaDictionary} instance.
+ * Entries are keyed by the canonical path and the CRC32 of the file, so an updated file
+ * on the same path is loaded as a new entry. An entry is dropped when its last handle is closed, or once
+ * no handle is reachable any more: Solr never closes token filter factories, so the registry holds its entries
+ * weakly and the dictionaries of factories dropped after a core reload are freed by the garbage collector.
+ * <p>
+ * A file whose path, size and modification time match a loaded entry is not read again. Otherwise the file
+ * is read and parsed outside the registry lock, so loads of different dictionaries run in parallel,
+ * and a concurrent request for the same content waits for the first load instead of parsing it again.
+ * @author miso
+ * @date 10/17/26.
+ */
+public final class FSTRegistry {
+    private static final Map<String, EntryRef> entries = new HashMap<>();
+    /**
+     * @var stamps entries by canonical path, size and modification time of the file they were read from
+     */
+    private static final Map<String, EntryRef> stamps = new HashMap<>();
+    /**
+     * @var collected references to the entries without any reachable handle
+     */
+    private static final ReferenceQueue<Entry> collected = new ReferenceQueue<>();
+    private static final AtomicLong loadCount = new AtomicLong();
+
+    private FSTRegistry() {
+    }
+
+    public static Handle acquire(String fstFileName) throws IOException {
+        return acquire(fstFileName, LoadMode.HEAP);
+    }
+
+    /**
+     * Returns a handle to the dictionary stored in the given file, loading it only if no other
+     * handle to the same file content is open.
+     * @param fstFileName
+     * @param loadMode how to read the file if it is not loaded yet
+     * @return handle, which must be closed when the dictionary is no longer needed
+     * @throws IOException
+     */
+    public static Handle acquire(String fstFileName, LoadMode loadMode) throws IOException {
+        File file = new File(fstFileName).getCanonicalFile();
+        String stamp = stamp(file);
+        Entry entry;
+        synchronized (entries) {
+            purge();
+            entry = get(stamps, stamp);
+            if (entry != null) {
+                entry.refCount++;
+            }
+        }
+        if (entry == null) {
+            CRC32 crc = new CRC32();
+            DataInput input = loadMode.open(file.toPath(), crc);
+            String key = file.getPath() + "#" + Long.toHexString(crc.getValue());
+            // the stamp identifies the content only if the file did not change while it was read
+            boolean unchanged = stamp.equals(stamp(file));
+            boolean loading = false;
+            synchronized (entries) {
+                purge();
+                entry = get(entries, key);
+                if (entry == null) {
+                    entry = new Entry(key);
+                    entries.put(key, entry.ref);
+                    loading = true;
+                }
+                entry.refCount++;
+                if (unchanged) {
+                    entry.ref.stamps.add(stamp);
+                    stamps.put(stamp, entry.ref);
+                }
+            }
+            if (loading) {
+                try {
+                    entry.dictionary.complete(LemmaDictionary.read(input));
+                    loadCount.incrementAndGet();
+                } catch (IOException | RuntimeException e) {
+                    entry.dictionary.completeExceptionally(e);
+                }
+            }
+        }
+        try {
+            return new Handle(entry, entry.get());
+        } catch (IOException | RuntimeException e) {
+            release(entry);
+            throw e;
+        }
+    }
+
+    private static String stamp(File file) {
+        return file.getPath() + "#" + file.length() + "#" + file.lastModified();
+    }
+
+    /**
+     * @return how many times a dictionary was actually read from disk since the JVM started
+     */
+    public static long getLoadCount() {
+        return loadCount.get();
+    }
+
+    /**
+     * @return number of dictionaries currently held by the registry
+     */
+    public static int size() {
+        synchronized (entries) {
+            purge();
+            return entries.size();
+        }
+    }
+
+    private static Entry get(Map<String, EntryRef> map, String key) {
+        EntryRef ref = map.get(key);
+        return ref != null ? ref.get() : null;
+    }
+
+    private static void release(Entry entry) {
+        synchronized (entries) {
+            if (--entry.refCount == 0) {
+                remove(entry.ref);
+            }
+        }
+    }
+
+    /**
+     * Removes the entries collected since the last call. Must be called holding the lock.
+     */
+    private static void purge() {
+        Reference<? extends Entry> ref;
+        while ((ref = collected.poll()) != null) {
+            remove((EntryRef) ref);
+        }
+    }
+
+    private static void remove(EntryRef ref) {
+        entries.remove(ref.key, ref);
+        for (String stamp : ref.stamps) {
+            stamps.remove(stamp, ref);
+        }
+    }
+
+    /**
+     * Weak reference to an entry held by the maps of the registry, the handles hold the entry itself.
+     */
+    private static final class EntryRef extends WeakReference<Entry> {
+        private final String key;
+        private final List<String> stamps = new ArrayList<>();
+
+        private EntryRef(Entry entry, String key) {
+            super(entry, collected);
+            this.key = key;
+        }
+    }
+
+    private static final class Entry {
+        private final String key;
+        private final EntryRef ref;
+        /**
+         * @var dictionary completed by the thread which created the entry, once it is read
+         */
+        private final CompletableFuture<LemmaDictionary> dictionary = new CompletableFuture<>();
+        private int refCount;
+
+        private Entry(String key) {
+            this.key = key;
+            this.ref = new EntryRef(this, key);
+        }
+
+        /**
+         * Waits until the dictionary is read.
+         * @return the dictionary
+         * @throws IOException if it cannot be read
+         */
+        private LemmaDictionary get() throws IOException {
+            boolean interrupted = false;
+            try {
+                while (true) {
+                    try {
+                        return dictionary.get();
+                    } catch (InterruptedException e) {
+                        interrupted = true;
+                    } catch (ExecutionException e) {
+                        if (e.getCause() instanceof IOException) {
+                            throw new IOException(e.getCause().getMessage(), e.getCause());
+                        }
+                        throw (RuntimeException) e.getCause();
+                    }
+                }
+            } finally {
+                if (interrupted) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+    }
+
+    /**
+     * Reference to a shared dictionary, which keeps it in the registry until the handle is closed or collected.
+     * Closing the handle more than once has no effect.
+     */
+    public static final class Handle implements Closeable {
+        private volatile Entry entry;
+        private final LemmaDictionary dictionary;
+
+        private Handle(Entry entry, LemmaDictionary dictionary) {
+            this.entry = entry;
+            this.dictionary = dictionary;
+        }
+
+        public LemmaDictionary get() {
+            if (entry == null) {
+                throw new IllegalStateException("Handle is already closed");
+            }
+            return dictionary;
+        }
+
+        @Override
+        public synchronized void close() {
+            if (entry != null) {
+                release(entry);
+                entry = null;
+            }
+        }
+    }
+}
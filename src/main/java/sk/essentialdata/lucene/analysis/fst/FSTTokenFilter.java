@@ -7,16 +7,14 @@ import org.apache.lucene.analysis.tokenattributes.KeywordAttribute;
 import org.apache.lucene.analysis.tokenattributes.PositionIncrementAttribute;
 import org.apache.lucene.util.BytesRef;
 import org.apache.lucene.util.CharsRef;
+import org.apache.lucene.util.CharsRefBuilder;
 import org.apache.lucene.util.fst.CharSequenceOutputs;
 import org.apache.lucene.util.fst.FST;
-import org.apache.lucene.util.fst.Util;
 
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
-import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.List;
 
 /**
  * @author miso
@@ -35,39 +33,121 @@ public class FSTTokenFilter extends TokenFilter {
     private final CharTermAttribute termAtt = addAttribute(CharTermAttribute.class);
     private final PositionIncrementAttribute posIncAtt = addAttribute(PositionIncrementAttribute.class);
     private final KeywordAttribute keywordAtt = addAttribute(KeywordAttribute.class);
-    private List<String> buffer;
-    private State savedState;
-    FST<CharsRef> fst;
-    private BytesRef bytesRef;
-    private CharsRef charsRef;
+    final LemmaDictionary dictionary;
+    private final LemmaDictionary.Lookup lookup;
+    /**
+     * @var metrics where to count the tokens, null if metrics are disabled
+     */
+    private final LemmatizerMetrics metrics;
+    /**
+     * @var maxLemmas maximum number of lemmas emitted for a token, 0 for all
+     */
+    private final int maxLemmas;
+    private int emittedLemmas;
+    private int lookupCount;
+    /**
+     * @var lemmas output from the dictionary. In case of multiple outputs, they are separated by "|"
+     */
+    private final CharsRefBuilder lemmas = new CharsRefBuilder();
+    /**
+     * @var nextLemma offset of the next lemma in lemmas to be emitted, -1 if there is none
+     */
+    private int nextLemma = -1;
+
     /**
      * Construct a token stream filtering the given input.
      *
      * @param input
      */
     protected FSTTokenFilter(TokenStream input, String fstFileName) throws IOException {
+        this(input, LemmaDictionary.load(new File(fstFileName).toPath(), LoadMode.HEAP));
+    }
+
+    /**
+     * Construct a token stream filtering the given input with an already loaded dictionary,
+     * which may be shared by any number of filters.
+     *
+     * @param input
+     * @param dictionary
+     */
+    protected FSTTokenFilter(TokenStream input, LemmaDictionary dictionary) {
+        this(input, dictionary, dictionary.newLookup(), null);
+    }
+
+    /**
+     * Construct a token stream filtering the given input, looking up words through a shared cache first.
+     *
+     * @param input
+     * @param cache
+     */
+    protected FSTTokenFilter(TokenStream input, LemmaCache cache) {
+        this(input, cache.getDictionary(), cache.newLookup(), null);
+    }
+
+    /**
+     * Construct a token stream filtering the given input.
+     *
+     * @param input
+     * @param dictionary
+     * @param lookup lookup of the dictionary, possibly through a cache or with the ASCII fallback
+     * @param metrics where to count the tokens, or null
+     */
+    protected FSTTokenFilter(TokenStream input, LemmaDictionary dictionary, LemmaDictionary.Lookup lookup, LemmatizerMetrics metrics) {
+        this(input, dictionary, lookup, metrics, 0);
+    }
+
+    /**
+     * Construct a token stream filtering the given input, emitting at most maxLemmas lemmas of an ambiguous word.
+     * The lemmas are emitted in the order of the dictionary, which is ranked if it was built with FSTBuilder --rank.
+     *
+     * @param input
+     * @param dictionary
+     * @param lookup lookup of the dictionary, possibly through a cache or with the ASCII fallback
+     * @param metrics where to count the tokens, or null
+     * @param maxLemmas maximum number of lemmas emitted for a token, 0 for all
+     */
+    protected FSTTokenFilter(TokenStream input, LemmaDictionary dictionary, LemmaDictionary.Lookup lookup, LemmatizerMetrics metrics,
+                             int maxLemmas) {
         super(input);
-        File file = new File(fstFileName);
-        fst = FST.read(file.toPath(), CharSequenceOutputs.getSingleton());
+        this.dictionary = dictionary;
+        this.lookup = lookup;
+        this.metrics = metrics;
+        this.maxLemmas = maxLemmas;
+    }
+
+    /**
+     * Construct a token stream filtering the given input by a lemmatizer, which may be shared by any number of filters.
+     * The filter takes its own lookup from the lemmatizer, so the lookups of the tokens go the same way
+     * as those of {@link Lemmatizer} without its thread-local context.
+     *
+     * @param input
+     * @param lemmatizer
+     * @param metrics where to count the tokens, or null
+     * @param maxLemmas maximum number of lemmas emitted for a token, 0 for all
+     */
+    protected FSTTokenFilter(TokenStream input, Lemmatizer lemmatizer, LemmatizerMetrics metrics, int maxLemmas) {
+        this(input, lemmatizer.getDictionary(), lemmatizer.newLookup(), metrics, maxLemmas);
     }
 
     /**
      * 1. Read next token
      * 2. Apply stemmer
      * 3. If there are multiple stems
-     *      just one increment take place and other stems are put into the buffer
-     *      the buffer and state of the attributes are saved
-     * 4. In the next calls, if the buffer is not empty, the stemmer is not called,
-     *      but the value from buffer is used (@var nextStem)
+     *      the first one is emitted and the offset of the next one is remembered
+     * 4. In the next calls, if there is a next stem, the stemmer is not called,
+     *      but the stem is emitted at the same position. The other attributes are still
+     *      those of the current input token, so there is no need to capture and restore the state.
+     * Nothing is allocated per token, all buffers are reused.
      * {@inheritDoc}
      */
     @Override
-    public boolean incrementToken() throws IOException {
-        if (buffer != null && !buffer.isEmpty()) {
-            String nextStem = buffer.remove(0);
-            restoreState(savedState);
+    public final boolean incrementToken() throws IOException {
+        if (nextLemma >= 0) {
+            emitLemma(nextLemma);
             posIncAtt.setPositionIncrement(0);
-            termAtt.copyBuffer(nextStem.toCharArray(), 0, nextStem.length());
+            if (metrics != null) {
+                metrics.extraLemmas.increment();
+            }
             return true;
         }
 
@@ -76,47 +156,58 @@ public class FSTTokenFilter extends TokenFilter {
         }
 
         if (keywordAtt.isKeyword()) {
+            if (metrics != null) {
+                metrics.tokens.increment();
+                metrics.keywords.increment();
+            }
             return true;
         }
 
-        // this can surely be optimized, but we have no need yet
-        // @see UnicodeUtil::UTF16toUTF8() which adds a lot of zero bytes at the end.
-
-        int length = termAtt.length();
-
-        /**
-         * @var termBuffer input buffer, which is being overwritten from the start by the next word.
-         */
-        char[] termBuffer = termAtt.buffer();
-
-        /**
-         * @var bytesRef wrapper for byte array, which is an input for FST
-         */
-        bytesRef = new BytesRef(new String(termBuffer).substring(0,length).getBytes("UTF-8"));
-        /**
-         * @var charsRef wrapper for char array, which is an output from FST.
-         * In case of multiple outputs, they are separated by "|"
-         */
-        charsRef = Util.get(fst, bytesRef);
-//        charsRef = utilGetDebug(fst, bytesRef);
-
-        if (charsRef == null) {
-            return true; // not found in FST
+        if (metrics != null ? !measuredLookup() : !lookup.lookup(termAtt.buffer(), 0, termAtt.length(), lemmas)) {
+            return true; // we do not know this word, return it unchanged
         }
-        buffer = new ArrayList<String>(Arrays.asList(charsRef.toString().split("\\|")));
 
-        if (buffer.isEmpty()) { // we do not know this word, return it unchanged
-            return true;
+        emitLemma(0);
+        if (metrics != null) {
+            metrics.hits.increment();
+            if (nextLemma >= 0) {
+                metrics.ambiguous.increment();
+            }
         }
+        return true;
+    }
 
-        String stem = buffer.remove(0);
-        termAtt.copyBuffer(stem.toCharArray(), 0, stem.length());
-
-        if (!buffer.isEmpty()) {
-            savedState = captureState();
+    /**
+     * Looks up the term, counts it and times every {@link LemmatizerMetrics#TIMING_SAMPLE}-th lookup.
+     * @return true if the term was found
+     * @throws IOException
+     */
+    private boolean measuredLookup() throws IOException {
+        metrics.tokens.increment();
+        if ((++lookupCount & (LemmatizerMetrics.TIMING_SAMPLE - 1)) != 0) {
+            return lookup.lookup(termAtt.buffer(), 0, termAtt.length(), lemmas);
         }
+        long start = System.nanoTime();
+        boolean found = lookup.lookup(termAtt.buffer(), 0, termAtt.length(), lemmas);
+        metrics.lookupNanos.record(System.nanoTime() - start);
+        return found;
+    }
 
-        return true;
+    /**
+     * Copies the lemma starting at the given offset to the term attribute
+     * and moves {@link #nextLemma} behind it, or to -1 after the last lemma or when {@link #maxLemmas} are emitted.
+     * @param start
+     */
+    private void emitLemma(int start) {
+        char[] chars = lemmas.chars();
+        int length = lemmas.length();
+        int end = start;
+        while (end < length && chars[end] != '|') {
+            end++;
+        }
+        termAtt.copyBuffer(chars, start, end - start);
+        emittedLemmas = start == 0 ? 1 : emittedLemmas + 1;
+        nextLemma = end < length && (maxLemmas == 0 || emittedLemmas < maxLemmas) ? end + 1 : -1;
     }
 
     /**
@@ -162,16 +253,17 @@ public class FSTTokenFilter extends TokenFilter {
     @Override
     public void reset() throws IOException {
         super.reset();
-        buffer = null;
+        nextLemma = -1;
     }
 
     public static void main(String[] args) throws IOException {
         if (args.length < 1) {
-            System.out.println("USAGE: FSTBuilder <FST input file path>");
+            System.out.println("USAGE: FSTTokenFilter <FST input file path> [--mmap]");
             System.exit(1);
         }
         File file = new File(args[0]);
-        FST<CharsRef> fst = FST.read(file.toPath(), CharSequenceOutputs.getSingleton());
+        LoadMode loadMode = args.length > 1 && "--mmap".equals(args[1]) ? LoadMode.MMAP : LoadMode.HEAP;
+        FST<CharsRef> fst = loadMode.load(file.toPath());
 
         for (String s : Arrays.asList("najprudší", "najprudkejší", "neni", "chujovinami", "piči", "mám")) {
             System.out.println(utilGetDebug(fst, new BytesRef(s)));
@@ -1,7 +1,21 @@
 package sk.essentialdata.lucene.analysis.fst;
 
+import java.io.Closeable;
+import java.io.File;
 import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.apache.lucene.util.CharsRefBuilder;
 import org.apache.lucene.analysis.TokenStream;
 import org.apache.lucene.analysis.util.ResourceLoader;
 import org.apache.lucene.analysis.util.ResourceLoaderAware;
@@ -12,43 +26,485 @@ import org.apache.lucene.analysis.util.TokenFilterFactory;
  * Example config for Slovak including a custom dictionary:
  * <pre class="prettyprint" >
  * &lt;filter class=&quot;sk.essentialdata.lucene.analysis.fst.FSTTokenFilterFactory&quot;
- *    fst=&quot;lib/slovaklemma.fst&quot;</pre>
+ *    fst=&quot;lib/slovaklemma.fst&quot; loadMode=&quot;mmap&quot; cacheSize=&quot;16384&quot;/&gt;</pre>
+ *
+ * The FST is loaded once in {@link #inform(ResourceLoader)} through {@link FSTRegistry},
+ * so all factories (on any core or field) using the same dictionary share one instance.
+ * The optional loadMode is "heap" (default) or "mmap", see {@link LoadMode}.
+ * The optional cacheSize enables a {@link LemmaCache} of that many words shared by all filters of the factory,
+ * cacheSeed is a file with the most frequent words to be cached in advance, one per line, most frequent first
+ * (anything after the first whitespace on a line, e.g. the frequency, is ignored).
+ * With metrics="true" the filters count tokens, hits and lemmas and time the lookups into {@link LemmatizerMetrics}
+ * shared by all factories using the same dictionary file and published through JMX.
+ * <p>
+ * The optional overlay is a small dictionary in the input format of {@link FSTBuilder} (lemma, form and flags
+ * delimited by tabs) with domain-specific mappings, compiled in memory when the dictionary is loaded
+ * and looked up before it, see {@link OverlayLookup}. With overlayMode="override" (default) a form found
+ * in the overlay gets only the overlay lemmas, with overlayMode="union" also the lemmas from the dictionary.
+ * <p>
+ * The optional maxLemmas limits the lemmas emitted for an ambiguous word to the first ones (default 0, all of them),
+ * meant for a dictionary with ranked lemmas built by FSTBuilder --rank or --frequencies.
+ * <p>
+ * With asciiFallback="true" a word not found in the dictionary is looked up once more folded to ASCII,
+ * see {@link AsciiFallbackLookup}. Together with a dictionary built by FSTBuilder --merged it replaces
+ * separate dictionaries with and without diacritics.
+ * <p>
+ * With ignoreCase="true" words are looked up lowercased as the FST is walked, which replaces a LowerCaseFilter
+ * in front of this filter, but keeps the case of the words which are not found, see {@link CaseFoldingLookup}.
+ * With exactCaseFirst="true" the word is looked up as it is first, with restoreCase="true" the lemmas
+ * of a capitalized word or a word in capitals get the same case.
+ * <p>
+ * The optional guesser is an FST built by FSTBuilder --guesser, which guesses the lemma of a word still not found
+ * from its longest known ending, see {@link LemmaGuesser}. guesserMinStem is the number of code points of the word
+ * which have to stay in front of the ending (default 3), guesserMinConfidence the share of the dictionary forms
+ * with that ending for which the guessed rule is right (default 0.5).
+ * <p>
+ * With reloadInterval="&lt;seconds&gt;" the dictionary file is checked for changes in the background.
+ * A changed file (or overlay or guesser) is loaded once it has not changed for a whole interval, validated by the sanity words
+ * of {@link FSTBuilder} (every word found by the current dictionary must be found by the new one)
+ * and swapped in for the token streams created afterwards. Streams already in use keep their dictionary,
+ * which is freed once they are gone. Creating a stream never waits for a reload. A failed background reload
+ * is logged through java.util.logging and kept in {@link #getLastReloadFailure()}.
+ * {@link #reload()} does the same on demand. Solr does not close the factories of a reloaded core, so the check
+ * holds the factory only weakly and stops once the factory is garbage collected, if it is not closed before.
  *
  * See <a href="https://github.com/essential-data/lucene-fst-lemmatizer">https://github.com/essential-data/lucene-fst-lemmatizer</a>
  *
  * @author miso
  * @date 4/30/14.
  */
-public class FSTTokenFilterFactory extends TokenFilterFactory implements ResourceLoaderAware {
-    private String fstFileName;
+public class FSTTokenFilterFactory extends TokenFilterFactory implements ResourceLoaderAware, Closeable {
+    private static final Logger LOG = Logger.getLogger(FSTTokenFilterFactory.class.getName());
+    private final LoadMode loadMode;
+    private final int cacheSize;
+    private final String cacheSeed;
+    private final boolean metricsEnabled;
+    private final int reloadInterval;
+    private final boolean asciiFallback;
+    private final boolean ignoreCase;
+    private final boolean exactCaseFirst;
+    private final boolean restoreCase;
+    private final int maxLemmas;
+    private final String overlayPath;
+    private final OverlayLookup.Mode overlayMode;
+    private final String guesserPath;
+    private final int guesserMinStem;
+    private final float guesserMinConfidence;
+    private String dictionaryPath;
+    /**
+     * @var state dictionary used for new token streams, replaced as a whole on reload, null until inform() and after close()
+     */
+    private volatile State state;
+    /**
+     * @var metricsHandle metrics of the dictionary, null if they are not enabled and after close()
+     */
+    private volatile LemmatizerMetrics.Handle metricsHandle;
+    private ScheduledFuture<?> reloadTask;
+    private FileStamp loadedStamp;
+    private FileStamp changedStamp;
+    private int reloadCount;
+    private Exception lastReloadFailure;
 
     public static final String PARAM_DICTIONARY = "fst";
+    public static final String PARAM_LOAD_MODE = "loadMode";
+    public static final String PARAM_CACHE_SIZE = "cacheSize";
+    public static final String PARAM_CACHE_SEED = "cacheSeed";
+    public static final String PARAM_METRICS = "metrics";
+    public static final String PARAM_RELOAD_INTERVAL = "reloadInterval";
+    public static final String PARAM_ASCII_FALLBACK = "asciiFallback";
+    public static final String PARAM_MAX_LEMMAS = "maxLemmas";
+    public static final String PARAM_OVERLAY = "overlay";
+    public static final String PARAM_OVERLAY_MODE = "overlayMode";
+    public static final String PARAM_IGNORE_CASE = "ignoreCase";
+    public static final String PARAM_EXACT_CASE_FIRST = "exactCaseFirst";
+    public static final String PARAM_RESTORE_CASE = "restoreCase";
+    public static final String PARAM_GUESSER = "guesser";
+    public static final String PARAM_GUESSER_MIN_STEM = "guesserMinStem";
+    public static final String PARAM_GUESSER_MIN_CONFIDENCE = "guesserMinConfidence";
+
+    /**
+     * Loaded dictionary with its cache, overlay and guesser and the lemmatizer looking up words through them.
+     */
+    private final class State {
+        private final FSTRegistry.Handle handle;
+        private final LemmaDictionary dictionary;
+        private final LemmaCache cache;
+        private final LemmaDictionary overlay;
+        private final LemmaGuesser guesser;
+        private final Lemmatizer lemmatizer;
+
+        private State(FSTRegistry.Handle handle, LemmaCache cache, LemmaDictionary overlay, LemmaGuesser guesser) {
+            this.handle = handle;
+            this.dictionary = handle.get();
+            this.cache = cache;
+            this.overlay = overlay;
+            this.guesser = guesser;
+            this.lemmatizer = new Lemmatizer(dictionary, this::newLookup);
+        }
+
+        private LemmaDictionary.Lookup newLookup() {
+            LemmaDictionary.Lookup lookup = cache != null ? cache.newLookup() : dictionary.newLookup();
+            if (overlay != null) {
+                lookup = new OverlayLookup(overlay.newLookup(), lookup, overlayMode);
+            }
+            if (asciiFallback) {
+                lookup = new AsciiFallbackLookup(lookup);
+            }
+            if (ignoreCase) {
+                lookup = new CaseFoldingLookup(lookup, exactCaseFirst, restoreCase);
+            }
+            if (guesser != null) {
+                lookup = guesser.withFallback(lookup, ignoreCase, restoreCase);
+            }
+            return lookup;
+        }
+    }
+
+    /**
+     * Modification time and size of the dictionary file, of the overlay and of the guesser,
+     * to detect changes without reading them.
+     */
+    private static final class FileStamp {
+        private final long lastModified;
+        private final long length;
+        private final long overlayLastModified;
+        private final long overlayLength;
+        private final long guesserLastModified;
+        private final long guesserLength;
+
+        private FileStamp(File file, File overlay, File guesser) {
+            this.lastModified = file.lastModified();
+            this.length = file.length();
+            this.overlayLastModified = overlay != null ? overlay.lastModified() : 0;
+            this.overlayLength = overlay != null ? overlay.length() : 0;
+            this.guesserLastModified = guesser != null ? guesser.lastModified() : 0;
+            this.guesserLength = guesser != null ? guesser.length() : 0;
+        }
+
+        private boolean sameAs(FileStamp other) {
+            return other != null && lastModified == other.lastModified && length == other.length && sameOtherFilesAs(other);
+        }
+
+        /**
+         * @return true if the overlay and the guesser did not change, the dictionary file may have
+         */
+        private boolean sameOtherFilesAs(FileStamp other) {
+            return other != null && overlayLastModified == other.overlayLastModified && overlayLength == other.overlayLength
+                    && guesserLastModified == other.guesserLastModified && guesserLength == other.guesserLength;
+        }
+    }
+
+    /**
+     * One daemon thread checking the dictionaries of all factories, created on the first use.
+     */
+    private static final class Reloader {
+        private static final ScheduledThreadPoolExecutor EXECUTOR = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "fst-reload");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        static {
+            EXECUTOR.setRemoveOnCancelPolicy(true);
+        }
+    }
+
+    /**
+     * Periodic check of a factory, which does not keep the factory reachable and cancels itself once it is collected.
+     */
+    private static final class ReloadTask implements Runnable {
+        private final WeakReference<FSTTokenFilterFactory> factory;
+        private volatile ScheduledFuture<?> future;
+
+        private ReloadTask(FSTTokenFilterFactory factory) {
+            this.factory = new WeakReference<>(factory);
+        }
+
+        private static ScheduledFuture<?> schedule(FSTTokenFilterFactory factory, int interval) {
+            ReloadTask task = new ReloadTask(factory);
+            task.future = Reloader.EXECUTOR.scheduleWithFixedDelay(task, interval, interval, TimeUnit.SECONDS);
+            return task.future;
+        }
+
+        @Override
+        public void run() {
+            FSTTokenFilterFactory factory = this.factory.get();
+            if (factory != null) {
+                factory.checkForUpdate();
+            } else if (future != null) {
+                future.cancel(false);
+            }
+        }
+    }
 
     /**
      * Initialize this factory via a set of key-value pairs.
      */
     public FSTTokenFilterFactory(Map<String, String> args) {
         super(args);
+        String loadModeArg = get(args, PARAM_LOAD_MODE);
+        loadMode = loadModeArg == null ? LoadMode.HEAP : LoadMode.fromString(loadModeArg);
+        cacheSize = getInt(args, PARAM_CACHE_SIZE, 0);
+        cacheSeed = get(args, PARAM_CACHE_SEED);
+        metricsEnabled = getBoolean(args, PARAM_METRICS, false);
+        reloadInterval = getInt(args, PARAM_RELOAD_INTERVAL, 0);
+        asciiFallback = getBoolean(args, PARAM_ASCII_FALLBACK, false);
+        ignoreCase = getBoolean(args, PARAM_IGNORE_CASE, false);
+        exactCaseFirst = getBoolean(args, PARAM_EXACT_CASE_FIRST, false);
+        restoreCase = getBoolean(args, PARAM_RESTORE_CASE, false);
+        if ((exactCaseFirst || restoreCase) && !ignoreCase) {
+            throw new IllegalArgumentException("Parameters " + PARAM_EXACT_CASE_FIRST + " and " + PARAM_RESTORE_CASE
+                    + " require " + PARAM_IGNORE_CASE + "=\"true\"");
+        }
+        maxLemmas = getInt(args, PARAM_MAX_LEMMAS, 0);
+        if (maxLemmas < 0) {
+            throw new IllegalArgumentException("Parameter " + PARAM_MAX_LEMMAS + " must not be negative: " + maxLemmas);
+        }
+        overlayPath = get(args, PARAM_OVERLAY);
+        String overlayModeArg = get(args, PARAM_OVERLAY_MODE);
+        overlayMode = overlayModeArg == null ? OverlayLookup.Mode.OVERRIDE : OverlayLookup.Mode.fromString(overlayModeArg);
+        guesserPath = get(args, PARAM_GUESSER);
+        guesserMinStem = getInt(args, PARAM_GUESSER_MIN_STEM, LemmaGuesser.DEFAULT_MIN_STEM_LENGTH);
+        guesserMinConfidence = getFloat(args, PARAM_GUESSER_MIN_CONFIDENCE, (float) LemmaGuesser.DEFAULT_MIN_CONFIDENCE);
+        if (guesserPath == null && (guesserMinStem != LemmaGuesser.DEFAULT_MIN_STEM_LENGTH
+                || guesserMinConfidence != (float) LemmaGuesser.DEFAULT_MIN_CONFIDENCE)) {
+            throw new IllegalArgumentException("Parameters " + PARAM_GUESSER_MIN_STEM + " and " + PARAM_GUESSER_MIN_CONFIDENCE
+                    + " require " + PARAM_GUESSER);
+        }
     }
 
     @Override
     public TokenStream create(TokenStream tokenStream) {
-        try {
-            return new FSTTokenFilter(tokenStream, fstFileName);
-        } catch (IOException e) {
-            RuntimeException runtimeException = new RuntimeException(e.getMessage(), e);
-            runtimeException.setStackTrace(e.getStackTrace());
-            throw runtimeException;
+        State state = this.state;
+        if (state == null) {
+            throw new IllegalStateException("FST is not loaded, inform() has to be called first");
         }
+        return new FSTTokenFilter(tokenStream, state.lemmatizer, getMetrics(), maxLemmas);
     }
 
     @Override
-    public void inform(ResourceLoader loader) throws IOException {
+    public synchronized void inform(ResourceLoader loader) throws IOException {
         String dictionaryArg = getOriginalArgs().get(PARAM_DICTIONARY);
         if (dictionaryArg == null) {
             throw new IllegalArgumentException("Parameter " + PARAM_DICTIONARY + " is mandatory.");
         }
-        fstFileName = getOriginalArgs().get(PARAM_DICTIONARY);
+        dictionaryPath = dictionaryArg;
+        if (metricsEnabled && metricsHandle == null) {
+            metricsHandle = LemmatizerMetrics.acquire(new File(dictionaryArg).getCanonicalPath());
+        }
+        FileStamp stamp = stamp();
+        swap(load());
+        loadedStamp = stamp;
+        if (reloadInterval > 0 && reloadTask == null) {
+            reloadTask = ReloadTask.schedule(this, reloadInterval);
+        }
+    }
+
+    private State load() throws IOException {
+        FSTRegistry.Handle handle = FSTRegistry.acquire(dictionaryPath, loadMode);
+        try {
+            LemmaCache cache = null;
+            if (cacheSize > 0) {
+                cache = new LemmaCache(handle.get(), cacheSize);
+                if (cacheSeed != null) {
+                    cache.seed(readSeed(cacheSeed));
+                }
+            }
+            LemmaDictionary overlay = overlayPath != null ? FSTBuilder.buildOverlay(Paths.get(overlayPath)) : null;
+            LemmaGuesser guesser = guesserPath != null
+                    ? LemmaGuesser.load(Paths.get(guesserPath), loadMode, guesserMinStem, guesserMinConfidence) : null;
+            return new State(handle, cache, overlay, guesser);
+        } catch (IOException | RuntimeException e) {
+            handle.close();
+            throw e;
+        }
+    }
+
+    private FileStamp stamp() {
+        return new FileStamp(new File(dictionaryPath), overlayPath != null ? new File(overlayPath) : null,
+                guesserPath != null ? new File(guesserPath) : null);
+    }
+
+    /**
+     * Replaces the state and releases the old one. Token streams already using the old dictionary keep it.
+     * @param newState
+     */
+    private void swap(State newState) {
+        State oldState = state;
+        state = newState;
+        if (oldState != null) {
+            oldState.handle.close();
+        }
+    }
+
+    /**
+     * Loads the dictionary file again and if its content changed and it passes the sanity check,
+     * uses it for the token streams created from now on.
+     * The overlay is compiled again and the guesser read again too.
+     * @return true if the new dictionary is used, false if neither the content of the dictionary nor the overlay
+     * nor the guesser changed
+     * @throws IOException if the new dictionary cannot be read or does not pass the sanity check,
+     * the current dictionary is kept in that case
+     */
+    public synchronized boolean reload() throws IOException {
+        State current = state;
+        if (current == null) {
+            throw new IllegalStateException("FST is not loaded, inform() has to be called first");
+        }
+        FileStamp stamp = stamp();
+        State candidate;
+        try {
+            candidate = load();
+        } catch (RuntimeException e) {
+            // a truncated or otherwise broken file
+            throw new IOException("Cannot read " + dictionaryPath, e);
+        }
+        try {
+            if (candidate.dictionary == current.dictionary && stamp.sameOtherFilesAs(loadedStamp)) {
+                candidate.handle.close();
+                loadedStamp = stamp;
+                return false;
+            }
+            validate(candidate.dictionary, current.dictionary);
+        } catch (IOException | RuntimeException e) {
+            candidate.handle.close();
+            throw e;
+        }
+        swap(candidate);
+        loadedStamp = stamp;
+        reloadCount++;
+        return true;
+    }
+
+    /**
+     * Reloads the dictionary if its file changed and then stayed the same for a whole interval,
+     * so that a file being copied is not read.
+     */
+    private synchronized void checkForUpdate() {
+        if (state == null) {
+            return;
+        }
+        FileStamp stamp = stamp();
+        if (stamp.sameAs(loadedStamp)) {
+            changedStamp = null;
+            return;
+        }
+        if (!stamp.sameAs(changedStamp)) {
+            changedStamp = stamp;
+            return;
+        }
+        changedStamp = null;
+        try {
+            reload();
+            lastReloadFailure = null;
+        } catch (IOException | RuntimeException e) {
+            // keep the current dictionary and do not try the same file again
+            loadedStamp = stamp;
+            lastReloadFailure = e;
+            LOG.log(Level.WARNING, "Reload of " + dictionaryPath + " failed, keeping the current dictionary", e);
+        }
+    }
+
+    /**
+     * Every sanity word found by the current dictionary must be found by the new one.
+     * @param candidate
+     * @param current
+     * @throws IOException
+     */
+    static void validate(LemmaDictionary candidate, LemmaDictionary current) throws IOException {
+        LemmaDictionary.Lookup candidateLookup = candidate.newLookup();
+        LemmaDictionary.Lookup currentLookup = current.newLookup();
+        CharsRefBuilder lemmas = new CharsRefBuilder();
+        List<String> words = new ArrayList<>(FSTBuilder.SANITY_WORDS);
+        words.addAll(FSTBuilder.SANITY_WORDS_ASCII);
+        for (String word : words) {
+            if (currentLookup.lookup(word, lemmas) && !candidateLookup.lookup(word, lemmas)) {
+                throw new IOException("Sanity check failed, the new dictionary does not contain " + word);
+            }
+        }
+    }
+
+    private static List<String> readSeed(String path) throws IOException {
+        List<String> words = new ArrayList<>();
+        for (String line : Files.readAllLines(Paths.get(path), StandardCharsets.UTF_8)) {
+            String[] columns = line.trim().split("\\s+", 2);
+            if (!columns[0].isEmpty()) {
+                words.add(columns[0]);
+            }
+        }
+        return words;
+    }
+
+    /**
+     * @return the dictionary used for new token streams
+     */
+    public LemmaDictionary getDictionary() {
+        State state = this.state;
+        return state != null ? state.dictionary : null;
+    }
+
+    /**
+     * @return lemmatizer with the same lookups as the token streams (cache, overlay, ASCII fallback, guesser), for use outside
+     * of the analysis chain, null until inform()
+     */
+    public Lemmatizer getLemmatizer() {
+        State state = this.state;
+        return state != null ? state.lemmatizer : null;
+    }
+
+    /**
+     * @return the cache shared by the filters of this factory, e.g. to read its hit and miss counters,
+     * null if the cache is not enabled
+     */
+    public LemmaCache getCache() {
+        State state = this.state;
+        return state != null ? state.cache : null;
+    }
+
+    /**
+     * @return metrics of the dictionary, null if metrics are not enabled
+     */
+    public LemmatizerMetrics getMetrics() {
+        LemmatizerMetrics.Handle metricsHandle = this.metricsHandle;
+        return metricsHandle != null ? metricsHandle.get() : null;
+    }
+
+    /**
+     * @return how many times a changed dictionary was swapped in
+     */
+    public synchronized int getReloadCount() {
+        return reloadCount;
+    }
+
+    /**
+     * @return why the last reload in the background failed, null if it succeeded or there was none
+     */
+    public synchronized Exception getLastReloadFailure() {
+        return lastReloadFailure;
+    }
+
+    /**
+     * @return number of factories whose dictionaries are checked for changes in the background
+     */
+    public static int getScheduledReloadCount() {
+        return Reloader.EXECUTOR.getQueue().size();
+    }
+
+    /**
+     * Stops checking for updates and releases the shared FST and metrics.
+     * Filters created afterwards fail, existing filters keep working.
+     */
+    @Override
+    public synchronized void close() {
+        if (reloadTask != null) {
+            reloadTask.cancel(false);
+            reloadTask = null;
+        }
+        swap(null);
+        if (metricsHandle != null) {
+            metricsHandle.close();
+            metricsHandle = null;
+        }
     }
 
 }
@@ -1,12 +1,7 @@
 package sk.essentialdata.lucene.analysis.fst;
 
-import org.apache.lucene.util.BytesRef;
-import org.apache.lucene.util.CharsRef;
-import org.apache.lucene.util.fst.CharSequenceOutputs;
-import org.apache.lucene.util.fst.FST;
-import org.apache.lucene.util.fst.Util;
-
 import java.io.*;
+import java.nio.charset.StandardCharsets;
 
 /**
  * @author miso
@@ -15,10 +10,31 @@ import java.io.*;
 public class FSTUtils {
     public static void main(String[] args) {
         if(args.length >= 2 && "lemmatize".equals(args[0])) {
-            boolean echo = (args.length >=3 && "-e".equals(args[2]));
+            boolean echo = false;
+            LoadMode loadMode = LoadMode.HEAP;
+            boolean batch = false;
+            int threads = Runtime.getRuntime().availableProcessors();
+            for (int i = 2; i < args.length; i++) {
+                if ("-e".equals(args[i])) {
+                    echo = true;
+                } else if ("--mmap".equals(args[i])) {
+                    loadMode = LoadMode.MMAP;
+                } else if ("--batch".equals(args[i])) {
+                    batch = true;
+                } else if (args[i].startsWith("--threads=")) {
+                    threads = Integer.parseInt(args[i].substring("--threads=".length()));
+                }
+            }
             try {
                 File file = new File(args[1]);
-                FST<CharsRef> fst = FST.read(file.toPath(), CharSequenceOutputs.getSingleton());
+                Lemmatizer lemmatizer = new Lemmatizer(LemmaDictionary.load(file.toPath(), loadMode));
+                if (batch) {
+                    lemmatizeBatch(lemmatizer, threads, echo);
+                    return;
+                }
+                LemmaConsumer printLemma = (buffer, offset, length) -> {
+                    System.out.print(new String(buffer, offset, length) + " ");
+                };
 
                 BufferedReader br = new BufferedReader(new InputStreamReader(System.in));
                 StreamTokenizer st = new StreamTokenizer(br);
@@ -31,10 +47,7 @@ public class FSTUtils {
                         if (word == null || word.length() < 1) {
                             continue;
                         }
-                        CharsRef lemma = Util.get(fst, new BytesRef(word));
-                        if (lemma != null) {
-                            System.out.print(lemma.toString().replace("|", " ") + " "); // multiple lemmas are delimited by "|"
-                        } else if (echo) {
+                        if (lemmatizer.lemmatize(word, printLemma) == 0 && echo) {
                             System.out.print(word + " ");
                         }
                     } catch (RuntimeException e) {
@@ -49,10 +62,69 @@ public class FSTUtils {
             } catch (IOException io){
                 io.printStackTrace();
             }
+        } else if (args.length >= 2 && "serve".equals(args[0])) {
+            try {
+                serve(args);
+            } catch (IOException io) {
+                io.printStackTrace();
+            }
         } else {
             System.out.println("Usage: fstutils lemmatize <path-to-fst> <options>, where options are:\n" +
                     "-e: echo when a word is not in the dictionary, e.g. 'foo bar' -> 'foo bar'.\n" +
-                    "Without the -e option it is 'foo bar' -> 'bar'");
+                    "Without the -e option it is 'foo bar' -> 'bar'\n" +
+                    "--mmap: read the FST from a memory-mapped file instead of copying it to the heap first\n" +
+                    "--batch: read UTF-8 text in large chunks and lemmatize them on a pool of threads,\n" +
+                    "words are runs of Unicode letters, digits and combining marks\n" +
+                    "--threads=<n>: number of threads of the batch mode (default number of processors)\n" +
+                    "or: fstutils serve <path-to-fst> [-e] [--mmap] [--port=<port>] [--threads=<n>]\n" +
+                    "keeps the FST loaded and lemmatizes every line received on 127.0.0.1:<port> (default " +
+                    LemmatizerServer.DEFAULT_PORT + ")\n" +
+                    "into one line of lemmas, serving up to <n> connections at once (default 16)");
         }
     }
+
+    /**
+     * Runs {@link LemmatizerServer} until the process is killed.
+     * @param args serve, path to the FST and options
+     * @throws IOException
+     */
+    private static void serve(String[] args) throws IOException {
+        boolean echo = false;
+        LoadMode loadMode = LoadMode.HEAP;
+        int port = LemmatizerServer.DEFAULT_PORT;
+        int threads = 16;
+        for (int i = 2; i < args.length; i++) {
+            if ("-e".equals(args[i])) {
+                echo = true;
+            } else if ("--mmap".equals(args[i])) {
+                loadMode = LoadMode.MMAP;
+            } else if (args[i].startsWith("--port=")) {
+                port = Integer.parseInt(args[i].substring("--port=".length()));
+            } else if (args[i].startsWith("--threads=")) {
+                threads = Integer.parseInt(args[i].substring("--threads=".length()));
+            }
+        }
+        Lemmatizer lemmatizer = new Lemmatizer(LemmaDictionary.load(new File(args[1]).toPath(), loadMode));
+        try (LemmatizerServer server = new LemmatizerServer(lemmatizer, echo, port, threads)) {
+            System.err.println("Serving " + args[1] + " on 127.0.0.1:" + server.getPort());
+            server.serve();
+        }
+    }
+
+    /**
+     * Lemmatizes stdin to stdout by {@link BatchLemmatizer} and reports the throughput to stderr.
+     * @param lemmatizer
+     * @param threads
+     * @param echo
+     * @throws IOException
+     */
+    private static void lemmatizeBatch(Lemmatizer lemmatizer, int threads, boolean echo) throws IOException {
+        Reader in = new InputStreamReader(new FileInputStream(FileDescriptor.in), StandardCharsets.UTF_8);
+        Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(FileDescriptor.out), StandardCharsets.UTF_8), 1 << 20);
+        long start = System.nanoTime();
+        long tokens = new BatchLemmatizer(lemmatizer, threads, BatchLemmatizer.DEFAULT_CHUNK_SIZE, echo).lemmatize(in, out);
+        long nanos = System.nanoTime() - start;
+        System.err.println(String.format("%d tokens in %d ms on %d threads, %.0f tokens/s",
+                tokens, nanos / 1000000, threads, tokens * 1e9 / Math.max(nanos, 1)));
+    }
 }
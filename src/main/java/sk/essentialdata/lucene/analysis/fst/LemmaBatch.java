@@ -0,0 +1,78 @@
+package sk.essentialdata.lucene.analysis.fst;
+
+import org.apache.lucene.util.ArrayUtil;
+import org.apache.lucene.util.CharsRef;
+import org.apache.lucene.util.CharsRefBuilder;
+
+/**
+ * Lemmas of a batch of terms looked up by {@link Lemmatizer#lookup(CharSequence[], boolean, LemmaBatch)},
+ * indexed by the position of the term in the batch. The lemmas of all terms are stored in one buffer,
+ * so an instance reused for every batch does not allocate once it has grown to the size of the batches.
+ * Not thread-safe.
+ * @author miso
+ * @date 10/17/26.
+ */
+public final class LemmaBatch {
+    private final CharsRefBuilder chars = new CharsRefBuilder();
+    /**
+     * @var starts start of the lemmas of term i in chars, -1 if the term was not found, they end at ends[i]
+     */
+    private int[] starts = new int[0];
+    private int[] ends = new int[0];
+    private int size;
+
+    void reset(int size) {
+        if (starts.length < size) {
+            starts = new int[ArrayUtil.oversize(size, Integer.BYTES)];
+            ends = new int[starts.length];
+        }
+        this.size = size;
+        chars.clear();
+    }
+
+    void setLemmas(int index, CharsRefBuilder lemmas) {
+        starts[index] = chars.length();
+        chars.append(lemmas.chars(), 0, lemmas.length());
+        ends[index] = chars.length();
+    }
+
+    void setNotFound(int index) {
+        starts[index] = -1;
+    }
+
+    /**
+     * @return number of terms of the last batch
+     */
+    public int size() {
+        return size;
+    }
+
+    public boolean isFound(int index) {
+        return starts[index] >= 0;
+    }
+
+    /**
+     * @param index
+     * @return lemmas of the term delimited by "|", null if it was not found. A view valid until the next batch.
+     */
+    public CharsRef getLemmas(int index) {
+        if (starts[index] < 0) {
+            return null;
+        }
+        return new CharsRef(chars.chars(), starts[index], ends[index] - starts[index]);
+    }
+
+    /**
+     * Replaces the content of lemmas with the lemmas of the term, without allocating.
+     * @param index
+     * @param lemmas
+     * @return false if the term was not found
+     */
+    public boolean copyLemmas(int index, CharsRefBuilder lemmas) {
+        if (starts[index] < 0) {
+            return false;
+        }
+        lemmas.copyChars(chars.chars(), starts[index], ends[index] - starts[index]);
+        return true;
+    }
+}
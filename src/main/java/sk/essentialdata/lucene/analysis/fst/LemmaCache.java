@@ -0,0 +1,233 @@
+package sk.essentialdata.lucene.analysis.fst;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import org.apache.lucene.util.CharsRefBuilder;
+import org.apache.lucene.util.RamUsageEstimator;
+
+/**
+ * Bounded cache of lookup results in front of a {@link LemmaDictionary}, shared by any number of threads.
+ * Word frequencies are Zipfian, so a few thousands of entries answer about a half of all lookups
+ * without walking the FST. Words, which are not in the dictionary, are cached too.
+ * <p>
+ * The cache is a lock-free 2-way set-associative table of immutable entries. A lookup hashes the term chars
+ * and compares at most two entries, so a hit allocates nothing. Only a miss allocates a new entry.
+ * Every hit increments a small counter of the entry and a miss, which would evict an entry with a nonzero counter,
+ * only decrements the counter, so hot words are not evicted by a stream of rare ones.
+ * Concurrent updates of the counters may get lost, which only makes the eviction slightly less precise.
+ * @author miso
+ * @date 10/17/26.
+ */
+public class LemmaCache {
+    /**
+     * @var MAX_TERM_LENGTH longer terms are rare and are not cached
+     */
+    static final int MAX_TERM_LENGTH = 32;
+    private static final int MAX_HITS = 7;
+    private static final char[] NOT_FOUND = new char[0];
+
+    private final LemmaDictionary dictionary;
+    private final AtomicReferenceArray<Entry> entries;
+    private final int mask;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * @param dictionary
+     * @param size maximum number of cached words, rounded up to a power of two
+     */
+    public LemmaCache(LemmaDictionary dictionary, int size) {
+        if (size < 2) {
+            throw new IllegalArgumentException("Cache size must be at least 2: " + size);
+        }
+        this.dictionary = dictionary;
+        int capacity = Integer.highestOneBit(size - 1) << 1;
+        this.entries = new AtomicReferenceArray<>(capacity);
+        this.mask = capacity - 2; // index of the first slot of a set
+    }
+
+    /**
+     * Looks up the words in advance and protects them from eviction by less frequent words.
+     * @param words most frequent words first
+     * @throws IOException
+     */
+    public void seed(Iterable<String> words) throws IOException {
+        Lookup lookup = newLookup();
+        CharsRefBuilder lemmas = new CharsRefBuilder();
+        for (String word : words) {
+            char[] term = word.toCharArray();
+            if (term.length == 0 || term.length > MAX_TERM_LENGTH) {
+                continue;
+            }
+            int hash = hash(term, 0, term.length);
+            int slot = hash & mask;
+            int free = entries.get(slot) == null ? slot : entries.get(slot + 1) == null ? slot + 1 : -1;
+            if (free >= 0 && find(term, 0, term.length, hash) == null) {
+                boolean found = lookup.dictionaryLookup.lookup(term, 0, term.length, lemmas);
+                Entry entry = new Entry(hash, term, found ? lemmas.toCharsRef().chars : NOT_FOUND);
+                entry.hits = MAX_HITS;
+                entries.set(free, entry);
+            }
+        }
+    }
+
+    public LemmaDictionary getDictionary() {
+        return dictionary;
+    }
+
+    /**
+     * @return a new lookup going through this cache, which must not be shared between threads
+     */
+    public Lookup newLookup() {
+        return new Lookup();
+    }
+
+    /**
+     * @return number of lookups answered from the cache
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * @return number of lookups which had to walk the FST
+     */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * @return number of slots of the cache
+     */
+    public int capacity() {
+        return entries.length();
+    }
+
+    /**
+     * @return approximate heap used by the cached entries, not including the dictionary
+     */
+    public long ramBytesUsed() {
+        long bytes = RamUsageEstimator.shallowSizeOf(this) + RamUsageEstimator.NUM_BYTES_OBJECT_REF * (long) entries.length();
+        for (int i = 0; i < entries.length(); i++) {
+            Entry entry = entries.get(i);
+            if (entry != null) {
+                bytes += Entry.BASE_RAM_BYTES + RamUsageEstimator.sizeOf(entry.term)
+                        + (entry.lemmas == NOT_FOUND ? 0 : RamUsageEstimator.sizeOf(entry.lemmas));
+            }
+        }
+        return bytes;
+    }
+
+    private static int hash(char[] buffer, int offset, int length) {
+        int h = 0;
+        for (int i = offset; i < offset + length; i++) {
+            h = 31 * h + buffer[i];
+        }
+        // spread the bits, so that the low bits used for the index depend on all chars
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        return h;
+    }
+
+    private Entry find(char[] buffer, int offset, int length, int hash) {
+        int slot = hash & mask;
+        Entry entry = entries.get(slot);
+        if (entry != null && entry.matches(buffer, offset, length, hash)) {
+            return entry;
+        }
+        entry = entries.get(slot + 1);
+        if (entry != null && entry.matches(buffer, offset, length, hash)) {
+            return entry;
+        }
+        return null;
+    }
+
+    private void put(char[] buffer, int offset, int length, int hash, CharsRefBuilder lemmas, boolean found) {
+        int slot = hash & mask;
+        Entry first = entries.get(slot);
+        Entry second = entries.get(slot + 1);
+        int victim;
+        if (first == null) {
+            victim = slot;
+        } else if (second == null) {
+            victim = slot + 1;
+        } else {
+            Entry colder = first.hits <= second.hits ? first : second;
+            if (colder.hits > 0) {
+                colder.hits--;
+                return;
+            }
+            victim = colder == first ? slot : slot + 1;
+        }
+        char[] term = new char[length];
+        System.arraycopy(buffer, offset, term, 0, length);
+        char[] lemmaChars = found ? new char[lemmas.length()] : NOT_FOUND;
+        if (found) {
+            System.arraycopy(lemmas.chars(), 0, lemmaChars, 0, lemmaChars.length);
+        }
+        entries.lazySet(victim, new Entry(hash, term, lemmaChars));
+    }
+
+    private static final class Entry {
+        private static final long BASE_RAM_BYTES = RamUsageEstimator.shallowSizeOfInstance(Entry.class);
+
+        private final int hash;
+        private final char[] term;
+        /**
+         * @var lemmas lemmas delimited by "|", {@link #NOT_FOUND} if the term is not in the dictionary
+         */
+        private final char[] lemmas;
+        private int hits;
+
+        private Entry(int hash, char[] term, char[] lemmas) {
+            this.hash = hash;
+            this.term = term;
+            this.lemmas = lemmas;
+        }
+
+        private boolean matches(char[] buffer, int offset, int length, int hash) {
+            if (this.hash != hash || term.length != length) {
+                return false;
+            }
+            for (int i = 0; i < length; i++) {
+                if (term[i] != buffer[offset + i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Lookup answered from the cache if possible, otherwise from the dictionary. Not thread-safe.
+     */
+    public final class Lookup extends LemmaDictionary.Lookup {
+        private final LemmaDictionary.Lookup dictionaryLookup = dictionary.newLookup();
+
+        @Override
+        public boolean lookup(char[] buffer, int offset, int length, CharsRefBuilder lemmas) throws IOException {
+            if (length > MAX_TERM_LENGTH) {
+                return dictionaryLookup.lookup(buffer, offset, length, lemmas);
+            }
+            int hash = hash(buffer, offset, length);
+            Entry entry = find(buffer, offset, length, hash);
+            if (entry != null) {
+                hits.increment();
+                if (entry.hits < MAX_HITS) {
+                    entry.hits++;
+                }
+                if (entry.lemmas == NOT_FOUND) {
+                    return false;
+                }
+                lemmas.copyChars(entry.lemmas, 0, entry.lemmas.length);
+                return true;
+            }
+            misses.increment();
+            boolean found = dictionaryLookup.lookup(buffer, offset, length, lemmas);
+            put(buffer, offset, length, hash, lemmas, found);
+            return found;
+        }
+    }
+}
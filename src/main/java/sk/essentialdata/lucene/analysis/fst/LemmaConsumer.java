@@ -0,0 +1,16 @@
+package sk.essentialdata.lucene.analysis.fst;
+
+/**
+ * Receives the lemmas of a word from {@link Lemmatizer#lemmatize(CharSequence, LemmaConsumer)} one by one.
+ * @author miso
+ * @date 10/17/26.
+ */
+@FunctionalInterface
+public interface LemmaConsumer {
+    /**
+     * @param buffer chars of the lemma, valid only during the call, must not be modified
+     * @param offset
+     * @param length
+     */
+    void accept(char[] buffer, int offset, int length);
+}
@@ -0,0 +1,167 @@
+package sk.essentialdata.lucene.analysis.fst;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.CRC32;
+import org.apache.lucene.codecs.CodecUtil;
+import org.apache.lucene.store.DataInput;
+import org.apache.lucene.store.DataOutput;
+import org.apache.lucene.store.OutputStreamDataOutput;
+import org.apache.lucene.util.Accountable;
+import org.apache.lucene.util.ArrayUtil;
+import org.apache.lucene.util.BytesRefBuilder;
+import org.apache.lucene.util.CharsRef;
+import org.apache.lucene.util.CharsRefBuilder;
+import org.apache.lucene.util.fst.CharSequenceOutputs;
+import org.apache.lucene.util.fst.FST;
+
+/**
+ * Loaded dictionary mapping inflected forms to their lemmas.
+ * Two file formats are read:
+ * <ul>
+ *     <li>plain FST&lt;CharsRef&gt;, whose outputs are the lemmas delimited by "|" ({@link CharsRefLemmaDictionary})</li>
+ *     <li>ordinal format, where the FST maps each form to a number of a deduplicated set of lemmas
+ *     ({@link OrdinalLemmaDictionary})</li>
+ * </ul>
+ * Instances are immutable and can be shared by any number of threads,
+ * each thread looks up words through its own {@link Lookup}.
+ * @author miso
+ * @date 10/17/26.
+ */
+public abstract class LemmaDictionary implements Accountable {
+    public static final char LEMMA_DELIMITER = '|';
+
+    /**
+     * Reads a dictionary in any of the supported formats.
+     * @param in input positioned at the start of the dictionary
+     * @return the dictionary
+     * @throws IOException
+     */
+    public static LemmaDictionary read(DataInput in) throws IOException {
+        DataInput header = in.clone();
+        int magic = header.readInt();
+        if (magic != CodecUtil.CODEC_MAGIC) {
+            throw new IOException("Not an FST dictionary, magic " + Integer.toHexString(magic));
+        }
+        String codec = header.readString();
+        if (OrdinalLemmaDictionary.CODEC_NAME.equals(codec)) {
+            return OrdinalLemmaDictionary.readFrom(in);
+        }
+        return new CharsRefLemmaDictionary(new FST<>(in, CharSequenceOutputs.getSingleton()));
+    }
+
+    public static LemmaDictionary load(Path path, LoadMode loadMode) throws IOException {
+        return read(loadMode.open(path, new CRC32()));
+    }
+
+    /**
+     * Wraps an FST whose outputs are the lemmas delimited by "|".
+     * @param fst
+     * @return the dictionary
+     */
+    public static LemmaDictionary of(FST<CharsRef> fst) {
+        return new CharsRefLemmaDictionary(fst);
+    }
+
+    /**
+     * @return a new lookup, which must not be shared between threads
+     */
+    public abstract Lookup newLookup();
+
+    /**
+     * Writes the dictionary in its own format.
+     * @param out
+     * @throws IOException
+     */
+    public abstract void save(DataOutput out) throws IOException;
+
+    public void save(Path path) throws IOException {
+        try (OutputStream os = new BufferedOutputStream(Files.newOutputStream(path))) {
+            save(new OutputStreamDataOutput(os));
+        }
+    }
+
+    /**
+     * Calls the consumer for every form in the dictionary, in sorted order of the UTF-8 bytes of the forms.
+     * @param consumer
+     * @throws IOException
+     */
+    abstract void forEachEntry(EntryConsumer consumer) throws IOException;
+
+    interface EntryConsumer {
+        /**
+         * @param form
+         * @param lemmas lemmas of the form delimited by "|"
+         */
+        void accept(String form, String lemmas) throws IOException;
+    }
+
+    /**
+     * Reusable state of dictionary lookups. Nothing is allocated by the lookup itself,
+     * all buffers are reused. Not thread-safe.
+     */
+    public abstract static class Lookup {
+        /**
+         * @var termBytes UTF-8 encoded term, which is an input for FST
+         */
+        protected final BytesRefBuilder termBytes = new BytesRefBuilder();
+        private char[] lowerCase = new char[16];
+
+        /**
+         * Looks up the term and replaces the content of lemmas with its lemmas delimited by "|".
+         * @param buffer
+         * @param offset
+         * @param length
+         * @param lemmas
+         * @return true if the term was found
+         * @throws IOException
+         */
+        public abstract boolean lookup(char[] buffer, int offset, int length, CharsRefBuilder lemmas) throws IOException;
+
+        public boolean lookup(String term, CharsRefBuilder lemmas) throws IOException {
+            return lookup(term.toCharArray(), 0, term.length(), lemmas);
+        }
+
+        /**
+         * The same as {@link #lookup(char[], int, int, CharsRefBuilder)}, but the FST is walked from the end of the prefix
+         * the term shares with the term of the previous call instead of from the first arc.
+         * Works for any order of terms, it is fastest for sorted ones. Lookups which do not walk the FST themselves
+         * just call {@link #lookup(char[], int, int, CharsRefBuilder)}.
+         * @param buffer
+         * @param offset
+         * @param length
+         * @param lemmas
+         * @return true if the term was found
+         * @throws IOException
+         */
+        public boolean lookupNext(char[] buffer, int offset, int length, CharsRefBuilder lemmas) throws IOException {
+            return lookup(buffer, offset, length, lemmas);
+        }
+
+        /**
+         * The same as {@link #lookup(char[], int, int, CharsRefBuilder)} for the term lowercased
+         * by {@link Character#toLowerCase(int)}, the buffer itself is not changed.
+         * Lookups walking the FST lowercase the chars as they follow the arcs, others look up a lowercased copy.
+         * @param buffer
+         * @param offset
+         * @param length
+         * @param lemmas
+         * @return true if the lowercased term was found
+         * @throws IOException
+         */
+        public boolean lookupIgnoreCase(char[] buffer, int offset, int length, CharsRefBuilder lemmas) throws IOException {
+            lowerCase = ArrayUtil.grow(lowerCase, 2 * length);
+            int lowerLength = 0;
+            int end = offset + length;
+            for (int i = offset; i < end; ) {
+                int codePoint = Character.codePointAt(buffer, i, end);
+                i += Character.charCount(codePoint);
+                lowerLength += Character.toChars(Character.toLowerCase(codePoint), lowerCase, lowerLength);
+            }
+            return lookup(lowerCase, 0, lowerLength, lemmas);
+        }
+    }
+}
@@ -0,0 +1,182 @@
+package sk.essentialdata.lucene.analysis.fst;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import org.apache.lucene.util.CharsRef;
+import org.apache.lucene.util.CharsRefBuilder;
+import org.apache.lucene.util.fst.FST;
+
+/**
+ * Guesses the lemma of a word which is not in the dictionary from its ending.
+ * <p>
+ * The guesser FST is built by FSTBuilder --guesser from the same mappings as the dictionary. Its inputs are
+ * the endings of the forms (up to {@link #MAX_SUFFIX_LENGTH} code points) reversed, its outputs are the most frequent
+ * rule transforming a form with that ending to its lemma (see {@link SuffixEncoding}, without stripping prefixes),
+ * preceded by the confidence of the rule in per mille (the share of the forms with that ending it is right for)
+ * and the number of those forms. Endings of a single form are left out.
+ * <p>
+ * A lookup walks the word backwards from its last code point once and takes the rule of the longest ending
+ * with enough confidence which leaves at least minStemLength code points of the word in front of it.
+ * So the cost of a guess is bounded by {@link #MAX_SUFFIX_LENGTH} arcs. Not thread-safe, like other lookups.
+ * @author miso
+ * @date 10/17/26.
+ */
+public class LemmaGuesser {
+    /**
+     * @var MAX_SUFFIX_LENGTH longest ending in the guesser FST
+     */
+    public static final int MAX_SUFFIX_LENGTH = 6;
+    public static final int DEFAULT_MIN_STEM_LENGTH = 3;
+    public static final double DEFAULT_MIN_CONFIDENCE = 0.5;
+    /**
+     * @var HEADER_LENGTH chars of the output in front of the rule: confidence in per mille and count
+     */
+    static final int HEADER_LENGTH = 2;
+
+    private final FST<CharsRef> fst;
+    private final int minStemLength;
+    private final int minConfidence;
+
+    /**
+     * @param fst guesser FST built by FSTBuilder --guesser
+     * @param minStemLength minimum number of code points of the word in front of the ending used for the guess
+     * @param minConfidence minimum share of the forms with the ending for which the rule is right, from 0 to 1
+     */
+    public LemmaGuesser(FST<CharsRef> fst, int minStemLength, double minConfidence) {
+        if (minStemLength < 1) {
+            throw new IllegalArgumentException("Minimum stem length must be positive: " + minStemLength);
+        }
+        if (minConfidence < 0 || minConfidence > 1) {
+            throw new IllegalArgumentException("Minimum confidence must be between 0 and 1: " + minConfidence);
+        }
+        if (fst.inputType != FST.INPUT_TYPE.BYTE4) {
+            throw new IllegalArgumentException("Not a guesser FST, its input type is " + fst.inputType);
+        }
+        this.fst = fst;
+        this.minStemLength = minStemLength;
+        this.minConfidence = (int) Math.ceil(minConfidence * 1000);
+    }
+
+    /**
+     * @param path guesser FST built by FSTBuilder --guesser
+     * @param loadMode
+     * @param minStemLength
+     * @param minConfidence
+     * @return the guesser
+     * @throws IOException
+     */
+    public static LemmaGuesser load(Path path, LoadMode loadMode, int minStemLength, double minConfidence) throws IOException {
+        return new LemmaGuesser(loadMode.load(path), minStemLength, minConfidence);
+    }
+
+    /**
+     * @return a lookup which finds the guessed lemma of every word it can guess
+     */
+    public LemmaDictionary.Lookup newLookup() {
+        return new GuessLookup();
+    }
+
+    /**
+     * @param lookup all the lookups in the dictionary, including the one ignoring case, see {@link CaseFoldingLookup}
+     * @param ignoreCase whether the word is guessed lowercased
+     * @param restoreCase whether the guessed lemma gets the case of the word, see {@link CaseFoldingLookup#restoreCase}
+     * @return a lookup which guesses the lemma of the words not found by the given lookup
+     */
+    LemmaDictionary.Lookup withFallback(LemmaDictionary.Lookup lookup, boolean ignoreCase, boolean restoreCase) {
+        return new FallbackLookup(lookup, new GuessLookup(), ignoreCase, restoreCase);
+    }
+
+    /**
+     * @param rule rule with its header
+     * @param length length of the term in chars
+     * @return true if the rule is confident enough and strips less than the whole term
+     */
+    private boolean accept(CharsRefBuilder rule, int length) {
+        char[] chars = rule.chars();
+        return chars[0] >= minConfidence && chars[HEADER_LENGTH + 1] < length;
+    }
+
+    private final class GuessLookup extends LemmaDictionary.Lookup {
+        private final FST.Arc<CharsRef> arc = new FST.Arc<>();
+        private final FST.BytesReader fstReader = fst.getBytesReader();
+        private final CharsRefBuilder output = new CharsRefBuilder();
+        private final CharsRefBuilder rule = new CharsRefBuilder();
+
+        @Override
+        public boolean lookup(char[] buffer, int offset, int length, CharsRefBuilder lemmas) throws IOException {
+            int codePoints = Character.codePointCount(buffer, offset, length);
+            int maxSuffixLength = Math.min(codePoints - minStemLength, MAX_SUFFIX_LENGTH);
+            fst.getFirstArc(arc);
+            output.clear();
+            rule.clear();
+            int i = offset + length;
+            for (int suffixLength = 1; suffixLength <= maxSuffixLength; suffixLength++) {
+                int codePoint = Character.codePointBefore(buffer, i, offset);
+                if (fst.findTargetArc(codePoint, arc, arc, fstReader) == null) {
+                    break;
+                }
+                i -= Character.charCount(codePoint);
+                if (arc.output.length > 0) {
+                    output.append(arc.output.chars, arc.output.offset, arc.output.length);
+                }
+                if (arc.isFinal()) {
+                    int outputLength = output.length();
+                    CharsRef finalOutput = arc.nextFinalOutput;
+                    if (finalOutput.length > 0) {
+                        output.append(finalOutput.chars, finalOutput.offset, finalOutput.length);
+                    }
+                    if (accept(output, length)) {
+                        rule.copyChars(output.chars(), 0, output.length());
+                    }
+                    output.setLength(outputLength);
+                }
+            }
+            if (rule.length() == 0) {
+                return false;
+            }
+            lemmas.clear();
+            SuffixEncoding.apply(rule.chars(), HEADER_LENGTH, rule.length() - HEADER_LENGTH, buffer, offset, length, lemmas, false);
+            return true;
+        }
+    }
+
+    /**
+     * Looks up the word in the dictionary first and guesses only if it is not found. It has to wrap all the other
+     * lookups, so that e.g. a capitalized word is guessed only if it is not found ignoring case either. Not thread-safe.
+     */
+    private static final class FallbackLookup extends LemmaDictionary.Lookup {
+        private final LemmaDictionary.Lookup lookup;
+        private final LemmaDictionary.Lookup guess;
+        private final boolean ignoreCase;
+        private final boolean restoreCase;
+
+        private FallbackLookup(LemmaDictionary.Lookup lookup, LemmaDictionary.Lookup guess, boolean ignoreCase, boolean restoreCase) {
+            this.lookup = lookup;
+            this.guess = guess;
+            this.ignoreCase = ignoreCase;
+            this.restoreCase = restoreCase;
+        }
+
+        @Override
+        public boolean lookup(char[] buffer, int offset, int length, CharsRefBuilder lemmas) throws IOException {
+            if (lookup.lookup(buffer, offset, length, lemmas)) {
+                return true;
+            }
+            if (!ignoreCase) {
+                return guess.lookup(buffer, offset, length, lemmas);
+            }
+            if (!guess.lookupIgnoreCase(buffer, offset, length, lemmas)) {
+                return false;
+            }
+            if (restoreCase) {
+                CaseFoldingLookup.restoreCase(buffer, offset, length, lemmas);
+            }
+            return true;
+        }
+
+        @Override
+        public boolean lookupIgnoreCase(char[] buffer, int offset, int length, CharsRefBuilder lemmas) throws IOException {
+            return lookup.lookupIgnoreCase(buffer, offset, length, lemmas) || guess.lookupIgnoreCase(buffer, offset, length, lemmas);
+        }
+    }
+}
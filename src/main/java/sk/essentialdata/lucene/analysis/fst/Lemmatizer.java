@@ -0,0 +1,380 @@
+package sk.essentialdata.lucene.analysis.fst;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+import org.apache.lucene.util.ArrayUtil;
+import org.apache.lucene.util.CharsRef;
+import org.apache.lucene.util.CharsRefBuilder;
+import org.apache.lucene.util.CloseableThreadLocal;
+import org.apache.lucene.util.IntroSorter;
+
+/**
+ * Thread-safe lemmatizer over a {@link LemmaDictionary}, every thread uses its own lookup context,
+ * so a single instance may be shared by the whole application (e.g. a static field of a Spark job).
+ * The contexts are held by the lemmatizer, not by the threads (see {@link CloseableThreadLocal}), so a lemmatizer
+ * replaced e.g. on reload of the dictionary does not keep its dictionary reachable from long-lived threads.
+ * <p>
+ * {@link #lemmatize(CharSequence, LemmaConsumer)} passes the lemmas of one word to a callback without allocating,
+ * {@link #lemmatizeText} appends the lemmas of all words of a text to a buffer.
+ * {@link #lemmatizeAll(List, ForkJoinPool)} and {@link #lemmatizeAll(Stream)} lemmatize large collections
+ * on a fork-join pool. {@link FSTTokenFilter} and {@link FSTUtils} use the same lookups.
+ * <p>
+ * {@link #lookup(CharSequence[], boolean, LemmaBatch)} looks up a whole batch of terms in sorted order,
+ * so that each term is walked in the FST from the end of the prefix it shares with the previous term
+ * (see {@link LemmaDictionary.Lookup#lookupNext}). Sorted words of a natural language share long prefixes,
+ * so a big part of the arcs is not followed again. The results are in the order of the given terms.
+ * @author miso
+ * @date 10/17/26.
+ */
+public class Lemmatizer {
+    private static final String[] NO_LEMMAS = new String[0];
+    /**
+     * @var BULK_TASK_SIZE number of words lemmatized by one fork-join task as a sorted batch
+     */
+    static final int BULK_TASK_SIZE = 4096;
+
+    private final LemmaDictionary dictionary;
+    private final Supplier<LemmaDictionary.Lookup> lookups;
+    private final CloseableThreadLocal<Context> contexts;
+
+    /**
+     * Per-thread lookup and buffers.
+     */
+    private final class Context {
+        private final LemmaDictionary.Lookup lookup = lookups.get();
+        private final CharsRefBuilder lemmas = new CharsRefBuilder();
+        private final LemmaBatch batch = new LemmaBatch();
+        private char[] term = new char[32];
+        private int[] order = new int[0];
+
+        private char[] copy(CharSequence term) {
+            int length = term.length();
+            char[] buffer = this.term = ArrayUtil.grow(this.term, length);
+            for (int i = 0; i < length; i++) {
+                buffer[i] = term.charAt(i);
+            }
+            return buffer;
+        }
+    }
+
+    public Lemmatizer(LemmaDictionary dictionary) {
+        this(dictionary, dictionary::newLookup);
+    }
+
+    /**
+     * @param dictionary
+     * @param lookups creates the lookups of the threads, possibly through a cache, an overlay or the ASCII fallback
+     */
+    Lemmatizer(LemmaDictionary dictionary, Supplier<LemmaDictionary.Lookup> lookups) {
+        this.dictionary = dictionary;
+        this.lookups = lookups;
+        this.contexts = new CloseableThreadLocal<Context>() {
+            @Override
+            protected Context initialValue() {
+                return new Context();
+            }
+        };
+    }
+
+    public LemmaDictionary getDictionary() {
+        return dictionary;
+    }
+
+    /**
+     * @return a new lookup of the same kind as the lookups of the threads, for a single-threaded owner
+     * like a token stream, which then does not need the thread-local context
+     */
+    public LemmaDictionary.Lookup newLookup() {
+        return lookups.get();
+    }
+
+    /**
+     * Looks up the word in the context of the current thread.
+     * @param buffer
+     * @param offset
+     * @param length
+     * @param lemmas output, the lemmas delimited by {@link LemmaDictionary#LEMMA_DELIMITER}
+     * @return true if the word was found
+     * @throws IOException
+     */
+    public boolean lemmatize(char[] buffer, int offset, int length, CharsRefBuilder lemmas) throws IOException {
+        return contexts.get().lookup.lookup(buffer, offset, length, lemmas);
+    }
+
+    /**
+     * Passes the lemmas of the word to the consumer in the order of the dictionary. Nothing is allocated.
+     * @param term
+     * @param consumer
+     * @return number of lemmas, 0 if the word is not in the dictionary
+     * @throws IOException
+     */
+    public int lemmatize(CharSequence term, LemmaConsumer consumer) throws IOException {
+        Context context = contexts.get();
+        if (!context.lookup.lookup(context.copy(term), 0, term.length(), context.lemmas)) {
+            return 0;
+        }
+        return forEachLemma(context.lemmas.chars(), 0, context.lemmas.length(), consumer);
+    }
+
+    /**
+     * @see #lemmatize(CharSequence, LemmaConsumer)
+     */
+    public int lemmatize(char[] buffer, int offset, int length, LemmaConsumer consumer) throws IOException {
+        Context context = contexts.get();
+        if (!context.lookup.lookup(buffer, offset, length, context.lemmas)) {
+            return 0;
+        }
+        return forEachLemma(context.lemmas.chars(), 0, context.lemmas.length(), consumer);
+    }
+
+    /**
+     * @param term
+     * @return the lemmas of the word, empty if it is not in the dictionary
+     * @throws IOException
+     */
+    public String[] lemmas(CharSequence term) throws IOException {
+        Context context = contexts.get();
+        if (!context.lookup.lookup(context.copy(term), 0, term.length(), context.lemmas)) {
+            return NO_LEMMAS;
+        }
+        return split(context.lemmas.chars(), 0, context.lemmas.length());
+    }
+
+    /**
+     * Appends the lemmas of all words of the text to the output. Words are maximal runs of Unicode letters, digits
+     * and combining marks. For each word the output contains its lemmas delimited by a space, or the word itself
+     * if it is not in the dictionary and echo is on, each followed by a space.
+     * @param text
+     * @param offset
+     * @param length
+     * @param echo whether to output the words which are not in the dictionary
+     * @param output
+     * @return number of words
+     * @throws IOException
+     */
+    public long lemmatizeText(char[] text, int offset, int length, boolean echo, CharsRefBuilder output) throws IOException {
+        LemmaConsumer appendLemma = (buffer, lemmaOffset, lemmaLength) -> {
+            output.append(buffer, lemmaOffset, lemmaLength);
+            output.append(' ');
+        };
+        long words = 0;
+        int end = offset + length;
+        int i = offset;
+        while (i < end) {
+            int codePoint = Character.codePointAt(text, i, end);
+            if (!isWordCodePoint(codePoint)) {
+                i += Character.charCount(codePoint);
+                continue;
+            }
+            int start = i;
+            do {
+                i += Character.charCount(codePoint);
+            } while (i < end && isWordCodePoint(codePoint = Character.codePointAt(text, i, end)));
+            words++;
+            if (lemmatize(text, start, i - start, appendLemma) == 0 && echo) {
+                output.append(text, start, i - start);
+                output.append(' ');
+            }
+        }
+        return words;
+    }
+
+    static boolean isWordCodePoint(int codePoint) {
+        if (Character.isLetterOrDigit(codePoint)) {
+            return true;
+        }
+        switch (Character.getType(codePoint)) {
+            case Character.NON_SPACING_MARK:
+            case Character.COMBINING_SPACING_MARK:
+            case Character.ENCLOSING_MARK:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Lemmatizes the words on the common fork-join pool.
+     * @see #lemmatizeAll(List, ForkJoinPool)
+     */
+    public String[][] lemmatizeAll(List<? extends CharSequence> terms) {
+        return lemmatizeAll(terms, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Splits the words into tasks of {@link #BULK_TASK_SIZE} words for the given pool,
+     * each task looks them up as a sorted batch, see {@link #lookup(CharSequence[], boolean, LemmaBatch)}.
+     * @param terms words, e.g. all distinct words of a corpus
+     * @param pool
+     * @return the lemmas of terms.get(i) at index i, empty for the words which are not in the dictionary
+     * @throws UncheckedIOException if a lookup fails
+     */
+    public String[][] lemmatizeAll(List<? extends CharSequence> terms, ForkJoinPool pool) {
+        String[][] result = new String[terms.size()][];
+        pool.invoke(new BulkTask(terms, 0, terms.size(), result));
+        return result;
+    }
+
+    /**
+     * Maps every word to its lemmas, empty if it is not in the dictionary. A parallel stream is processed
+     * on the common fork-join pool, an ordered stream keeps its order.
+     * @param terms
+     * @return the lemmas of each word
+     * @throws UncheckedIOException from the terminal operation if a lookup fails
+     */
+    public Stream<String[]> lemmatizeAll(Stream<? extends CharSequence> terms) {
+        return terms.map(term -> {
+            try {
+                return lemmas(term);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    private class BulkTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final List<? extends CharSequence> terms;
+        private final int from;
+        private final int to;
+        private final String[][] result;
+
+        private BulkTask(List<? extends CharSequence> terms, int from, int to, String[][] result) {
+            this.terms = terms;
+            this.from = from;
+            this.to = to;
+            this.result = result;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > BULK_TASK_SIZE) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new BulkTask(terms, from, middle, result), new BulkTask(terms, middle, to, result));
+                return;
+            }
+            CharSequence[] batchTerms = terms.subList(from, to).toArray(new CharSequence[0]);
+            LemmaBatch batch = contexts.get().batch;
+            try {
+                lookup(batchTerms, false, batch);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            for (int i = 0; i < batchTerms.length; i++) {
+                if (batch.isFound(i)) {
+                    CharsRef lemmas = batch.getLemmas(i);
+                    result[from + i] = split(lemmas.chars, lemmas.offset, lemmas.length);
+                } else {
+                    result[from + i] = NO_LEMMAS;
+                }
+            }
+        }
+    }
+
+    /**
+     * @return number of lemmas
+     */
+    static int forEachLemma(char[] chars, int offset, int length, LemmaConsumer consumer) {
+        int end = offset + length;
+        int count = 0;
+        int start = offset;
+        for (int i = offset; i <= end; i++) {
+            if (i == end || chars[i] == LemmaDictionary.LEMMA_DELIMITER) {
+                consumer.accept(chars, start, i - start);
+                count++;
+                start = i + 1;
+            }
+        }
+        return count;
+    }
+
+    private static String[] split(char[] chars, int offset, int length) {
+        int end = offset + length;
+        int count = 1;
+        for (int i = offset; i < end; i++) {
+            if (chars[i] == LemmaDictionary.LEMMA_DELIMITER) {
+                count++;
+            }
+        }
+        String[] lemmas = new String[count];
+        int start = offset;
+        count = 0;
+        for (int i = offset; i <= end; i++) {
+            if (i == end || chars[i] == LemmaDictionary.LEMMA_DELIMITER) {
+                lemmas[count++] = new String(chars, start, i - start);
+                start = i + 1;
+            }
+        }
+        return lemmas;
+    }
+
+    /**
+     * Looks up all terms, walking the FST only from the prefix shared with the previous term.
+     * @param terms
+     * @param sorted true if the terms are already sorted, e.g. the keys of a sorted term dictionary,
+     * otherwise they are looked up in sorted order, the array itself is not changed
+     * @param result lemmas of terms[i] at index i, reuse it for the next batches
+     * @throws IOException
+     */
+    public void lookup(CharSequence[] terms, boolean sorted, LemmaBatch result) throws IOException {
+        Context context = contexts.get();
+        int count = terms.length;
+        result.reset(count);
+        int[] order = null;
+        if (!sorted) {
+            order = context.order = ArrayUtil.grow(context.order, count);
+            for (int i = 0; i < count; i++) {
+                order[i] = i;
+            }
+            sort(terms, order, count);
+        }
+        for (int i = 0; i < count; i++) {
+            int index = sorted ? i : order[i];
+            CharSequence term = terms[index];
+            if (context.lookup.lookupNext(context.copy(term), 0, term.length(), context.lemmas)) {
+                result.setLemmas(index, context.lemmas);
+            } else {
+                result.setNotFound(index);
+            }
+        }
+    }
+
+    private static void sort(CharSequence[] terms, int[] order, int count) {
+        new IntroSorter() {
+            private CharSequence pivot;
+
+            @Override
+            protected void swap(int i, int j) {
+                int swap = order[i];
+                order[i] = order[j];
+                order[j] = swap;
+            }
+
+            @Override
+            protected void setPivot(int i) {
+                pivot = terms[order[i]];
+            }
+
+            @Override
+            protected int comparePivot(int j) {
+                return compareChars(pivot, terms[order[j]]);
+            }
+        }.sort(0, count);
+    }
+
+    private static int compareChars(CharSequence a, CharSequence b) {
+        int length = Math.min(a.length(), b.length());
+        for (int i = 0; i < length; i++) {
+            int diff = a.charAt(i) - b.charAt(i);
+            if (diff != 0) {
+                return diff;
+            }
+        }
+        return a.length() - b.length();
+    }
+}
@@ -0,0 +1,218 @@
+package sk.essentialdata.lucene.analysis.fst;
+
+import java.io.Closeable;
+import java.lang.management.ManagementFactory;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Counters and lookup latencies of all {@link FSTTokenFilter}s using one dictionary.
+ * All counters are striped {@link LongAdder}s, so filters running on many threads do not contend.
+ * Only every {@link #TIMING_SAMPLE}-th lookup of a filter is timed, which keeps the cost of System.nanoTime
+ * out of most lookups, the histogram is still representative.
+ * <p>
+ * Metrics are shared per dictionary file and published through JMX under
+ * sk.essentialdata.lucene.analysis.fst:type=LemmatizerMetrics,dictionary="&lt;canonical path&gt;".
+ * They are unregistered when the last handle is closed.
+ * @author miso
+ * @date 10/17/26.
+ */
+public class LemmatizerMetrics implements LemmatizerMetricsMBean {
+    public static final String JMX_DOMAIN = "sk.essentialdata.lucene.analysis.fst";
+    /**
+     * @var TIMING_SAMPLE every how many lookups one is timed, a power of two
+     */
+    static final int TIMING_SAMPLE = 16;
+
+    private static final Map<String, LemmatizerMetrics> registered = new HashMap<>();
+
+    private final String dictionary;
+    private final ObjectName objectName;
+    private int refCount;
+
+    final LongAdder tokens = new LongAdder();
+    final LongAdder keywords = new LongAdder();
+    final LongAdder hits = new LongAdder();
+    final LongAdder ambiguous = new LongAdder();
+    final LongAdder extraLemmas = new LongAdder();
+    final LatencyHistogram lookupNanos = new LatencyHistogram();
+
+    /**
+     * Creates metrics, which are not published through JMX.
+     * @param dictionary name of the dictionary
+     */
+    public LemmatizerMetrics(String dictionary) {
+        this(dictionary, null);
+    }
+
+    private LemmatizerMetrics(String dictionary, ObjectName objectName) {
+        this.dictionary = dictionary;
+        this.objectName = objectName;
+    }
+
+    /**
+     * Returns the metrics of the dictionary, creating and registering them in the platform MBean server
+     * if no other handle to them is open.
+     * @param dictionary canonical path of the dictionary file
+     * @return handle, which must be closed when the metrics are no longer updated
+     */
+    public static Handle acquire(String dictionary) {
+        synchronized (registered) {
+            LemmatizerMetrics metrics = registered.get(dictionary);
+            if (metrics == null) {
+                MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+                try {
+                    ObjectName name = new ObjectName(JMX_DOMAIN + ":type=LemmatizerMetrics,dictionary=" + ObjectName.quote(dictionary));
+                    metrics = new LemmatizerMetrics(dictionary, name);
+                    server.registerMBean(metrics, name);
+                } catch (JMException e) {
+                    throw new IllegalStateException("Cannot register metrics of " + dictionary, e);
+                }
+                registered.put(dictionary, metrics);
+            }
+            metrics.refCount++;
+            return new Handle(metrics);
+        }
+    }
+
+    private static void release(LemmatizerMetrics metrics) {
+        synchronized (registered) {
+            if (--metrics.refCount == 0) {
+                registered.remove(metrics.dictionary);
+                try {
+                    ManagementFactory.getPlatformMBeanServer().unregisterMBean(metrics.objectName);
+                } catch (JMException e) {
+                    throw new IllegalStateException("Cannot unregister metrics of " + metrics.dictionary, e);
+                }
+            }
+        }
+    }
+
+    public ObjectName getObjectName() {
+        return objectName;
+    }
+
+    @Override
+    public String getDictionary() {
+        return dictionary;
+    }
+
+    @Override
+    public long getTokens() {
+        return tokens.sum();
+    }
+
+    @Override
+    public long getKeywords() {
+        return keywords.sum();
+    }
+
+    @Override
+    public long getHits() {
+        return hits.sum();
+    }
+
+    @Override
+    public long getMisses() {
+        return tokens.sum() - keywords.sum() - hits.sum();
+    }
+
+    @Override
+    public long getAmbiguous() {
+        return ambiguous.sum();
+    }
+
+    @Override
+    public long getExtraLemmas() {
+        return extraLemmas.sum();
+    }
+
+    @Override
+    public double getHitRatio() {
+        long lookups = tokens.sum() - keywords.sum();
+        return lookups == 0 ? 0 : (double) hits.sum() / lookups;
+    }
+
+    @Override
+    public double getAmbiguousRatio() {
+        long hits = this.hits.sum();
+        return hits == 0 ? 0 : (double) ambiguous.sum() / hits;
+    }
+
+    @Override
+    public double getExtraLemmasPerToken() {
+        long tokens = this.tokens.sum();
+        return tokens == 0 ? 0 : (double) extraLemmas.sum() / tokens;
+    }
+
+    @Override
+    public long getTimedLookups() {
+        return lookupNanos.getCount();
+    }
+
+    @Override
+    public double getLookupMeanNanos() {
+        return lookupNanos.getMean();
+    }
+
+    @Override
+    public long getLookupP50Nanos() {
+        return lookupNanos.getPercentile(50);
+    }
+
+    @Override
+    public long getLookupP99Nanos() {
+        return lookupNanos.getPercentile(99);
+    }
+
+    @Override
+    public long getLookupP999Nanos() {
+        return lookupNanos.getPercentile(99.9);
+    }
+
+    @Override
+    public long getLookupMaxNanos() {
+        return lookupNanos.getMax();
+    }
+
+    @Override
+    public void reset() {
+        tokens.reset();
+        keywords.reset();
+        hits.reset();
+        ambiguous.reset();
+        extraLemmas.reset();
+        lookupNanos.reset();
+    }
+
+    /**
+     * Reference to shared metrics. Closing the handle more than once has no effect.
+     */
+    public static final class Handle implements Closeable {
+        private volatile LemmatizerMetrics metrics;
+
+        private Handle(LemmatizerMetrics metrics) {
+            this.metrics = metrics;
+        }
+
+        public LemmatizerMetrics get() {
+            LemmatizerMetrics metrics = this.metrics;
+            if (metrics == null) {
+                throw new IllegalStateException("Handle is already closed");
+            }
+            return metrics;
+        }
+
+        @Override
+        public synchronized void close() {
+            if (metrics != null) {
+                release(metrics);
+                metrics = null;
+            }
+        }
+    }
+}
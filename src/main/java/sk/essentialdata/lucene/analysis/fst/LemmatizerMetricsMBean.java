@@ -0,0 +1,42 @@
+package sk.essentialdata.lucene.analysis.fst;
+
+/**
+ * JMX view of {@link LemmatizerMetrics}. Latencies are in nanoseconds.
+ * @author miso
+ * @date 10/17/26.
+ */
+public interface LemmatizerMetricsMBean {
+    String getDictionary();
+
+    long getTokens();
+
+    long getKeywords();
+
+    long getHits();
+
+    long getMisses();
+
+    long getAmbiguous();
+
+    long getExtraLemmas();
+
+    double getHitRatio();
+
+    double getAmbiguousRatio();
+
+    double getExtraLemmasPerToken();
+
+    long getTimedLookups();
+
+    double getLookupMeanNanos();
+
+    long getLookupP50Nanos();
+
+    long getLookupP99Nanos();
+
+    long getLookupP999Nanos();
+
+    long getLookupMaxNanos();
+
+    void reset();
+}
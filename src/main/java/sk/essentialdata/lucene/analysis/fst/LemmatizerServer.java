@@ -0,0 +1,201 @@
+package sk.essentialdata.lucene.analysis.fst;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import org.apache.lucene.util.ArrayUtil;
+import org.apache.lucene.util.CharsRefBuilder;
+
+/**
+ * Lemmatization server for scripts which would otherwise start fstutils lemmatize again and again,
+ * paying for the JVM startup, reading the FST and the JIT warmup every time.
+ * <p>
+ * It listens on the loopback interface only. The protocol is line-based, in UTF-8: for every line of text received
+ * the server sends back one line with the lemmas of its words, see {@link Lemmatizer#lemmatizeText}.
+ * A client may send a whole batch of lines before reading the answers, they come in the same order and are flushed
+ * whenever the server has no more input buffered. A line longer than {@link #MAX_LINE_LENGTH} chars closes
+ * the connection. A connection is served by one thread of a fixed pool, more connections wait for a free thread
+ * (Java 8 has no virtual threads).
+ * @author miso
+ * @date 10/17/26.
+ */
+public class LemmatizerServer implements Closeable {
+    public static final int DEFAULT_PORT = 7397;
+    public static final int MAX_LINE_LENGTH = 1 << 20;
+
+    private final Lemmatizer lemmatizer;
+    private final boolean echo;
+    private final ExecutorService executor;
+    private final ServerSocket serverSocket;
+
+    /**
+     * Binds the server socket, {@link #serve()} accepts the connections.
+     * @param lemmatizer
+     * @param echo whether to output the words which are not in the dictionary
+     * @param port port on the loopback interface, 0 for any free port, see {@link #getPort()}
+     * @param threads maximum number of connections served at the same time
+     * @throws IOException
+     */
+    public LemmatizerServer(Lemmatizer lemmatizer, boolean echo, int port, int threads) throws IOException {
+        this.lemmatizer = lemmatizer;
+        this.echo = echo;
+        this.serverSocket = new ServerSocket();
+        serverSocket.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+        this.executor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "fst-serve");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * Accepts connections until the server is closed.
+     * @throws IOException
+     */
+    public void serve() throws IOException {
+        while (!serverSocket.isClosed()) {
+            Socket socket;
+            try {
+                socket = serverSocket.accept();
+            } catch (SocketException e) {
+                if (serverSocket.isClosed()) {
+                    return;
+                }
+                throw e;
+            }
+            try {
+                executor.execute(() -> handle(socket));
+            } catch (RejectedExecutionException e) {
+                socket.close();
+            }
+        }
+    }
+
+    /**
+     * Starts {@link #serve()} on a daemon thread.
+     * @return the server
+     */
+    public LemmatizerServer start() {
+        Thread thread = new Thread(() -> {
+            try {
+                serve();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }, "fst-serve-accept");
+        thread.setDaemon(true);
+        thread.start();
+        return this;
+    }
+
+    private void handle(Socket socket) {
+        try (Socket client = socket;
+             LineReader in = new LineReader(new InputStreamReader(client.getInputStream(), StandardCharsets.UTF_8));
+             Writer out = new BufferedWriter(new OutputStreamWriter(client.getOutputStream(), StandardCharsets.UTF_8), 1 << 16)) {
+            client.setTcpNoDelay(true);
+            CharsRefBuilder output = new CharsRefBuilder();
+            while (in.next()) {
+                output.clear();
+                lemmatizer.lemmatizeText(in.line, 0, in.length, echo, output);
+                out.write(output.chars(), 0, output.length());
+                out.write('\n');
+                if (!in.ready()) {
+                    out.flush();
+                }
+            }
+        } catch (IOException e) {
+            // the client went away or sent too long a line, nothing to answer
+        }
+    }
+
+    /**
+     * Reads the lines of a connection into a reused buffer, unlike BufferedReader.readLine() up to a limit.
+     */
+    private static final class LineReader implements Closeable {
+        private final Reader in;
+        private final char[] buffer = new char[1 << 16];
+        private int position;
+        private int limit;
+        private char[] line = new char[256];
+        private int length;
+
+        private LineReader(Reader in) {
+            this.in = in;
+        }
+
+        /**
+         * Reads the next line without the line terminator (LF or CR LF) into {@link #line}.
+         * @return false at the end of the input
+         * @throws IOException also if the line is longer than {@link #MAX_LINE_LENGTH}
+         */
+        private boolean next() throws IOException {
+            length = 0;
+            while (true) {
+                if (position == limit) {
+                    int read = in.read(buffer, 0, buffer.length);
+                    if (read < 0) {
+                        return length > 0;
+                    }
+                    position = 0;
+                    limit = read;
+                }
+                int end = position;
+                while (end < limit && buffer[end] != '\n') {
+                    end++;
+                }
+                if (length + end - position > MAX_LINE_LENGTH) {
+                    throw new IOException("Line longer than " + MAX_LINE_LENGTH + " chars");
+                }
+                line = ArrayUtil.grow(line, length + end - position);
+                System.arraycopy(buffer, position, line, length, end - position);
+                length += end - position;
+                if (end < limit) {
+                    position = end + 1;
+                    if (length > 0 && line[length - 1] == '\r') {
+                        length--;
+                    }
+                    return true;
+                }
+                position = limit;
+            }
+        }
+
+        /**
+         * @return true if more input is available without blocking
+         */
+        private boolean ready() throws IOException {
+            return position < limit || in.ready();
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+
+    /**
+     * Stops accepting connections and interrupts the connections being served.
+     */
+    @Override
+    public void close() throws IOException {
+        serverSocket.close();
+        executor.shutdownNow();
+    }
+}
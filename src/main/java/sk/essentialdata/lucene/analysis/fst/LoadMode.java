@@ -0,0 +1,76 @@
+package sk.essentialdata.lucene.analysis.fst;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.Locale;
+import java.util.zip.CRC32;
+import org.apache.lucene.store.ByteArrayDataInput;
+import org.apache.lucene.store.ByteBuffersDataInput;
+import org.apache.lucene.store.DataInput;
+import org.apache.lucene.util.CharsRef;
+import org.apache.lucene.util.fst.CharSequenceOutputs;
+import org.apache.lucene.util.fst.FST;
+
+/**
+ * How an FST file is brought into memory.
+ * <p>
+ * HEAP reads the whole file into a byte array first.
+ * MMAP maps the file read-only and parses the FST straight from the mapping,
+ * so the raw file is served from the OS page cache (shared by all JVMs) instead of being copied to the heap.
+ * Note that Lucene 7 always keeps the parsed arcs in an on-heap BytesStore, MMAP only saves the transient copy.
+ * @author miso
+ * @date 10/17/26.
+ */
+public enum LoadMode {
+    HEAP {
+        @Override
+        DataInput open(Path path, CRC32 crc) throws IOException {
+            byte[] bytes = Files.readAllBytes(path);
+            crc.update(bytes, 0, bytes.length);
+            return new ByteArrayDataInput(bytes);
+        }
+    },
+    MMAP {
+        @Override
+        DataInput open(Path path, CRC32 crc) throws IOException {
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                if (channel.size() > Integer.MAX_VALUE) {
+                    throw new IOException("FST file " + path + " is too large to be mapped: " + channel.size() + " bytes");
+                }
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                crc.update(buffer.duplicate());
+                return new ByteBuffersDataInput(Collections.singletonList(buffer));
+            }
+        }
+    };
+
+    /**
+     * Opens the file for reading and feeds all its bytes to the checksum.
+     * @param path
+     * @param crc
+     * @return input positioned at the start of the file
+     * @throws IOException
+     */
+    abstract DataInput open(Path path, CRC32 crc) throws IOException;
+
+    public FST<CharsRef> load(Path path) throws IOException {
+        return new FST<>(open(path, new CRC32()), CharSequenceOutputs.getSingleton());
+    }
+
+    /**
+     * @param name case insensitive name of the mode, e.g. "mmap"
+     * @return the mode
+     */
+    public static LoadMode fromString(String name) {
+        try {
+            return valueOf(name.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown load mode " + name + ", expected heap or mmap", e);
+        }
+    }
+}
@@ -0,0 +1,278 @@
+package sk.essentialdata.lucene.analysis.fst;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import org.apache.lucene.codecs.CodecUtil;
+import org.apache.lucene.store.DataInput;
+import org.apache.lucene.store.DataOutput;
+import org.apache.lucene.util.ArrayUtil;
+import org.apache.lucene.util.CharsRefBuilder;
+import org.apache.lucene.util.IntsRef;
+import org.apache.lucene.util.RamUsageEstimator;
+import org.apache.lucene.util.fst.FST;
+import org.apache.lucene.util.fst.IntsRefFSTEnum;
+import org.apache.lucene.util.fst.PositiveIntOutputs;
+
+/**
+ * Dictionary in the ordinal format:
+ * a sorted table of deduplicated lemmas, a table of sets of lemma numbers for ambiguous forms
+ * and an FST mapping each form to a number.
+ * The number is 2 * lemma number for unambiguous forms and 2 * set number + 1 for ambiguous ones.
+ * The outputs are plain numbers, so nothing has to be parsed at lookup time.
+ * <p>
+ * With {@link Encoding#SUFFIX} the table holds {@link SuffixEncoding} rules instead of whole lemmas,
+ * ordered from the most frequent one. There are only a few thousands of distinct rules,
+ * so the FST outputs are small and repeat a lot, which lets the FST share much more.
+ * <p>
+ * File format:
+ * <pre>
+ * header (codec FSTLemmaDictionary)
+ * byte encoding (since version 1)
+ * vInt lemma count, then each lemma as vInt length of the prefix shared with the previous lemma
+ *     followed by the rest as a string
+ * vInt set count, then each set as vInt size followed by vInt lemma numbers
+ * FST&lt;Long&gt;
+ * </pre>
+ * @author miso
+ * @date 10/17/26.
+ */
+class OrdinalLemmaDictionary extends LemmaDictionary {
+    static final String CODEC_NAME = "FSTLemmaDictionary";
+    static final int VERSION_START = 0;
+    static final int VERSION_SUFFIX_ENCODING = 1;
+    static final int VERSION_CURRENT = VERSION_SUFFIX_ENCODING;
+
+    enum Encoding {
+        /**
+         * the table holds whole lemmas
+         */
+        LEMMAS,
+        /**
+         * the table holds rules to transform the form to its lemma
+         */
+        SUFFIX
+    }
+
+    final Encoding encoding;
+    final FST<Long> fst;
+    /**
+     * @var lemmaChars all lemmas concatenated, lemma i is between lemmaOffsets[i] and lemmaOffsets[i+1]
+     */
+    private final char[] lemmaChars;
+    private final int[] lemmaOffsets;
+    /**
+     * @var setLemmas all sets concatenated, set i is between setOffsets[i] and setOffsets[i+1]
+     */
+    private final int[] setLemmas;
+    private final int[] setOffsets;
+
+    /**
+     * @param encoding
+     * @param lemmas lemma table
+     * @param sets sets of lemma numbers for ambiguous forms
+     * @param fst
+     */
+    OrdinalLemmaDictionary(Encoding encoding, List<String> lemmas, List<IntsRef> sets, FST<Long> fst) {
+        this.encoding = encoding;
+        this.fst = fst;
+        int chars = 0;
+        for (String lemma : lemmas) {
+            chars += lemma.length();
+        }
+        lemmaChars = new char[chars];
+        lemmaOffsets = new int[lemmas.size() + 1];
+        for (int i = 0; i < lemmas.size(); i++) {
+            String lemma = lemmas.get(i);
+            lemma.getChars(0, lemma.length(), lemmaChars, lemmaOffsets[i]);
+            lemmaOffsets[i + 1] = lemmaOffsets[i] + lemma.length();
+        }
+        int size = 0;
+        for (IntsRef set : sets) {
+            size += set.length;
+        }
+        setLemmas = new int[size];
+        setOffsets = new int[sets.size() + 1];
+        for (int i = 0; i < sets.size(); i++) {
+            IntsRef set = sets.get(i);
+            System.arraycopy(set.ints, set.offset, setLemmas, setOffsets[i], set.length);
+            setOffsets[i + 1] = setOffsets[i] + set.length;
+        }
+    }
+
+    static OrdinalLemmaDictionary readFrom(DataInput in) throws IOException {
+        int version = CodecUtil.checkHeader(in, CODEC_NAME, VERSION_START, VERSION_CURRENT);
+        Encoding encoding = version >= VERSION_SUFFIX_ENCODING ? Encoding.values()[in.readByte()] : Encoding.LEMMAS;
+        int lemmaCount = in.readVInt();
+        String[] lemmas = new String[lemmaCount];
+        String previous = "";
+        for (int i = 0; i < lemmaCount; i++) {
+            int prefix = in.readVInt();
+            lemmas[i] = previous.substring(0, prefix) + in.readString();
+            previous = lemmas[i];
+        }
+        int setCount = in.readVInt();
+        IntsRef[] sets = new IntsRef[setCount];
+        for (int i = 0; i < setCount; i++) {
+            IntsRef set = new IntsRef(in.readVInt());
+            for (set.length = 0; set.length < set.ints.length; set.length++) {
+                set.ints[set.length] = in.readVInt();
+            }
+            sets[i] = set;
+        }
+        FST<Long> fst = new FST<>(in, PositiveIntOutputs.getSingleton());
+        return new OrdinalLemmaDictionary(encoding, Arrays.asList(lemmas), Arrays.asList(sets), fst);
+    }
+
+    @Override
+    public void save(DataOutput out) throws IOException {
+        CodecUtil.writeHeader(out, CODEC_NAME, VERSION_CURRENT);
+        out.writeByte((byte) encoding.ordinal());
+        int lemmaCount = lemmaOffsets.length - 1;
+        out.writeVInt(lemmaCount);
+        for (int i = 0; i < lemmaCount; i++) {
+            int start = lemmaOffsets[i];
+            int length = lemmaOffsets[i + 1] - start;
+            int prefix = 0;
+            if (i > 0) {
+                int previousStart = lemmaOffsets[i - 1];
+                int previousLength = start - previousStart;
+                while (prefix < length && prefix < previousLength && lemmaChars[start + prefix] == lemmaChars[previousStart + prefix]) {
+                    prefix++;
+                }
+            }
+            out.writeVInt(prefix);
+            out.writeString(new String(lemmaChars, start + prefix, length - prefix));
+        }
+        int setCount = setOffsets.length - 1;
+        out.writeVInt(setCount);
+        for (int i = 0; i < setCount; i++) {
+            out.writeVInt(setOffsets[i + 1] - setOffsets[i]);
+            for (int j = setOffsets[i]; j < setOffsets[i + 1]; j++) {
+                out.writeVInt(setLemmas[j]);
+            }
+        }
+        fst.save(out);
+    }
+
+    @Override
+    void forEachEntry(EntryConsumer consumer) throws IOException {
+        IntsRefFSTEnum<Long> fstEnum = new IntsRefFSTEnum<>(fst);
+        IntsRefFSTEnum.InputOutput<Long> entry;
+        CharsRefBuilder lemmas = new CharsRefBuilder();
+        while ((entry = fstEnum.next()) != null) {
+            String form = FSTInput.toString(fst.inputType, entry.input);
+            copyLemmas(entry.output, form.toCharArray(), 0, form.length(), lemmas, false);
+            consumer.accept(form, lemmas.toString());
+        }
+    }
+
+    static long lemmaOutput(int lemma) {
+        return (long) lemma << 1;
+    }
+
+    static long setOutput(int set) {
+        return ((long) set << 1) | 1;
+    }
+
+    /**
+     * Replaces the content of lemmas with the lemmas of the given FST output delimited by "|".
+     * @param output
+     * @param term the form which was looked up, needed by the suffix encoding
+     * @param offset
+     * @param length
+     * @param lemmas
+     * @param lowerCase whether the term was looked up ignoring case
+     */
+    void copyLemmas(long output, char[] term, int offset, int length, CharsRefBuilder lemmas, boolean lowerCase) {
+        lemmas.clear();
+        if ((output & 1) == 0) {
+            appendLemma((int) (output >>> 1), term, offset, length, lemmas, lowerCase);
+            return;
+        }
+        int set = (int) (output >>> 1);
+        for (int i = setOffsets[set]; i < setOffsets[set + 1]; i++) {
+            if (i > setOffsets[set]) {
+                lemmas.append(LEMMA_DELIMITER);
+            }
+            appendLemma(setLemmas[i], term, offset, length, lemmas, lowerCase);
+        }
+    }
+
+    private void appendLemma(int lemma, char[] term, int offset, int length, CharsRefBuilder lemmas, boolean lowerCase) {
+        int start = lemmaOffsets[lemma];
+        int lemmaLength = lemmaOffsets[lemma + 1] - start;
+        if (encoding == Encoding.SUFFIX) {
+            SuffixEncoding.apply(lemmaChars, start, lemmaLength, term, offset, length, lemmas, lowerCase);
+        } else {
+            lemmas.append(lemmaChars, start, lemmaLength);
+        }
+    }
+
+    @Override
+    public long ramBytesUsed() {
+        return fst.ramBytesUsed() + RamUsageEstimator.sizeOf(lemmaChars) + RamUsageEstimator.sizeOf(lemmaOffsets)
+                + RamUsageEstimator.sizeOf(setLemmas) + RamUsageEstimator.sizeOf(setOffsets);
+    }
+
+    @Override
+    public Lookup newLookup() {
+        return new OrdinalLookup();
+    }
+
+    private class OrdinalLookup extends FSTLookup<Long> {
+        private long output;
+        /**
+         * @var prefixOutputs prefixOutputs[i] is the output accumulated along the first i arcs of the previous lookupNext
+         */
+        private long[] prefixOutputs = new long[16];
+
+        private OrdinalLookup() {
+            super(OrdinalLemmaDictionary.this.fst);
+        }
+
+        @Override
+        public boolean lookup(char[] buffer, int offset, int length, CharsRefBuilder lemmas) throws IOException {
+            return lookup(buffer, offset, length, lemmas, false);
+        }
+
+        @Override
+        public boolean lookupIgnoreCase(char[] buffer, int offset, int length, CharsRefBuilder lemmas) throws IOException {
+            return lookup(buffer, offset, length, lemmas, true);
+        }
+
+        private boolean lookup(char[] buffer, int offset, int length, CharsRefBuilder lemmas, boolean lowerCase) throws IOException {
+            output = 0;
+            if (!walk(buffer, offset, length, lowerCase)) {
+                return false;
+            }
+            copyLemmas(output + arc.nextFinalOutput, buffer, offset, length, lemmas, lowerCase);
+            return true;
+        }
+
+        @Override
+        public boolean lookupNext(char[] buffer, int offset, int length, CharsRefBuilder lemmas) throws IOException {
+            if (!walkFromPrefix(buffer, offset, length)) {
+                return false;
+            }
+            copyLemmas(output + arc.nextFinalOutput, buffer, offset, length, lemmas, false);
+            return true;
+        }
+
+        @Override
+        protected void markDepth(int depth) {
+            prefixOutputs = ArrayUtil.grow(prefixOutputs, depth + 1);
+            prefixOutputs[depth] = output;
+        }
+
+        @Override
+        protected void resetToDepth(int depth) {
+            output = depth == 0 ? 0 : prefixOutputs[depth];
+        }
+
+        @Override
+        protected void accumulate(Long output) {
+            this.output += output;
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package sk.essentialdata.lucene.analysis.fst;
+
+import java.io.IOException;
+import java.util.Locale;
+import org.apache.lucene.util.CharsRefBuilder;
+
+/**
+ * Looks up a form in a small overlay dictionary (see {@link FSTBuilder#buildOverlay}) before the base dictionary,
+ * so that domain-specific mappings are added without rebuilding the base.
+ * With {@link Mode#OVERRIDE} the lemmas of a form found in the overlay replace the lemmas from the base,
+ * with {@link Mode#UNION} the lemmas of the base not in the overlay are appended after the overlay lemmas.
+ * Nothing is allocated per lookup. Not thread-safe.
+ * @author miso
+ * @date 10/17/26.
+ */
+final class OverlayLookup extends LemmaDictionary.Lookup {
+    private final LemmaDictionary.Lookup overlay;
+    private final LemmaDictionary.Lookup base;
+    private final Mode mode;
+    private final CharsRefBuilder baseLemmas = new CharsRefBuilder();
+
+    enum Mode {
+        OVERRIDE, UNION;
+
+        static Mode fromString(String mode) {
+            try {
+                return valueOf(mode.toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Unknown overlay mode " + mode + ", expected override or union", e);
+            }
+        }
+    }
+
+    OverlayLookup(LemmaDictionary.Lookup overlay, LemmaDictionary.Lookup base, Mode mode) {
+        this.overlay = overlay;
+        this.base = base;
+        this.mode = mode;
+    }
+
+    @Override
+    public boolean lookup(char[] buffer, int offset, int length, CharsRefBuilder lemmas) throws IOException {
+        return lookup(buffer, offset, length, lemmas, false);
+    }
+
+    @Override
+    public boolean lookupIgnoreCase(char[] buffer, int offset, int length, CharsRefBuilder lemmas) throws IOException {
+        return lookup(buffer, offset, length, lemmas, true);
+    }
+
+    private static boolean lookup(LemmaDictionary.Lookup lookup, char[] buffer, int offset, int length, CharsRefBuilder lemmas,
+                                  boolean ignoreCase) throws IOException {
+        return ignoreCase ? lookup.lookupIgnoreCase(buffer, offset, length, lemmas) : lookup.lookup(buffer, offset, length, lemmas);
+    }
+
+    private boolean lookup(char[] buffer, int offset, int length, CharsRefBuilder lemmas, boolean ignoreCase) throws IOException {
+        if (!lookup(overlay, buffer, offset, length, lemmas, ignoreCase)) {
+            return lookup(base, buffer, offset, length, lemmas, ignoreCase);
+        }
+        if (mode == Mode.UNION && lookup(base, buffer, offset, length, baseLemmas, ignoreCase)) {
+            char[] chars = baseLemmas.chars();
+            int start = 0;
+            int baseLength = baseLemmas.length();
+            while (start <= baseLength) {
+                int end = start;
+                while (end < baseLength && chars[end] != LemmaDictionary.LEMMA_DELIMITER) {
+                    end++;
+                }
+                if (!containsLemma(lemmas, chars, start, end - start)) {
+                    lemmas.append(LemmaDictionary.LEMMA_DELIMITER);
+                    lemmas.append(chars, start, end - start);
+                }
+                start = end + 1;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return true if the lemma is one of the lemmas delimited by "|"
+     */
+    private static boolean containsLemma(CharsRefBuilder lemmas, char[] lemma, int offset, int length) {
+        char[] chars = lemmas.chars();
+        int start = 0;
+        int lemmasLength = lemmas.length();
+        while (start <= lemmasLength) {
+            int end = start;
+            while (end < lemmasLength && chars[end] != LemmaDictionary.LEMMA_DELIMITER) {
+                end++;
+            }
+            if (end - start == length) {
+                int i = 0;
+                while (i < length && chars[start + i] == lemma[offset + i]) {
+                    i++;
+                }
+                if (i == length) {
+                    return true;
+                }
+            }
+            start = end + 1;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,94 @@
+package sk.essentialdata.lucene.analysis.fst;
+
+import org.apache.lucene.util.CharsRefBuilder;
+
+/**
+ * Encodes a lemma relative to its form as a transformation rule:
+ * strip P chars from the start of the form, strip K chars from its end and append S.
+ * E.g. najprudkejšiemu -&gt; prudký is (3, 8, "ký"), chujovinami -&gt; chujovina is (0, 2, "").
+ * <p>
+ * A rule is stored as a string, whose first char is P, second char is K and the rest is S.
+ * Most forms of most lemmas share a few thousands of such rules.
+ * @author miso
+ * @date 10/17/26.
+ */
+final class SuffixEncoding {
+    /**
+     * @var MAX_PREFIX_STRIP longest prefix to be stripped, enough for "naj" and "nenaj"
+     */
+    static final int MAX_PREFIX_STRIP = 5;
+    /**
+     * @var MIN_PREFIX_MATCH stripping a prefix must leave at least this long common part with the lemma
+     */
+    private static final int MIN_PREFIX_MATCH = 3;
+
+    private SuffixEncoding() {
+    }
+
+    /**
+     * @param form
+     * @param lemma
+     * @return the rule transforming the form to the lemma
+     */
+    static String encode(String form, String lemma) {
+        return encode(form, lemma, MAX_PREFIX_STRIP);
+    }
+
+    /**
+     * @param form
+     * @param lemma
+     * @param maxPrefixStrip longest prefix to be stripped, 0 for rules which depend on the end of the form only
+     * @return the rule transforming the form to the lemma
+     */
+    static String encode(String form, String lemma, int maxPrefixStrip) {
+        int prefixStrip = 0;
+        int common = commonPrefix(form, 0, lemma);
+        for (int p = 1; p <= maxPrefixStrip && p < form.length(); p++) {
+            int c = commonPrefix(form, p, lemma);
+            if (c >= MIN_PREFIX_MATCH && c > common) {
+                prefixStrip = p;
+                common = c;
+            }
+        }
+        int suffixStrip = form.length() - prefixStrip - common;
+        return new StringBuilder(2 + lemma.length() - common)
+                .append((char) prefixStrip)
+                .append((char) suffixStrip)
+                .append(lemma, common, lemma.length())
+                .toString();
+    }
+
+    private static int commonPrefix(String form, int offset, String lemma) {
+        int i = 0;
+        while (offset + i < form.length() && i < lemma.length() && form.charAt(offset + i) == lemma.charAt(i)) {
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * Appends the lemma made by applying the rule to the term.
+     * @param rule chars of the rule
+     * @param ruleOffset
+     * @param ruleLength
+     * @param term
+     * @param termOffset
+     * @param termLength
+     * @param lemmas
+     * @param lowerCase whether the chars taken from the term are lowercased, for a term looked up ignoring case
+     */
+    static void apply(char[] rule, int ruleOffset, int ruleLength, char[] term, int termOffset, int termLength, CharsRefBuilder lemmas,
+                      boolean lowerCase) {
+        int prefixStrip = rule[ruleOffset];
+        int suffixStrip = rule[ruleOffset + 1];
+        int start = lemmas.length();
+        lemmas.append(term, termOffset + prefixStrip, termLength - prefixStrip - suffixStrip);
+        if (lowerCase) {
+            char[] chars = lemmas.chars();
+            for (int i = start; i < lemmas.length(); i++) {
+                chars[i] = Character.toLowerCase(chars[i]);
+            }
+        }
+        lemmas.append(rule, ruleOffset + 2, ruleLength - 2);
+    }
+}
@@ -0,0 +1,47 @@
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.file.Paths;
+import org.testng.Assert;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+import sk.essentialdata.lucene.analysis.fst.BatchLemmatizer;
+import sk.essentialdata.lucene.analysis.fst.LemmaDictionary;
+import sk.essentialdata.lucene.analysis.fst.LoadMode;
+
+/**
+ * @author miso
+ * @date 10/17/26.
+ */
+public class BatchLemmatizerTest {
+    private LemmaDictionary dictionary;
+
+    @BeforeClass
+    public void setUp() throws IOException {
+        dictionary = LemmaDictionary.load(Paths.get("fst/slovaklemma.fst"), LoadMode.HEAP);
+    }
+
+    private String lemmatize(String text, int threads, int chunkSize, boolean echo) throws IOException {
+        StringWriter out = new StringWriter();
+        new BatchLemmatizer(dictionary, threads, chunkSize, echo).lemmatize(new StringReader(text), out);
+        return out.toString();
+    }
+
+    @Test
+    public void testWords() throws IOException {
+        Assert.assertEquals(lemmatize("vlastné materiály, 3 čísla.\nxyz", 1, 1024, true), "vlastný materiál 3 číslo xyz ");
+        Assert.assertEquals(lemmatize("vlastné materiály, 3 čísla.\nxyz", 1, 1024, false), "vlastný materiál číslo ");
+        // combining caron, a letter outside of the BMP
+        Assert.assertEquals(lemmatize("čisla 𝐀b.", 1, 1024, true), "čisla 𝐀b ");
+    }
+
+    @Test
+    public void testChunksKeepOrder() throws IOException {
+        String text = TestData.sampleText()
+                + " 𝐀𝐀𝐀𝐀 koniec";
+        String expected = lemmatize(text, 1, text.length() + 1, true);
+        for (int chunkSize : new int[] {5, 64, 4096}) {
+            Assert.assertEquals(lemmatize(text, 3, chunkSize, true), expected, "Chunk size " + chunkSize);
+        }
+    }
+}
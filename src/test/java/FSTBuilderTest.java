@@ -0,0 +1,152 @@
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.apache.lucene.util.CharsRefBuilder;
+import org.apache.lucene.util.IOUtils;
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+import sk.essentialdata.lucene.analysis.fst.FSTBuilder;
+import sk.essentialdata.lucene.analysis.fst.LemmaDictionary;
+import sk.essentialdata.lucene.analysis.fst.LoadMode;
+
+/**
+ * @author miso
+ * @date 10/17/26.
+ */
+public class FSTBuilderTest {
+    static final String[] ENDINGS = {"ujem", "uješ", "uje", "ujeme", "ujete", "ujú", "oval", "ovala"};
+    private Path tempDir;
+
+    @BeforeClass
+    public void setUp() throws IOException {
+        tempDir = Files.createTempDirectory("fstbuildertest");
+    }
+
+    @AfterClass
+    public void tearDown() throws IOException {
+        IOUtils.rm(tempDir);
+    }
+
+    static String lemma(int i) {
+        return "x" + Integer.toString(i, 36) + "ovať";
+    }
+
+    static String form(int i, String ending) {
+        return "x" + Integer.toString(i, 36) + ending;
+    }
+
+    /**
+     * Writes a morphology file in the korpus.sk format, with lemmas in a scrambled order
+     * and every line twice, as the real file has more tags for the same form.
+     */
+    static void writeMorphology(Path file, int fromLemma, int toLemma) throws IOException {
+        int lemmas = toLemma - fromLemma;
+        try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            for (int j = 0; j < lemmas; j++) {
+                int i = fromLemma + (int) ((j * 7919L) % lemmas);
+                for (String ending : ENDINGS) {
+                    writer.write(lemma(i) + "\t" + form(i, ending) + "\tVKesa+\n");
+                    writer.write(lemma(i) + "\t" + form(i, ending) + "\tVKesb+\n");
+                }
+            }
+        }
+    }
+
+    /**
+     * Runs FSTBuilder in a separate JVM with the given maximum heap.
+     */
+    static int runBuilder(String maxHeap, String... args) throws IOException, InterruptedException {
+        List<String> command = new ArrayList<>(Arrays.asList(
+                System.getProperty("java.home") + File.separator + "bin" + File.separator + "java",
+                "-Xmx" + maxHeap, "-Dfile.encoding=UTF-8", "-cp", System.getProperty("java.class.path"),
+                "sk.essentialdata.lucene.analysis.fst.FSTBuilder"));
+        command.addAll(Arrays.asList(args));
+        Process process = new ProcessBuilder(command).inheritIO().start();
+        return process.waitFor();
+    }
+
+    @Test
+    public void testBuildWithSmallHeap() throws IOException, InterruptedException {
+        int lemmas = 100000; // 800k distinct forms, 1.6M lines
+        Path input = tempDir.resolve("morphology.txt");
+        writeMorphology(input, 0, lemmas);
+        Path output = tempDir.resolve("small-heap.fst");
+
+        Assert.assertEquals(runBuilder("32m", "-f", input.toString(), "-o", output.toString(), "--ram=4",
+                "--tmp=" + tempDir), 0);
+
+        LemmaDictionary.Lookup lookup = LemmaDictionary.load(output, LoadMode.HEAP).newLookup();
+        CharsRefBuilder result = new CharsRefBuilder();
+        for (int i = 0; i < lemmas; i += 997) {
+            for (String ending : ENDINGS) {
+                Assert.assertTrue(lookup.lookup(form(i, ending), result), form(i, ending));
+                Assert.assertEquals(result.toString(), lemma(i));
+            }
+        }
+        Assert.assertFalse(lookup.lookup(form(lemmas, ENDINGS[0]), result));
+    }
+
+    @Test
+    public void testParallelDirBuild() throws IOException {
+        Path shards = Files.createDirectory(tempDir.resolve("shards"));
+        int shardCount = 8;
+        for (int k = 0; k < shardCount; k++) {
+            // neighbouring shards overlap, so the same forms come from more runs
+            writeMorphology(shards.resolve("shard" + k + ".txt"), k * 5000, k * 5000 + 6000);
+        }
+        Files.write(shards.resolve("zz-extra.txt"), Arrays.asList("iný\t" + form(0, "uje") + "\tSSfs2"), StandardCharsets.UTF_8);
+
+        byte[] expected = null;
+        for (int threads : new int[] {1, 2, 4}) {
+            Path output = tempDir.resolve("parallel-" + threads + ".fst");
+            FSTBuilder.main(new String[] {"-d", shards.toString(), "-o", output.toString(), "--threads=" + threads,
+                    "--tmp=" + tempDir});
+            byte[] bytes = Files.readAllBytes(output);
+            if (expected == null) {
+                expected = bytes;
+            } else {
+                Assert.assertEquals(bytes, expected, "Output of " + threads + " threads differs");
+            }
+        }
+
+        LemmaDictionary.Lookup lookup = LemmaDictionary.load(tempDir.resolve("parallel-1.fst"), LoadMode.HEAP).newLookup();
+        CharsRefBuilder result = new CharsRefBuilder();
+        Assert.assertTrue(lookup.lookup(form(0, "uje"), result));
+        Assert.assertEquals(result.toString(), lemma(0) + "|iný");
+        Assert.assertTrue(lookup.lookup(form(5500, "ujem"), result));
+        Assert.assertEquals(result.toString(), lemma(5500));
+        Assert.assertTrue(lookup.lookup(form(shardCount * 5000 + 999, "ovala"), result));
+        Assert.assertFalse(lookup.lookup(form(shardCount * 5000 + 1000, "ovala"), result));
+    }
+
+    @Test(expectedExceptions = IOException.class)
+    public void testBadFileFailsDirBuild() throws IOException {
+        Path shards = Files.createDirectory(tempDir.resolve("bad-shards"));
+        writeMorphology(shards.resolve("good.txt"), 0, 1000);
+        Files.write(shards.resolve("bad.txt"), Arrays.asList("no tabs here"), StandardCharsets.UTF_8);
+        FSTBuilder.main(new String[] {"-d", shards.toString(), "-o", tempDir.resolve("bad.fst").toString(), "--threads=2",
+                "--tmp=" + tempDir});
+    }
+
+    @Test
+    public void testPresets() throws IOException {
+        LemmaDictionary original = LemmaDictionary.load(LemmaDictionaryTest.LEMMAS_FST, LoadMode.HEAP);
+        long[] sizes = new long[3];
+        String[] presets = {"compact", "balanced", "fast"};
+        for (int i = 0; i < presets.length; i++) {
+            Path output = tempDir.resolve(presets[i] + ".fst");
+            FSTBuilder.main(new String[] {"-i", LemmaDictionaryTest.LEMMAS_FST.toString(), "-o", output.toString(), "--preset=" + presets[i]});
+            LemmaDictionaryTest.assertSameLemmas(original, LemmaDictionary.load(output, LoadMode.HEAP), TestData.sampleWords());
+            sizes[i] = Files.size(output);
+        }
+        Assert.assertTrue(sizes[0] < sizes[2] && sizes[2] < sizes[1], Arrays.toString(sizes));
+    }
+}
@@ -0,0 +1,148 @@
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.Tokenizer;
+import org.apache.lucene.analysis.core.WhitespaceTokenizer;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.analysis.tokenattributes.PositionIncrementAttribute;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.CharsRefBuilder;
+import org.apache.lucene.util.IOUtils;
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+import sk.essentialdata.lucene.analysis.fst.FSTBuilder;
+import sk.essentialdata.lucene.analysis.fst.FSTExpansionFilterFactory;
+import sk.essentialdata.lucene.analysis.fst.LemmaDictionary;
+import sk.essentialdata.lucene.analysis.fst.LoadMode;
+
+/**
+ * @author miso
+ * @date 10/17/26.
+ */
+public class FSTExpansionTest {
+    private Path tempDir;
+    private Path reverseFst;
+
+    @BeforeClass
+    public void setUp() throws IOException {
+        tempDir = Files.createTempDirectory("fstexpansiontest");
+        reverseFst = tempDir.resolve("reverse.fst");
+        FSTBuilder.main(new String[] {"-i", LemmaDictionaryTest.LEMMAS_FST.toString(), "-o", tempDir.resolve("forward.fst").toString(),
+                "--format=ordinal", "--encoding=suffix", "--reverse=" + reverseFst});
+    }
+
+    @AfterClass
+    public void tearDown() throws IOException {
+        IOUtils.rm(tempDir);
+    }
+
+    private FSTExpansionFilterFactory factory(int maxForms) throws IOException {
+        Map<String, String> args = new HashMap<>();
+        args.put(FSTExpansionFilterFactory.PARAM_DICTIONARY, reverseFst.toString());
+        args.put(FSTExpansionFilterFactory.PARAM_MAX_FORMS, String.valueOf(maxForms));
+        FSTExpansionFilterFactory factory = new FSTExpansionFilterFactory(args);
+        factory.inform(null);
+        return factory;
+    }
+
+    private static List<String> expand(FSTExpansionFilterFactory factory, String text) throws IOException {
+        Tokenizer tokenizer = new WhitespaceTokenizer();
+        tokenizer.setReader(new StringReader(text));
+        List<String> terms = new ArrayList<>();
+        try (TokenStream stream = factory.create(tokenizer)) {
+            CharTermAttribute termAtt = stream.addAttribute(CharTermAttribute.class);
+            PositionIncrementAttribute posIncAtt = stream.addAttribute(PositionIncrementAttribute.class);
+            stream.reset();
+            while (stream.incrementToken()) {
+                terms.add(termAtt + "/" + posIncAtt.getPositionIncrement());
+            }
+            stream.end();
+        }
+        return terms;
+    }
+
+    @Test
+    public void testReverseHoldsTheSamePairs() throws IOException {
+        LemmaDictionary forward = LemmaDictionary.load(LemmaDictionaryTest.LEMMAS_FST, LoadMode.HEAP);
+        LemmaDictionary reverse = LemmaDictionary.load(reverseFst, LoadMode.HEAP);
+        LemmaDictionary.Lookup forwardLookup = forward.newLookup();
+        LemmaDictionary.Lookup reverseLookup = reverse.newLookup();
+        CharsRefBuilder lemmas = new CharsRefBuilder();
+        CharsRefBuilder forms = new CharsRefBuilder();
+        for (BytesRef word : TestData.sampleWords()) {
+            String form = word.utf8ToString();
+            if (forwardLookup.lookup(form, lemmas)) {
+                for (String lemma : lemmas.toString().split("\\|")) {
+                    Assert.assertTrue(reverseLookup.lookup(lemma, forms), lemma);
+                    Assert.assertTrue(Arrays.asList(forms.toString().split("\\|")).contains(form), form + " not in " + forms);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testExpansion() throws IOException {
+        FSTExpansionFilterFactory factory = factory(0);
+        FSTExpansionFilterFactory capped = factory(3);
+        try {
+            List<String> terms = expand(factory, "materiál xyz");
+            Assert.assertEquals(terms.get(0), "materiál/1");
+            Assert.assertTrue(terms.contains("materiály/0"), terms.toString());
+            Assert.assertTrue(terms.contains("materiálmi/0"), terms.toString());
+            Assert.assertEquals(terms.get(terms.size() - 1), "xyz/1");
+            Assert.assertEquals(terms.stream().filter(term -> term.startsWith("materiál/")).count(), 1);
+            Assert.assertEquals(expand(capped, "materiál xyz"), Arrays.asList(terms.get(0), terms.get(1), terms.get(2), terms.get(3), "xyz/1"));
+        } finally {
+            factory.close();
+            capped.close();
+        }
+    }
+
+    /**
+     * @return bytes allocated per round of analyzing the text again with the same stream
+     */
+    private static double allocatedPerRound(FSTExpansionFilterFactory factory, String text, int[] tokens) throws IOException {
+        Tokenizer tokenizer = new WhitespaceTokenizer();
+        tokenizer.setReader(new StringReader(text));
+        TokenStream stream = factory.create(tokenizer);
+        long allocatedBefore = 0;
+        for (int round = 0; round < 1000; round++) {
+            if (round == 100) { // the first rounds are a warmup
+                tokens[0] = 0;
+                allocatedBefore = TestData.allocatedBytes();
+            }
+            stream.reset();
+            while (stream.incrementToken()) {
+                tokens[0]++;
+            }
+            stream.end();
+            stream.close();
+            tokenizer.setReader(new StringReader(text));
+        }
+        return (TestData.allocatedBytes() - allocatedBefore) / 900.0;
+    }
+
+    @Test
+    public void testNoAllocationPerForm() throws IOException {
+        FSTExpansionFilterFactory factory = factory(0);
+        try {
+            int[] tokens = new int[1];
+            // the same number of tokens without any forms, what is left is the tokenizer and the reader
+            double baseline = allocatedPerRound(factory, "xyzxyz xyzxyzxy xyzxyz", tokens);
+            double expanded = allocatedPerRound(factory, "materiál vlastný prudký", tokens);
+            int tokensPerRound = tokens[0] / 900;
+            Assert.assertTrue(expanded - baseline < tokensPerRound, "Allocated " + (expanded - baseline) + " bytes per round for forms");
+        } finally {
+            factory.close();
+        }
+    }
+}
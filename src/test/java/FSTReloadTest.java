@@ -0,0 +1,166 @@
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.Tokenizer;
+import org.apache.lucene.analysis.core.WhitespaceTokenizer;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.util.IOUtils;
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+import sk.essentialdata.lucene.analysis.fst.FSTBuilder;
+import sk.essentialdata.lucene.analysis.fst.FSTTokenFilterFactory;
+import sk.essentialdata.lucene.analysis.fst.LemmaDictionary;
+
+/**
+ * @author miso
+ * @date 10/17/26.
+ */
+public class FSTReloadTest {
+    private Path tempDir;
+    /**
+     * @var ordinalFst the same dictionary in another format, i.e. a different file with the same lemmas
+     */
+    private Path ordinalFst;
+
+    @BeforeClass
+    public void setUp() throws IOException {
+        tempDir = Files.createTempDirectory("fstreloadtest");
+        ordinalFst = tempDir.resolve("ordinal.fst");
+        FSTBuilder.main(new String[] {"-i", "fst/slovaklemma.fst", "-o", ordinalFst.toString(), "--format=ordinal"});
+    }
+
+    @AfterClass
+    public void tearDown() throws IOException {
+        IOUtils.rm(tempDir);
+    }
+
+    private Path copy(String source, String name) throws IOException {
+        Path file = tempDir.resolve(name);
+        Files.copy(Paths.get(source), file, StandardCopyOption.REPLACE_EXISTING);
+        return file;
+    }
+
+    @Test
+    public void testReload() throws IOException {
+        Path fstFile = copy("fst/slovaklemma.fst", "reload.fst");
+        FSTTokenFilterFactory factory = TestData.factory(fstFile).build();
+        try {
+            LemmaDictionary original = factory.getDictionary();
+            Assert.assertFalse(factory.reload(), "The same content must not be swapped");
+            Assert.assertSame(factory.getDictionary(), original);
+
+            // a stream created before the reload keeps working with the old dictionary
+            Tokenizer tokenizer = new WhitespaceTokenizer();
+            tokenizer.setReader(new java.io.StringReader("vlastné materiály"));
+            TokenStream stream = factory.create(tokenizer);
+            CharTermAttribute termAtt = stream.addAttribute(CharTermAttribute.class);
+            stream.reset();
+            Assert.assertTrue(stream.incrementToken());
+            Assert.assertEquals(termAtt.toString(), "vlastný");
+
+            Files.copy(ordinalFst, fstFile, StandardCopyOption.REPLACE_EXISTING);
+            Assert.assertTrue(factory.reload());
+            Assert.assertNotSame(factory.getDictionary(), original);
+            Assert.assertEquals(factory.getReloadCount(), 1);
+
+            Assert.assertTrue(stream.incrementToken());
+            Assert.assertEquals(termAtt.toString(), "materiál");
+            stream.end();
+            stream.close();
+            Assert.assertEquals(TestData.analyze(factory, "vlastné materiály"), Arrays.asList("vlastný", "materiál"));
+        } finally {
+            factory.close();
+        }
+    }
+
+    @Test
+    public void testInvalidDictionaryIsRejected() throws IOException {
+        Path fstFile = copy("fst/slovaklemma.fst", "rejected.fst");
+        FSTTokenFilterFactory factory = TestData.factory(fstFile).build();
+        try {
+            LemmaDictionary original = factory.getDictionary();
+            // the ascii dictionary does not know the words with diacritics
+            copy("fst/slovaklemma_ascii.fst", "rejected.fst");
+            try {
+                factory.reload();
+                Assert.fail("The ascii dictionary must not pass the sanity check");
+            } catch (IOException e) {
+                Assert.assertTrue(e.getMessage().contains("Sanity check"), e.getMessage());
+            }
+            Files.write(fstFile, new byte[] {1, 2, 3});
+            try {
+                factory.reload();
+                Assert.fail("A broken file must not be loaded");
+            } catch (IOException e) {
+                // expected
+            }
+            Assert.assertSame(factory.getDictionary(), original);
+            Assert.assertEquals(TestData.analyze(factory, "materiály"), Arrays.asList("materiál"));
+        } finally {
+            factory.close();
+        }
+    }
+
+    @Test
+    public void testChangedFileIsReloaded() throws IOException, InterruptedException {
+        Path fstFile = copy("fst/slovaklemma.fst", "watched.fst");
+        FSTTokenFilterFactory factory = TestData.factory(fstFile).with(FSTTokenFilterFactory.PARAM_RELOAD_INTERVAL, 1).build();
+        try {
+            LemmaDictionary original = factory.getDictionary();
+            Files.copy(ordinalFst, fstFile, StandardCopyOption.REPLACE_EXISTING);
+            long deadline = System.currentTimeMillis() + 20000;
+            while (factory.getReloadCount() == 0 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(100);
+            }
+            Assert.assertEquals(factory.getReloadCount(), 1);
+            Assert.assertNotSame(factory.getDictionary(), original);
+            Assert.assertEquals(TestData.analyze(factory, "materiály"), Arrays.asList("materiál"));
+        } finally {
+            factory.close();
+        }
+    }
+
+    @Test
+    public void testFailedReloadIsKept() throws IOException, InterruptedException {
+        Path fstFile = copy("fst/slovaklemma.fst", "broken.fst");
+        FSTTokenFilterFactory factory = TestData.factory(fstFile).with(FSTTokenFilterFactory.PARAM_RELOAD_INTERVAL, 1).build();
+        try {
+            LemmaDictionary original = factory.getDictionary();
+            Files.write(fstFile, new byte[] {1, 2, 3});
+            long deadline = System.currentTimeMillis() + 20000;
+            while (factory.getLastReloadFailure() == null && System.currentTimeMillis() < deadline) {
+                Thread.sleep(100);
+            }
+            Assert.assertTrue(factory.getLastReloadFailure() instanceof IOException, String.valueOf(factory.getLastReloadFailure()));
+            Assert.assertEquals(factory.getReloadCount(), 0);
+            Assert.assertSame(factory.getDictionary(), original);
+        } finally {
+            factory.close();
+        }
+    }
+
+    @Test
+    public void testUnclosedFactoryStopsReloading() throws IOException, InterruptedException {
+        Path fstFile = copy("fst/slovaklemma.fst", "unclosed.fst");
+        int tasksBefore = FSTTokenFilterFactory.getScheduledReloadCount();
+        // Solr does not close the factories of a reloaded core
+        WeakReference<FSTTokenFilterFactory> factory = new WeakReference<>(
+                TestData.factory(fstFile).with(FSTTokenFilterFactory.PARAM_RELOAD_INTERVAL, 1).build());
+        Assert.assertEquals(FSTTokenFilterFactory.getScheduledReloadCount(), tasksBefore + 1);
+        long deadline = System.currentTimeMillis() + 20000;
+        while ((factory.get() != null || FSTTokenFilterFactory.getScheduledReloadCount() > tasksBefore)
+                && System.currentTimeMillis() < deadline) {
+            System.gc();
+            Thread.sleep(100);
+        }
+        Assert.assertNull(factory.get(), "The check must not keep the factory reachable");
+        Assert.assertEquals(FSTTokenFilterFactory.getScheduledReloadCount(), tasksBefore);
+    }
+}
@@ -0,0 +1,207 @@
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.Tokenizer;
+import org.apache.lucene.analysis.core.WhitespaceTokenizer;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.analysis.tokenattributes.OffsetAttribute;
+import org.apache.lucene.analysis.tokenattributes.PositionIncrementAttribute;
+import org.apache.lucene.util.CharsRefBuilder;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+import sk.essentialdata.lucene.analysis.fst.FSTBuilder;
+import sk.essentialdata.lucene.analysis.fst.FSTRegistry;
+import sk.essentialdata.lucene.analysis.fst.FSTTokenFilterFactory;
+import sk.essentialdata.lucene.analysis.fst.LemmaDictionary;
+
+/**
+ * @author miso
+ * @date 10/17/26.
+ */
+public class FSTTokenFilterFactoryTest {
+
+    @Test
+    public void testFSTIsLoadedOnce() throws IOException {
+        // a private copy, so that other tests holding the same dictionary do not affect the counts
+        Path fstFile = Files.createTempFile("slovaklemma", ".fst");
+        Files.copy(Paths.get("fst/slovaklemma.fst"), fstFile, StandardCopyOption.REPLACE_EXISTING);
+        try {
+            long loadsBefore = FSTRegistry.getLoadCount();
+            int sizeBefore = FSTRegistry.size();
+            List<FSTTokenFilterFactory> factories = new ArrayList<>();
+            for (int i = 0; i < 5; i++) {
+                factories.add(TestData.factory(fstFile).build());
+            }
+            for (FSTTokenFilterFactory factory : factories) {
+                for (int i = 0; i < 10; i++) {
+                    Assert.assertEquals(TestData.analyze(factory, "najprudkejšiemu"), Collections.singletonList("prudký"));
+                }
+            }
+            Assert.assertEquals(FSTRegistry.getLoadCount() - loadsBefore, 1);
+            Assert.assertEquals(FSTRegistry.size() - sizeBefore, 1);
+
+            for (FSTTokenFilterFactory factory : factories) {
+                factory.close();
+            }
+            Assert.assertEquals(FSTRegistry.size(), sizeBefore);
+        } finally {
+            Files.delete(fstFile);
+        }
+    }
+
+    @Test
+    public void testUnclosedFactoryIsDropped() throws IOException, InterruptedException {
+        Path fstFile = Files.createTempFile("slovaklemma", ".fst");
+        Files.copy(Paths.get("fst/slovaklemma.fst"), fstFile, StandardCopyOption.REPLACE_EXISTING);
+        try {
+            // Solr does not close the factories of a reloaded core
+            long loadsBefore = FSTRegistry.getLoadCount();
+            Assert.assertEquals(TestData.analyze(TestData.factory(fstFile).build(), "najprudkejšiemu"), Collections.singletonList("prudký"));
+            Assert.assertEquals(FSTRegistry.getLoadCount() - loadsBefore, 1);
+            // the file is shared while the factory is reachable and read again once it is collected
+            long deadline = System.currentTimeMillis() + 10000;
+            while (FSTRegistry.getLoadCount() - loadsBefore == 1 && System.currentTimeMillis() < deadline) {
+                System.gc();
+                Thread.sleep(10);
+                FSTRegistry.acquire(fstFile.toString()).close();
+            }
+            Assert.assertEquals(FSTRegistry.getLoadCount() - loadsBefore, 2);
+        } finally {
+            Files.delete(fstFile);
+        }
+    }
+
+    @Test
+    public void testUnchangedFileIsNotReadAgain() throws IOException {
+        Path fstFile = Files.createTempFile("slovaklemma", ".fst");
+        Files.copy(Paths.get("fst/slovaklemma.fst"), fstFile, StandardCopyOption.REPLACE_EXISTING);
+        try (FSTRegistry.Handle handle = FSTRegistry.acquire(fstFile.toString())) {
+            // garbage of the same size and modification time is not noticed, the file is not read again
+            FileTime lastModified = Files.getLastModifiedTime(fstFile);
+            Files.write(fstFile, new byte[(int) Files.size(fstFile)]);
+            Files.setLastModifiedTime(fstFile, lastModified);
+            try (FSTRegistry.Handle second = FSTRegistry.acquire(fstFile.toString())) {
+                Assert.assertSame(second.get(), handle.get());
+            }
+            // a real change is
+            Files.setLastModifiedTime(fstFile, FileTime.fromMillis(lastModified.toMillis() + 1000));
+            try {
+                FSTRegistry.acquire(fstFile.toString()).close();
+                Assert.fail("A broken file must not be loaded");
+            } catch (IOException | RuntimeException e) {
+                // expected
+            }
+        } finally {
+            Files.delete(fstFile);
+        }
+    }
+
+    @Test
+    public void testAmbiguousWordIsStacked() throws IOException {
+        FSTTokenFilterFactory factory = TestData.factory("fst/slovaklemma_ascii.fst").build();
+        Tokenizer tokenizer = new WhitespaceTokenizer();
+        tokenizer.setReader(new StringReader("cislo predpisu xyz"));
+        List<String> terms = new ArrayList<>();
+        try (TokenStream stream = factory.create(tokenizer)) {
+            CharTermAttribute termAtt = stream.addAttribute(CharTermAttribute.class);
+            PositionIncrementAttribute posIncAtt = stream.addAttribute(PositionIncrementAttribute.class);
+            OffsetAttribute offsetAtt = stream.addAttribute(OffsetAttribute.class);
+            stream.reset();
+            while (stream.incrementToken()) {
+                terms.add(termAtt + "/" + posIncAtt.getPositionIncrement() + "/" + offsetAtt.startOffset());
+            }
+            stream.end();
+        }
+        factory.close();
+        Assert.assertEquals(terms, Arrays.asList("cislo/1/0", "predpis/1/6", "predpisat/0/6", "xyz/1/15"));
+    }
+
+    @Test
+    public void testAsciiFallback() throws IOException {
+        FSTTokenFilterFactory factory = TestData.factory("fst/slovaklemma_ascii.fst").enable(FSTTokenFilterFactory.PARAM_ASCII_FALLBACK).build();
+        FSTTokenFilterFactory asciiFactory = TestData.factory("fst/slovaklemma_ascii.fst").build();
+        try {
+            // with diacritics, all or some of them, the word is found only folded
+            Assert.assertEquals(TestData.analyze(factory, "čísla čisla cislo"), Arrays.asList("cislo", "cislo", "cislo"));
+            Assert.assertEquals(TestData.analyze(asciiFactory, "čísla čisla cislo"), Arrays.asList("čísla", "čisla", "cislo"));
+        } finally {
+            factory.close();
+            asciiFactory.close();
+        }
+    }
+
+    @Test
+    public void testIgnoreCase() throws IOException {
+        String text = "Materiály MATERIÁLY materiály Xyz NAJPRUDKEJŠIEMU";
+        FSTTokenFilterFactory exact = TestData.factory("fst/slovaklemma.fst").build();
+        FSTTokenFilterFactory ignoreCase = TestData.factory("fst/slovaklemma.fst").enable(FSTTokenFilterFactory.PARAM_IGNORE_CASE).build();
+        FSTTokenFilterFactory restoreCase = TestData.factory("fst/slovaklemma.fst").enable(FSTTokenFilterFactory.PARAM_IGNORE_CASE,
+                FSTTokenFilterFactory.PARAM_EXACT_CASE_FIRST, FSTTokenFilterFactory.PARAM_RESTORE_CASE).build();
+        try {
+            Assert.assertEquals(TestData.analyze(exact, text), Arrays.asList("Materiály", "MATERIÁLY", "materiál", "Xyz", "NAJPRUDKEJŠIEMU"));
+            // words which are not found keep their case
+            Assert.assertEquals(TestData.analyze(ignoreCase, text), Arrays.asList("materiál", "materiál", "materiál", "Xyz", "prudký"));
+            Assert.assertEquals(TestData.analyze(restoreCase, text), Arrays.asList("Materiál", "MATERIÁL", "materiál", "Xyz", "PRUDKÝ"));
+        } finally {
+            exact.close();
+            ignoreCase.close();
+            restoreCase.close();
+        }
+        try {
+            TestData.factory("fst/slovaklemma.fst").enable(FSTTokenFilterFactory.PARAM_IGNORE_CASE).build().close();
+            TestData.factory("fst/slovaklemma.fst").enable(FSTTokenFilterFactory.PARAM_RESTORE_CASE).build();
+            Assert.fail("restoreCase without ignoreCase");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testOverlay() throws IOException {
+        Path overlay = Files.createTempFile("overlay", ".tsv");
+        try {
+            Files.write(overlay, Arrays.asList("hydrochlorotiazid\thydrochlorotiazidom\tSSis7", "materiálový\tmateriály\tAAip1x",
+                    "materiál\tmateriály\tSSip1"), StandardCharsets.UTF_8);
+            String text = "hydrochlorotiazidom materiály vlastné";
+            FSTTokenFilterFactory override = TestData.factory("fst/slovaklemma.fst").with(FSTTokenFilterFactory.PARAM_OVERLAY, overlay)
+                    .with(FSTTokenFilterFactory.PARAM_OVERLAY_MODE, "override").build();
+            FSTTokenFilterFactory union = TestData.factory("fst/slovaklemma.fst").with(FSTTokenFilterFactory.PARAM_OVERLAY, overlay)
+                    .with(FSTTokenFilterFactory.PARAM_OVERLAY_MODE, "union").build();
+            try {
+                Assert.assertEquals(TestData.analyze(override, text), Arrays.asList("hydrochlorotiazid", "materiálový", "materiál", "vlastný"));
+                Assert.assertEquals(TestData.analyze(union, text), Arrays.asList("hydrochlorotiazid", "materiálový", "materiál", "vlastný"));
+                Files.write(overlay, Collections.singletonList("materiálový\tmateriály\tAAip1x"), StandardCharsets.UTF_8);
+                Assert.assertTrue(override.reload());
+                Assert.assertTrue(union.reload());
+                Assert.assertEquals(TestData.analyze(override, text), Arrays.asList("hydrochlorotiazidom", "materiálový", "vlastný"));
+                Assert.assertEquals(TestData.analyze(union, text), Arrays.asList("hydrochlorotiazidom", "materiálový", "materiál", "vlastný"));
+            } finally {
+                override.close();
+                union.close();
+            }
+
+            List<String> lines = new ArrayList<>();
+            for (int i = 0; i < 5000; i++) {
+                lines.add("termín" + i + "\ttermínu" + i + "\tSSis2");
+            }
+            Files.write(overlay, lines, StandardCharsets.UTF_8);
+            LemmaDictionary.Lookup lookup = FSTBuilder.buildOverlay(overlay).newLookup();
+            CharsRefBuilder lemmas = new CharsRefBuilder();
+            Assert.assertTrue(lookup.lookup("termínu4999", lemmas));
+            Assert.assertEquals(lemmas.toString(), "termín4999");
+            Assert.assertFalse(lookup.lookup("termínu5000", lemmas));
+        } finally {
+            Files.delete(overlay);
+        }
+    }
+}
@@ -2,9 +2,13 @@ import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
+import java.io.StringReader;
 import java.util.Arrays;
 import java.util.HashSet;
 import java.util.Set;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.Tokenizer;
+import org.apache.lucene.analysis.core.WhitespaceTokenizer;
 import org.apache.lucene.util.BytesRef;
 import org.apache.lucene.util.CharsRef;
 import org.apache.lucene.util.fst.CharSequenceOutputs;
@@ -12,6 +16,7 @@ import org.apache.lucene.util.fst.FST;
 import org.apache.lucene.util.fst.Util;
 import org.testng.Assert;
 import org.testng.annotations.Test;
+import sk.essentialdata.lucene.analysis.fst.FSTTokenFilterFactory;
 
 /**
  * @author miso
@@ -81,4 +86,50 @@ public class FSTTokenFilterTest {
         Assert.assertTrue(index.contains("predpis"));
         Assert.assertTrue(index.contains("doplnat"));
     }
+
+    /**
+     * Runs the sample through the analysis chain and returns the number of tokens.
+     */
+    private static int consume(TokenStream stream, Tokenizer tokenizer, String text) throws IOException {
+        tokenizer.setReader(new StringReader(text));
+        stream.reset();
+        int tokens = 0;
+        while (stream.incrementToken()) {
+            tokens++;
+        }
+        stream.end();
+        stream.close();
+        return tokens;
+    }
+
+    @Test
+    public void testAllocationPerToken() throws IOException {
+        String text = TestData.sampleText();
+        FSTTokenFilterFactory factory = TestData.factory("fst/slovaklemma.fst").build();
+        Tokenizer tokenizer = new WhitespaceTokenizer();
+        TokenStream stream = factory.create(tokenizer);
+        Tokenizer plainTokenizer = new WhitespaceTokenizer();
+
+        // warmup, so that all the reused buffers are grown and the code is compiled
+        for (int i = 0; i < 3; i++) {
+            consume(stream, tokenizer, text);
+            consume(plainTokenizer, plainTokenizer, text);
+        }
+
+        long before = TestData.allocatedBytes();
+        int plainTokens = consume(plainTokenizer, plainTokenizer, text);
+        long plainAllocated = TestData.allocatedBytes() - before;
+
+        before = TestData.allocatedBytes();
+        int tokens = consume(stream, tokenizer, text);
+        long allocated = TestData.allocatedBytes() - before - plainAllocated;
+        factory.close();
+
+        Assert.assertTrue(tokens >= plainTokens, tokens + " tokens out of " + plainTokens);
+        // Allocation per token of the whole chain is measured by AnalysisChainBenchmark with the GC profiler.
+        // The filter itself allocates nothing, all of it comes from FST.findTargetArc,
+        // which creates a new CharsRef for the output of every arc it scans.
+        // Going through Util.get, String.split and captureState it was over 1000 bytes per token.
+        Assert.assertTrue(allocated < 512L * plainTokens, allocated + " bytes allocated for " + plainTokens + " tokens");
+    }
 }
@@ -0,0 +1,108 @@
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.CharsRefBuilder;
+import org.testng.Assert;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+import sk.essentialdata.lucene.analysis.fst.FSTTokenFilterFactory;
+import sk.essentialdata.lucene.analysis.fst.LemmaCache;
+import sk.essentialdata.lucene.analysis.fst.LemmaDictionary;
+import sk.essentialdata.lucene.analysis.fst.LoadMode;
+
+/**
+ * @author miso
+ * @date 10/17/26.
+ */
+public class LemmaCacheTest {
+    private LemmaDictionary dictionary;
+    private char[][] words;
+
+    @BeforeClass
+    public void setUp() throws IOException {
+        dictionary = LemmaDictionary.load(Paths.get("fst/slovaklemma.fst"), LoadMode.HEAP);
+        List<BytesRef> sample = TestData.sampleWords();
+        words = new char[sample.size()][];
+        for (int i = 0; i < words.length; i++) {
+            words[i] = sample.get(i).utf8ToString().toCharArray();
+        }
+    }
+
+    @Test
+    public void testSameResultsAsDictionary() throws IOException {
+        LemmaCache cache = new LemmaCache(dictionary, 1024);
+        LemmaDictionary.Lookup cached = cache.newLookup();
+        LemmaDictionary.Lookup plain = dictionary.newLookup();
+        CharsRefBuilder cachedLemmas = new CharsRefBuilder();
+        CharsRefBuilder plainLemmas = new CharsRefBuilder();
+        long counted = 0;
+        for (int round = 0; round < 2; round++) {
+            for (char[] word : words) {
+                boolean found = plain.lookup(word, 0, word.length, plainLemmas);
+                Assert.assertEquals(cached.lookup(word, 0, word.length, cachedLemmas), found, new String(word));
+                if (found) {
+                    Assert.assertEquals(cachedLemmas.toString(), plainLemmas.toString(), new String(word));
+                }
+                if (word.length <= 32) {
+                    counted++;
+                }
+            }
+        }
+        Assert.assertEquals(cache.getHits() + cache.getMisses(), counted);
+        Assert.assertTrue(cache.getHits() > cache.getMisses(), "hits " + cache.getHits() + ", misses " + cache.getMisses());
+    }
+
+    @Test
+    public void testNoAllocationOnHit() throws IOException {
+        LemmaCache cache = new LemmaCache(dictionary, 64);
+        List<String> seed = Arrays.asList("a", "je", "sa", "na", "materiály", "xyzxyz");
+        cache.seed(seed);
+        LemmaDictionary.Lookup lookup = cache.newLookup();
+        CharsRefBuilder lemmas = new CharsRefBuilder();
+        char[][] terms = new char[seed.size()][];
+        for (int i = 0; i < terms.length; i++) {
+            terms[i] = seed.get(i).toCharArray();
+            lookup.lookup(terms[i], 0, terms[i].length, lemmas);
+        }
+        long hitsBefore = cache.getHits();
+        long allocatedBefore = TestData.allocatedBytes();
+        for (int i = 0; i < 100000; i++) {
+            char[] term = terms[i % terms.length];
+            lookup.lookup(term, 0, term.length, lemmas);
+        }
+        long allocated = TestData.allocatedBytes() - allocatedBefore;
+        Assert.assertEquals(cache.getHits() - hitsBefore, 100000);
+        Assert.assertTrue(allocated < 4096, "Allocated " + allocated + " bytes");
+        Assert.assertFalse(lookup.lookup("xyzxyz", lemmas));
+        Assert.assertTrue(lookup.lookup("materiály", lemmas));
+        Assert.assertEquals(lemmas.toString(), "materiál");
+    }
+
+    @Test
+    public void testFactoryCache() throws IOException {
+        Path seedFile = Files.createTempFile("seed", ".txt");
+        try {
+            Files.write(seedFile, Arrays.asList("je 1000", "sa 900", "čísla 5"), StandardCharsets.UTF_8);
+            FSTTokenFilterFactory factory = TestData.factory("fst/slovaklemma.fst").with(FSTTokenFilterFactory.PARAM_CACHE_SIZE, 256)
+                    .with(FSTTokenFilterFactory.PARAM_CACHE_SEED, seedFile).build();
+            FSTTokenFilterFactory plainFactory = TestData.factory("fst/slovaklemma.fst").build();
+            try {
+                String text = "čísla je predpísané a sa je xyz čísla";
+                Assert.assertEquals(TestData.analyze(factory, text), TestData.analyze(plainFactory, text));
+                Assert.assertEquals(factory.getCache().getHits(), 5);
+                Assert.assertEquals(factory.getCache().getMisses(), 3);
+                Assert.assertNull(plainFactory.getCache());
+            } finally {
+                factory.close();
+                plainFactory.close();
+            }
+        } finally {
+            Files.delete(seedFile);
+        }
+    }
+}
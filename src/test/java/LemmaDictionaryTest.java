@@ -0,0 +1,172 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.TreeSet;
+import org.apache.lucene.analysis.miscellaneous.ASCIIFoldingFilter;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.CharsRefBuilder;
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+import sk.essentialdata.lucene.analysis.fst.FSTBuilder;
+import sk.essentialdata.lucene.analysis.fst.LemmaDictionary;
+import sk.essentialdata.lucene.analysis.fst.LoadMode;
+
+/**
+ * Compares the dictionary formats built from the bundled slovaklemma.fst.
+ * @author miso
+ * @date 10/17/26.
+ */
+public class LemmaDictionaryTest {
+    static final Path LEMMAS_FST = Paths.get("fst/slovaklemma.fst");
+    private Path tempDir;
+
+    @BeforeClass
+    public void setUp() throws IOException {
+        tempDir = Files.createTempDirectory("lemmadictionary");
+    }
+
+    @AfterClass
+    public void tearDown() throws IOException {
+        for (Path path : Files.newDirectoryStream(tempDir)) {
+            Files.delete(path);
+        }
+        Files.delete(tempDir);
+    }
+
+    /**
+     * Converts the bundled dictionary with the given FSTBuilder options.
+     */
+    Path convert(String name, String... options) throws IOException {
+        Path output = tempDir.resolve(name);
+        String[] args = new String[4 + options.length];
+        args[0] = "-i";
+        args[1] = LEMMAS_FST.toString();
+        args[2] = "-o";
+        args[3] = output.toString();
+        System.arraycopy(options, 0, args, 4, options.length);
+        FSTBuilder.main(args);
+        return output;
+    }
+
+    static void assertSameLemmas(LemmaDictionary expected, LemmaDictionary actual, List<BytesRef> words) throws IOException {
+        LemmaDictionary.Lookup expectedLookup = expected.newLookup();
+        LemmaDictionary.Lookup actualLookup = actual.newLookup();
+        CharsRefBuilder expectedLemmas = new CharsRefBuilder();
+        CharsRefBuilder actualLemmas = new CharsRefBuilder();
+        for (BytesRef word : words) {
+            String term = word.utf8ToString();
+            boolean found = expectedLookup.lookup(term, expectedLemmas);
+            Assert.assertEquals(actualLookup.lookup(term, actualLemmas), found, term);
+            if (found) {
+                Assert.assertEquals(actualLemmas.toString(), expectedLemmas.toString(), term);
+            }
+        }
+    }
+
+    @Test
+    public void testOrdinalFormat() throws IOException {
+        Path ordinalFst = convert("ordinal.fst", "--format=ordinal");
+        LemmaDictionary lemmas = LemmaDictionary.load(LEMMAS_FST, LoadMode.HEAP);
+        LemmaDictionary ordinal = LemmaDictionary.load(ordinalFst, LoadMode.HEAP);
+        List<BytesRef> words = TestData.sampleWords();
+        assertSameLemmas(lemmas, ordinal, words);
+    }
+
+    @Test
+    public void testSuffixEncoding() throws IOException {
+        Path suffixFst = convert("suffix.fst", "--encoding=suffix");
+        LemmaDictionary lemmas = LemmaDictionary.load(LEMMAS_FST, LoadMode.HEAP);
+        LemmaDictionary suffix = LemmaDictionary.load(suffixFst, LoadMode.HEAP);
+        List<BytesRef> words = TestData.sampleWords();
+        words.add(new BytesRef("najprudkejšiemu"));
+        words.add(new BytesRef("chujovinami"));
+        assertSameLemmas(lemmas, suffix, words);
+        Assert.assertTrue(Files.size(suffixFst) < Files.size(LEMMAS_FST));
+    }
+
+    @Test
+    public void testMergedDictionary() throws IOException {
+        Path mergedFst = convert("merged.fst", "--merged");
+        Path asciiFst = Paths.get("fst/slovaklemma_ascii.fst");
+        LemmaDictionary lemmas = LemmaDictionary.load(LEMMAS_FST, LoadMode.HEAP);
+        LemmaDictionary ascii = LemmaDictionary.load(asciiFst, LoadMode.HEAP);
+        LemmaDictionary merged = LemmaDictionary.load(mergedFst, LoadMode.HEAP);
+        List<BytesRef> words = TestData.sampleWords();
+        LemmaDictionary.Lookup lemmasLookup = lemmas.newLookup();
+        LemmaDictionary.Lookup asciiLookup = ascii.newLookup();
+        LemmaDictionary.Lookup mergedLookup = merged.newLookup();
+        CharsRefBuilder expected = new CharsRefBuilder();
+        CharsRefBuilder actual = new CharsRefBuilder();
+        int exact = 0;
+        int folded = 0;
+        for (BytesRef word : words) {
+            for (String term : new String[] {word.utf8ToString(), asciiFold(word.utf8ToString())}) {
+                boolean found = lemmasLookup.lookup(term, expected);
+                if (found) {
+                    exact++;
+                } else if (found = asciiLookup.lookup(term, expected)) {
+                    folded++;
+                }
+                Assert.assertEquals(mergedLookup.lookup(term, actual), found, term);
+                if (found) {
+                    // the ascii dictionary was built from the original morphology file, the order of lemmas may differ
+                    Assert.assertEquals(new TreeSet<>(Arrays.asList(actual.toString().split("\\|"))),
+                            new TreeSet<>(Arrays.asList(expected.toString().split("\\|"))), term);
+                }
+            }
+        }
+        // both the words with diacritics and the folded ones were checked
+        Assert.assertTrue(exact > 0 && folded > 0, exact + " exact, " + folded + " folded");
+        Assert.assertTrue(Files.size(mergedFst) < Files.size(LEMMAS_FST) + Files.size(asciiFst));
+    }
+
+    private static String asciiFold(String term) {
+        char[] folded = new char[4 * term.length()];
+        int length = ASCIIFoldingFilter.foldToASCII(term.toCharArray(), 0, folded, 0, term.length());
+        return new String(folded, 0, length);
+    }
+
+    @Test
+    public void testLookupIgnoreCase() throws IOException {
+        List<BytesRef> words = TestData.sampleWords();
+        List<String> capitalized = new ArrayList<>();
+        for (BytesRef word : words) {
+            String term = word.utf8ToString();
+            capitalized.add(term.toUpperCase(Locale.ROOT));
+            capitalized.add(term.isEmpty() ? term : term.substring(0, 1).toUpperCase(Locale.ROOT) + term.substring(1));
+        }
+        for (String options : new String[] {null, "--input=byte2", "--input=byte4", "--format=ordinal --encoding=suffix"}) {
+            LemmaDictionary dictionary = options == null ? LemmaDictionary.load(LEMMAS_FST, LoadMode.HEAP)
+                    : LemmaDictionary.load(convert("case_" + options.replaceAll("[^a-z0-9]+", "_") + ".fst", options.split(" ")), LoadMode.HEAP);
+            LemmaDictionary.Lookup lookup = dictionary.newLookup();
+            CharsRefBuilder expected = new CharsRefBuilder();
+            CharsRefBuilder actual = new CharsRefBuilder();
+            for (String term : capitalized) {
+                char[] chars = term.toCharArray();
+                boolean found = lookup.lookup(term.toLowerCase(Locale.ROOT), expected);
+                Assert.assertEquals(lookup.lookupIgnoreCase(chars, 0, chars.length, actual), found, term);
+                if (found) {
+                    Assert.assertEquals(actual.toString(), expected.toString(), term);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testInputTypes() throws IOException {
+        LemmaDictionary lemmas = LemmaDictionary.load(LEMMAS_FST, LoadMode.HEAP);
+        List<BytesRef> words = TestData.sampleWords();
+        for (String options : new String[] {"--input=byte2", "--input=byte4", "--input=byte2 --encoding=suffix"}) {
+            Path fst = convert(options.replaceAll("[^a-z0-9]+", "_") + ".fst", options.split(" "));
+            LemmaDictionary dictionary = LemmaDictionary.load(fst, LoadMode.HEAP);
+            assertSameLemmas(lemmas, dictionary, words);
+        }
+    }
+}
@@ -0,0 +1,142 @@
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.CharsRefBuilder;
+import org.apache.lucene.util.IOUtils;
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+import sk.essentialdata.lucene.analysis.fst.FSTBuilder;
+import sk.essentialdata.lucene.analysis.fst.FSTTokenFilterFactory;
+import sk.essentialdata.lucene.analysis.fst.LemmaDictionary;
+import sk.essentialdata.lucene.analysis.fst.LemmaGuesser;
+import sk.essentialdata.lucene.analysis.fst.LoadMode;
+
+/**
+ * @author miso
+ * @date 10/17/26.
+ */
+public class LemmaGuesserTest {
+    private Path tempDir;
+    private Path guesserFst;
+
+    @BeforeClass
+    public void setUp() throws IOException {
+        tempDir = Files.createTempDirectory("lemmaguessertest");
+        guesserFst = tempDir.resolve("guesser.fst");
+        FSTBuilder.main(new String[] {"-i", LemmaDictionaryTest.LEMMAS_FST.toString(), "-o", tempDir.resolve("forward.fst").toString(),
+                "--guesser=" + guesserFst});
+    }
+
+    @AfterClass
+    public void tearDown() throws IOException {
+        IOUtils.rm(tempDir);
+    }
+
+    private LemmaGuesser guesser(int minStemLength, double minConfidence) throws IOException {
+        return LemmaGuesser.load(guesserFst, LoadMode.HEAP, minStemLength, minConfidence);
+    }
+
+    private static String lookup(LemmaDictionary.Lookup lookup, String word) throws IOException {
+        CharsRefBuilder lemmas = new CharsRefBuilder();
+        return lookup.lookup(word, lemmas) ? lemmas.toString() : null;
+    }
+
+    @Test
+    public void testGuess() throws IOException {
+        LemmaDictionary.Lookup lookup = guesser(LemmaGuesser.DEFAULT_MIN_STEM_LENGTH, LemmaGuesser.DEFAULT_MIN_CONFIDENCE).newLookup();
+        // made-up words inflected like real ones
+        Assert.assertEquals(lookup(lookup, "fstkovanie"), "fstkovanie");
+        Assert.assertEquals(lookup(lookup, "lematizátormi"), "lematizátor");
+        Assert.assertEquals(lookup(lookup, "gúglovaného"), "gúglovaný");
+        Assert.assertEquals(lookup(lookup, "gúglujeme"), "gúglovať");
+        Assert.assertEquals(lookup(lookup, "tweetovaniach"), "tweetovanie");
+        // too short for any ending to leave a stem of 3 chars
+        Assert.assertNull(lookup(lookup, "xyz"));
+        Assert.assertNull(lookup(guesser(13, LemmaGuesser.DEFAULT_MIN_CONFIDENCE).newLookup(), "tweetovaniach"));
+    }
+
+    @Test
+    public void testAccuracyOnDictionaryWords() throws IOException {
+        LemmaDictionary.Lookup dictionaryLookup = LemmaDictionary.load(LemmaDictionaryTest.LEMMAS_FST, LoadMode.HEAP).newLookup();
+        LemmaDictionary.Lookup guessLookup = guesser(LemmaGuesser.DEFAULT_MIN_STEM_LENGTH, LemmaGuesser.DEFAULT_MIN_CONFIDENCE).newLookup();
+        int known = 0;
+        int guessed = 0;
+        int right = 0;
+        for (BytesRef word : TestData.sampleWords()) {
+            String form = word.utf8ToString();
+            String lemmas = lookup(dictionaryLookup, form);
+            if (lemmas == null) {
+                continue;
+            }
+            known++;
+            String guess = lookup(guessLookup, form);
+            if (guess != null) {
+                guessed++;
+                if (Arrays.asList(lemmas.split("\\|")).contains(guess)) {
+                    right++;
+                }
+            }
+        }
+        // 60% of the known words are guessed, 83% of the guesses right
+        Assert.assertTrue(guessed > 0.5 * known, guessed + " of " + known);
+        Assert.assertTrue(right > 0.8 * guessed, right + " of " + guessed);
+    }
+
+    @Test
+    public void testGuessAfterIgnoringCase() throws IOException {
+        // "článok" would be guessed as "článka", "zoznam" as "zoznať"
+        try (FSTTokenFilterFactory factory = TestData.factory(LemmaDictionaryTest.LEMMAS_FST)
+                .with(FSTTokenFilterFactory.PARAM_GUESSER, guesserFst)
+                .enable(FSTTokenFilterFactory.PARAM_IGNORE_CASE, FSTTokenFilterFactory.PARAM_EXACT_CASE_FIRST).build()) {
+            Assert.assertEquals(new HashSet<>(TestData.analyze(factory, "Článok Zoznam Tweetovaniach")),
+                    new HashSet<>(Arrays.asList("článok", "zoznam", "tweetovanie")));
+        }
+        try (FSTTokenFilterFactory factory = TestData.factory(LemmaDictionaryTest.LEMMAS_FST)
+                .with(FSTTokenFilterFactory.PARAM_GUESSER, guesserFst)
+                .enable(FSTTokenFilterFactory.PARAM_IGNORE_CASE, FSTTokenFilterFactory.PARAM_EXACT_CASE_FIRST,
+                        FSTTokenFilterFactory.PARAM_RESTORE_CASE).build()) {
+            Assert.assertEquals(new HashSet<>(TestData.analyze(factory, "Článok ZOZNAM Tweetovaniach")),
+                    new HashSet<>(Arrays.asList("Článok", "ZOZNAM", "Tweetovanie")));
+        }
+    }
+
+    @Test
+    public void testUniqueTerms() throws IOException {
+        String text = TestData.sampleText();
+        int lemmatized;
+        int guessed;
+        try (FSTTokenFilterFactory factory = TestData.factory(LemmaDictionaryTest.LEMMAS_FST).build()) {
+            lemmatized = new HashSet<>(TestData.analyze(factory, text)).size();
+        }
+        try (FSTTokenFilterFactory factory = TestData.factory(LemmaDictionaryTest.LEMMAS_FST)
+                .with(FSTTokenFilterFactory.PARAM_GUESSER, guesserFst).build()) {
+            guessed = new HashSet<>(TestData.analyze(factory, text)).size();
+        }
+        // 17718 unique terms without the guesser, 16777 with it
+        Assert.assertTrue(guessed < 0.97 * lemmatized, guessed + " of " + lemmatized);
+    }
+
+    @Test
+    public void testChangedGuesserIsReloaded() throws IOException {
+        Path guesser = tempDir.resolve("reloaded.fst");
+        Files.copy(guesserFst, guesser);
+        try (FSTTokenFilterFactory factory = TestData.factory(LemmaDictionaryTest.LEMMAS_FST)
+                .with(FSTTokenFilterFactory.PARAM_GUESSER, guesser).build()) {
+            Assert.assertEquals(new HashSet<>(TestData.analyze(factory, "tweetovaniach")), Collections.singleton("tweetovanie"));
+            Assert.assertFalse(factory.reload());
+            // a guesser knowing only the ending "ach" of "kosach", "rosach" and "vosach"
+            Path tiny = tempDir.resolve("tiny.tsv");
+            Files.write(tiny, Arrays.asList("kosa\tkosach\tSSfs6", "rosa\trosach\tSSfs6", "vosa\tvosach\tSSfs6"), StandardCharsets.UTF_8);
+            FSTBuilder.main(new String[] {"-f", tiny.toString(), "-o", tempDir.resolve("tiny.fst").toString(), "--guesser=" + guesser});
+            Assert.assertTrue(factory.reload());
+            Assert.assertEquals(new HashSet<>(TestData.analyze(factory, "tweetovaniach")), Collections.singleton("tweetovania"));
+        }
+    }
+}
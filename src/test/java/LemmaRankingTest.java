@@ -0,0 +1,160 @@
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.Tokenizer;
+import org.apache.lucene.analysis.core.WhitespaceTokenizer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.CharsRefBuilder;
+import org.apache.lucene.util.IOUtils;
+import org.apache.lucene.util.QueryBuilder;
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+import sk.essentialdata.lucene.analysis.fst.FSTBuilder;
+import sk.essentialdata.lucene.analysis.fst.FSTTokenFilterFactory;
+import sk.essentialdata.lucene.analysis.fst.LemmaDictionary;
+import sk.essentialdata.lucene.analysis.fst.LoadMode;
+
+/**
+ * @author miso
+ * @date 10/17/26.
+ */
+public class LemmaRankingTest {
+    private Path tempDir;
+
+    @BeforeClass
+    public void setUp() throws IOException {
+        tempDir = Files.createTempDirectory("lemmarankingtest");
+    }
+
+    @AfterClass
+    public void tearDown() throws IOException {
+        IOUtils.rm(tempDir);
+    }
+
+    private static String lookup(Path fst, String word) throws IOException {
+        CharsRefBuilder lemmas = new CharsRefBuilder();
+        return LemmaDictionary.load(fst, LoadMode.HEAP).newLookup().lookup(word, lemmas) ? lemmas.toString() : null;
+    }
+
+    @Test
+    public void testRankedOrder() throws IOException {
+        Path input = tempDir.resolve("input.txt");
+        Files.write(input, Arrays.asList("ono\tje\tPFns4", "byť\tje\tVKesc+", "ono\tje\tPFnp4", "ono\tje\tPFmp4"), StandardCharsets.UTF_8);
+        Path plain = tempDir.resolve("plain.fst");
+        Path ranked = tempDir.resolve("ranked.fst");
+        Path byFrequency = tempDir.resolve("frequency.fst");
+        Path frequencies = tempDir.resolve("frequencies.txt");
+        Files.write(frequencies, Arrays.asList("byť 1000", "ono 200"), StandardCharsets.UTF_8);
+        FSTBuilder.main(new String[] {"-f", input.toString(), "-o", plain.toString()});
+        FSTBuilder.main(new String[] {"-f", input.toString(), "-o", ranked.toString(), "--rank"});
+        FSTBuilder.main(new String[] {"-f", input.toString(), "-o", byFrequency.toString(), "--frequencies=" + frequencies, "--format=ordinal"});
+        Assert.assertEquals(lookup(plain, "je"), "ono|byť");
+        Assert.assertEquals(lookup(ranked, "je"), "ono|byť");
+        Assert.assertEquals(lookup(byFrequency, "je"), "byť|ono");
+
+        FSTTokenFilterFactory factory = TestData.factory(byFrequency).with(FSTTokenFilterFactory.PARAM_MAX_LEMMAS, 1).build();
+        try {
+            Assert.assertEquals(TestData.analyze(factory, "je xyz je"), Arrays.asList("byť", "xyz", "byť"));
+        } finally {
+            factory.close();
+        }
+    }
+
+    private static Analyzer analyzer(FSTTokenFilterFactory factory) {
+        return new Analyzer() {
+            @Override
+            protected TokenStreamComponents createComponents(String fieldName) {
+                Tokenizer tokenizer = new WhitespaceTokenizer();
+                return new TokenStreamComponents(tokenizer, factory.create(tokenizer));
+            }
+        };
+    }
+
+    /**
+     * Indexes the documents, then checks that each of the phrases taken from them is found.
+     * @return size of the index in bytes
+     */
+    private long indexAndSearch(Path fst, int maxLemmas, List<String> documents, List<String> phrases) throws IOException {
+        FSTTokenFilterFactory factory = TestData.factory(fst).with(FSTTokenFilterFactory.PARAM_MAX_LEMMAS, maxLemmas).build();
+        Path indexPath = tempDir.resolve("index" + maxLemmas);
+        try (Analyzer analyzer = analyzer(factory); Directory directory = FSDirectory.open(indexPath)) {
+            try (IndexWriter writer = new IndexWriter(directory, new IndexWriterConfig(analyzer))) {
+                for (String text : documents) {
+                    Document document = new Document();
+                    document.add(new TextField("text", text, Field.Store.NO));
+                    writer.addDocument(document);
+                }
+                writer.forceMerge(1);
+            }
+            long size = 0;
+            for (String file : directory.listAll()) {
+                size += directory.fileLength(file);
+            }
+            try (DirectoryReader reader = DirectoryReader.open(directory)) {
+                IndexSearcher searcher = new IndexSearcher(reader);
+                QueryBuilder queryBuilder = new QueryBuilder(analyzer);
+                for (String phrase : phrases) {
+                    Query query = queryBuilder.createPhraseQuery("text", phrase);
+                    Assert.assertTrue(searcher.count(query) > 0, "maxLemmas=" + maxLemmas + ": " + phrase);
+                }
+            }
+            return size;
+        } finally {
+            factory.close();
+        }
+    }
+
+    @Test
+    public void testTopLemmaIndex() throws IOException {
+        // the sample has a word per line, a document is 100 consecutive words
+        List<String> words = new ArrayList<>();
+        for (BytesRef word : TestData.sampleWords()) {
+            words.add(word.utf8ToString());
+        }
+        List<String> documents = new ArrayList<>();
+        for (int i = 0; i < words.size(); i += 100) {
+            documents.add(String.join(" ", words.subList(i, Math.min(i + 100, words.size()))));
+        }
+        // the words of the sample itself serve as the frequency list of lemmas
+        Map<String, Long> counts = new HashMap<>();
+        for (String word : words) {
+            counts.merge(word, 1L, Long::sum);
+        }
+        List<String> frequencies = new ArrayList<>();
+        counts.forEach((word, count) -> frequencies.add(word + " " + count));
+        Path frequencyFile = tempDir.resolve("sample_frequencies.txt");
+        Files.write(frequencyFile, frequencies, StandardCharsets.UTF_8);
+        Path ranked = tempDir.resolve("slovaklemma_ranked.fst");
+        FSTBuilder.main(new String[] {"-i", LemmaDictionaryTest.LEMMAS_FST.toString(), "-o", ranked.toString(), "--frequencies=" + frequencyFile});
+
+        // phrases within a document, the latency of the queries is measured by RankingBenchmark
+        List<String> phrases = new ArrayList<>();
+        for (int i = 0; i + 1 < words.size() && phrases.size() < 2000; i += 37) {
+            if (i % 100 != 99) {
+                phrases.add(words.get(i) + " " + words.get(i + 1));
+            }
+        }
+        long allLemmasSize = indexAndSearch(ranked, 0, documents, phrases);
+        long topLemmaSize = indexAndSearch(ranked, 1, documents, phrases);
+        Assert.assertTrue(topLemmaSize < allLemmasSize, topLemmaSize + " >= " + allLemmasSize);
+    }
+}
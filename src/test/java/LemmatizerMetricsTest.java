@@ -0,0 +1,83 @@
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+import sk.essentialdata.lucene.analysis.fst.FSTTokenFilterFactory;
+import sk.essentialdata.lucene.analysis.fst.LatencyHistogram;
+import sk.essentialdata.lucene.analysis.fst.LemmatizerMetrics;
+
+/**
+ * @author miso
+ * @date 10/17/26.
+ */
+public class LemmatizerMetricsTest {
+
+    @Test
+    public void testCountsArePublished() throws IOException, JMException {
+        FSTTokenFilterFactory factory = TestData.factory("fst/slovaklemma_ascii.fst").enable(FSTTokenFilterFactory.PARAM_METRICS).build();
+        FSTTokenFilterFactory secondFactory = TestData.factory("fst/slovaklemma_ascii.fst").enable(FSTTokenFilterFactory.PARAM_METRICS).build();
+        LemmatizerMetrics metrics = factory.getMetrics();
+        Assert.assertSame(secondFactory.getMetrics(), metrics);
+        ObjectName name = metrics.getObjectName();
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            TestData.analyze(factory, "cislo predpisu xyz");
+            TestData.analyze(secondFactory, "cislo");
+            Assert.assertEquals(server.getAttribute(name, "Tokens"), 4L);
+            Assert.assertEquals(server.getAttribute(name, "Hits"), 3L);
+            Assert.assertEquals(server.getAttribute(name, "Misses"), 1L);
+            Assert.assertEquals(server.getAttribute(name, "Ambiguous"), 1L);
+            Assert.assertEquals(server.getAttribute(name, "ExtraLemmas"), 1L);
+            Assert.assertEquals((Double) server.getAttribute(name, "HitRatio"), 0.75, 1e-9);
+        } finally {
+            factory.close();
+        }
+        Assert.assertNull(factory.getMetrics());
+        Assert.assertTrue(server.isRegistered(name));
+        secondFactory.close();
+        Assert.assertFalse(server.isRegistered(name));
+    }
+
+    @Test
+    public void testDisabledByDefault() throws IOException {
+        FSTTokenFilterFactory factory = TestData.factory("fst/slovaklemma.fst").build();
+        Assert.assertNull(factory.getMetrics());
+        factory.close();
+    }
+
+    @Test
+    public void testHistogram() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long i = 1; i <= 1000; i++) {
+            histogram.record(i * 1000);
+        }
+        Assert.assertEquals(histogram.getCount(), 1000);
+        Assert.assertEquals(histogram.getMean(), 500500.0, 1e-6);
+        assertClose(histogram.getPercentile(50), 500000);
+        assertClose(histogram.getPercentile(99), 990000);
+        assertClose(histogram.getMax(), 1000000);
+        Assert.assertEquals(histogram.getPercentile(0), histogram.getPercentile(0.01));
+        histogram.reset();
+        Assert.assertEquals(histogram.getPercentile(50), 0);
+    }
+
+    private static void assertClose(long actual, long expected) {
+        Assert.assertTrue(Math.abs(actual - expected) <= expected / 16, actual + " is not close to " + expected);
+    }
+
+    @Test
+    public void testLookupsAreSampled() throws IOException {
+        FSTTokenFilterFactory factory = TestData.factory("fst/slovaklemma.fst").enable(FSTTokenFilterFactory.PARAM_METRICS).build();
+        try {
+            TestData.analyze(factory, TestData.sampleText());
+            LemmatizerMetrics metrics = factory.getMetrics();
+            Assert.assertEquals(metrics.getTimedLookups(), (metrics.getTokens() - metrics.getKeywords()) / 16, 15);
+            Assert.assertTrue(metrics.getLookupP50Nanos() <= metrics.getLookupP99Nanos());
+        } finally {
+            factory.close();
+        }
+    }
+}
@@ -0,0 +1,81 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+import sk.essentialdata.lucene.analysis.fst.BatchLemmatizer;
+import sk.essentialdata.lucene.analysis.fst.LemmaDictionary;
+import sk.essentialdata.lucene.analysis.fst.Lemmatizer;
+import sk.essentialdata.lucene.analysis.fst.LemmatizerServer;
+import sk.essentialdata.lucene.analysis.fst.LoadMode;
+
+/**
+ * @author miso
+ * @date 10/17/26.
+ */
+public class LemmatizerServerTest {
+
+    @Test
+    public void testServe() throws IOException {
+        LemmaDictionary dictionary = LemmaDictionary.load(Paths.get("fst/slovaklemma.fst"), LoadMode.HEAP);
+        List<String> lines = TestData.sampleLines();
+        try (LemmatizerServer server = new LemmatizerServer(new Lemmatizer(dictionary), true, 0, 2).start();
+             Socket socket = new Socket(InetAddress.getLoopbackAddress(), server.getPort());
+             BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+             Writer out = new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8)) {
+            out.write("vlastné materiály, 3 čísla.\n\nxyz\n");
+            out.flush();
+            Assert.assertEquals(in.readLine(), "vlastný materiál 3 číslo ");
+            Assert.assertEquals(in.readLine(), "");
+            Assert.assertEquals(in.readLine(), "xyz ");
+
+            // a batch of lines sent at once, the answers come in the same order
+            StringBuilder batch = new StringBuilder();
+            for (String line : lines.subList(0, 2000)) {
+                batch.append(line).append('\n');
+            }
+            out.write(batch.toString());
+            out.flush();
+            BatchLemmatizer expected = new BatchLemmatizer(dictionary, 1, BatchLemmatizer.DEFAULT_CHUNK_SIZE, true);
+            for (String line : lines.subList(0, 2000)) {
+                StringWriter lemmas = new StringWriter();
+                expected.lemmatize(new StringReader(line), lemmas);
+                Assert.assertEquals(in.readLine(), lemmas.toString(), line);
+            }
+        }
+    }
+
+    @Test
+    public void testTooLongLineClosesConnection() throws IOException {
+        LemmaDictionary dictionary = LemmaDictionary.load(Paths.get("fst/slovaklemma.fst"), LoadMode.HEAP);
+        try (LemmatizerServer server = new LemmatizerServer(new Lemmatizer(dictionary), true, 0, 1).start();
+             Socket socket = new Socket(InetAddress.getLoopbackAddress(), server.getPort());
+             BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+             Writer out = new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8)) {
+            out.write("materiály\r\n");
+            out.flush();
+            Assert.assertEquals(in.readLine(), "materiál ");
+            char[] words = new char[LemmatizerServer.MAX_LINE_LENGTH + 1];
+            Arrays.fill(words, ' ');
+            try {
+                out.write(words);
+                out.write("\nmateriály\n");
+                out.flush();
+                Assert.assertNull(in.readLine());
+            } catch (SocketException e) {
+                // the server closed the connection while the line was still being sent
+            }
+        }
+    }
+}
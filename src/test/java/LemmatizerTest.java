@@ -0,0 +1,138 @@
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.CharsRefBuilder;
+import org.apache.lucene.util.IOUtils;
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+import sk.essentialdata.lucene.analysis.fst.FSTBuilder;
+import sk.essentialdata.lucene.analysis.fst.LemmaBatch;
+import sk.essentialdata.lucene.analysis.fst.LemmaDictionary;
+import sk.essentialdata.lucene.analysis.fst.Lemmatizer;
+import sk.essentialdata.lucene.analysis.fst.LoadMode;
+
+/**
+ * @author miso
+ * @date 10/17/26.
+ */
+public class LemmatizerTest {
+    private Path tempDir;
+    private LemmaDictionary dictionary;
+    private String[] words;
+
+    @BeforeClass
+    public void setUp() throws IOException {
+        tempDir = Files.createTempDirectory("lemmatizertest");
+        dictionary = LemmaDictionary.load(LemmaDictionaryTest.LEMMAS_FST, LoadMode.HEAP);
+        List<String> sample = new ArrayList<>();
+        for (BytesRef word : TestData.sampleWords()) {
+            sample.add(word.utf8ToString());
+        }
+        words = sample.toArray(new String[0]);
+    }
+
+    @AfterClass
+    public void tearDown() throws IOException {
+        IOUtils.rm(tempDir);
+    }
+
+    private static void assertSameAsLookup(LemmaDictionary dictionary, String[] terms, boolean sorted) throws IOException {
+        LemmaBatch batch = new LemmaBatch();
+        new Lemmatizer(dictionary).lookup(terms, sorted, batch);
+        Assert.assertEquals(batch.size(), terms.length);
+        LemmaDictionary.Lookup lookup = dictionary.newLookup();
+        CharsRefBuilder lemmas = new CharsRefBuilder();
+        for (int i = 0; i < terms.length; i++) {
+            boolean found = lookup.lookup(terms[i], lemmas);
+            Assert.assertEquals(batch.isFound(i), found, terms[i]);
+            if (found) {
+                Assert.assertEquals(batch.getLemmas(i).toString(), lemmas.toString(), terms[i]);
+            }
+        }
+    }
+
+    @Test
+    public void testBatchMatchesLookup() throws IOException {
+        String[] terms = {"materiály", "materiál", "xyz", "materiálmi", "mat", "vlastné", "", "vlastnými", "materiály", "aa"};
+        assertSameAsLookup(dictionary, terms, false);
+        assertSameAsLookup(dictionary, words, false);
+        String[] sorted = new TreeSet<>(Arrays.asList(words)).toArray(new String[0]);
+        assertSameAsLookup(dictionary, sorted, true);
+        for (String options : new String[] {"--format=ordinal --encoding=suffix", "--input=byte2", "--input=byte4 --format=ordinal"}) {
+            Path fst = tempDir.resolve(options.replaceAll("[^a-z0-9]+", "_") + ".fst");
+            List<String> args = new ArrayList<>(Arrays.asList("-i", LemmaDictionaryTest.LEMMAS_FST.toString(), "-o", fst.toString()));
+            args.addAll(Arrays.asList(options.split(" ")));
+            FSTBuilder.main(args.toArray(new String[0]));
+            LemmaDictionary converted = LemmaDictionary.load(fst, LoadMode.HEAP);
+            assertSameAsLookup(converted, terms, false);
+            assertSameAsLookup(converted, words, false);
+        }
+    }
+
+    @Test
+    public void testLemmatize() throws IOException {
+        Lemmatizer lemmatizer = new Lemmatizer(dictionary);
+        LemmaDictionary.Lookup lookup = dictionary.newLookup();
+        CharsRefBuilder lemmas = new CharsRefBuilder();
+        StringBuilder consumed = new StringBuilder();
+        for (String word : words) {
+            consumed.setLength(0);
+            int count = lemmatizer.lemmatize(word, (buffer, offset, length) -> {
+                if (consumed.length() > 0) {
+                    consumed.append(LemmaDictionary.LEMMA_DELIMITER);
+                }
+                consumed.append(buffer, offset, length);
+            });
+            String expected = lookup.lookup(word, lemmas) ? lemmas.toString() : "";
+            Assert.assertEquals(consumed.toString(), expected, word);
+            Assert.assertEquals(count, expected.isEmpty() ? 0 : expected.split("\\|").length, word);
+            Assert.assertEquals(String.join("|", lemmatizer.lemmas(word)), expected, word);
+        }
+    }
+
+    @Test
+    public void testLemmatizeAll() {
+        Lemmatizer lemmatizer = new Lemmatizer(dictionary);
+        List<String> terms = Arrays.asList(words);
+        List<String> expected = lemmatizer.lemmatizeAll(terms.stream()).map(lemmas -> String.join("|", lemmas)).collect(Collectors.toList());
+        List<String> parallel = lemmatizer.lemmatizeAll(terms.parallelStream()).map(lemmas -> String.join("|", lemmas)).collect(Collectors.toList());
+        Assert.assertEquals(parallel, expected);
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            String[][] all = lemmatizer.lemmatizeAll(terms, pool);
+            Assert.assertEquals(all.length, terms.size());
+            for (int i = 0; i < all.length; i++) {
+                Assert.assertEquals(String.join("|", all[i]), expected.get(i), terms.get(i));
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void testReplacedLemmatizerIsNotKeptByThreads() throws IOException, InterruptedException {
+        WeakReference<LemmaDictionary> replaced = lemmatizeOnce();
+        long deadline = System.currentTimeMillis() + 10000;
+        while (replaced.get() != null && System.currentTimeMillis() < deadline) {
+            System.gc();
+            Thread.sleep(10);
+        }
+        Assert.assertNull(replaced.get(), "The context of this thread must not keep the dictionary reachable");
+    }
+
+    private static WeakReference<LemmaDictionary> lemmatizeOnce() throws IOException {
+        LemmaDictionary dictionary = LemmaDictionary.load(LemmaDictionaryTest.LEMMAS_FST, LoadMode.HEAP);
+        Assert.assertEquals(new Lemmatizer(dictionary).lemmas("materiály"), new String[] {"materiál"});
+        return new WeakReference<>(dictionary);
+    }
+}
@@ -0,0 +1,39 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.CharsRef;
+import org.apache.lucene.util.fst.FST;
+import org.apache.lucene.util.fst.Util;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+import sk.essentialdata.lucene.analysis.fst.LoadMode;
+
+/**
+ * Compares heap usage and lookups of the FST load modes, their latency is measured by LoadModeBenchmark.
+ * @author miso
+ * @date 10/17/26.
+ */
+public class LoadModeTest {
+    @Test
+    public void testHeapVsMmap() throws IOException {
+        Path fstFile = Paths.get("fst/slovaklemma.fst");
+        List<FST<CharsRef>> fsts = new ArrayList<>();
+        long[] allocated = new long[LoadMode.values().length];
+        for (LoadMode loadMode : LoadMode.values()) {
+            long allocatedBefore = TestData.allocatedBytes();
+            fsts.add(loadMode.load(fstFile));
+            allocated[loadMode.ordinal()] = TestData.allocatedBytes() - allocatedBefore;
+        }
+        // the mapped file is not copied to the heap before the FST is parsed
+        Assert.assertTrue(allocated[LoadMode.HEAP.ordinal()] - allocated[LoadMode.MMAP.ordinal()] > Files.size(fstFile) / 2,
+                Arrays.toString(allocated));
+        for (BytesRef word : TestData.sampleWords()) {
+            Assert.assertEquals(Util.get(fsts.get(LoadMode.MMAP.ordinal()), word), Util.get(fsts.get(LoadMode.HEAP.ordinal()), word));
+        }
+    }
+}
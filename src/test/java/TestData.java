@@ -0,0 +1,125 @@
+import java.io.IOException;
+import java.io.StringReader;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.Tokenizer;
+import org.apache.lucene.analysis.core.WhitespaceTokenizer;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.util.BytesRef;
+import sk.essentialdata.lucene.analysis.fst.FSTTokenFilterFactory;
+
+/**
+ * The Wikipedia sample and the filter factories shared by the tests.
+ * @author miso
+ * @date 10/17/26.
+ */
+final class TestData {
+    static final Path SAMPLE = Paths.get("src/test/resources/wikipedia_sample.txt");
+
+    private TestData() {
+    }
+
+    /**
+     * @return the whole Wikipedia sample
+     */
+    static String sampleText() throws IOException {
+        return new String(Files.readAllBytes(SAMPLE), StandardCharsets.UTF_8);
+    }
+
+    static List<String> sampleLines() throws IOException {
+        return Files.readAllLines(SAMPLE, StandardCharsets.UTF_8);
+    }
+
+    static List<BytesRef> sampleWords() throws IOException {
+        List<BytesRef> words = new ArrayList<>();
+        for (String line : sampleLines()) {
+            for (String word : line.split("\\s+")) {
+                if (!word.isEmpty()) {
+                    words.add(new BytesRef(word));
+                }
+            }
+        }
+        return words;
+    }
+
+    /**
+     * @return bytes allocated on the heap by the current thread so far
+     */
+    static long allocatedBytes() {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean()).getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    /**
+     * @param fstFileName
+     * @return a builder of a factory of the given dictionary, with the other parameters at their defaults
+     */
+    static FactoryBuilder factory(String fstFileName) {
+        return new FactoryBuilder(fstFileName);
+    }
+
+    static FactoryBuilder factory(Path fstFile) {
+        return factory(fstFile.toString());
+    }
+
+    /**
+     * @return the terms of the text split on whitespace and passed through the filter of the factory
+     */
+    static List<String> analyze(FSTTokenFilterFactory factory, String text) throws IOException {
+        Tokenizer tokenizer = new WhitespaceTokenizer();
+        tokenizer.setReader(new StringReader(text));
+        List<String> terms = new ArrayList<>();
+        try (TokenStream stream = factory.create(tokenizer)) {
+            CharTermAttribute termAtt = stream.addAttribute(CharTermAttribute.class);
+            stream.reset();
+            while (stream.incrementToken()) {
+                terms.add(termAtt.toString());
+            }
+            stream.end();
+        }
+        return terms;
+    }
+
+    /**
+     * Collects the parameters of an {@link FSTTokenFilterFactory} as they would be in schema.xml.
+     */
+    static final class FactoryBuilder {
+        private final Map<String, String> args = new HashMap<>();
+
+        private FactoryBuilder(String fstFileName) {
+            args.put(FSTTokenFilterFactory.PARAM_DICTIONARY, fstFileName);
+        }
+
+        FactoryBuilder with(String param, Object value) {
+            args.put(param, String.valueOf(value));
+            return this;
+        }
+
+        /**
+         * Sets the boolean parameters to true.
+         */
+        FactoryBuilder enable(String... params) {
+            for (String param : params) {
+                args.put(param, "true");
+            }
+            return this;
+        }
+
+        /**
+         * @return the factory, informed as Solr does after creating it
+         */
+        FSTTokenFilterFactory build() throws IOException {
+            // the factory consumes its arguments
+            FSTTokenFilterFactory factory = new FSTTokenFilterFactory(new HashMap<>(args));
+            factory.inform(null);
+            return factory;
+        }
+    }
+}